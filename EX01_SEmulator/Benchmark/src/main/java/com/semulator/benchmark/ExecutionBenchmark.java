@@ -0,0 +1,64 @@
+package com.semulator.benchmark;
+
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.parser.ProgramParser;
+import com.semulator.engine.program.Program;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Program#execute} across program shapes, program sizes, input sizes and execution tiers.
+ * Programs are run fully expanded to degree 0, the way the console runs them after expansion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutionBenchmark {
+    
+    @Param({"STRAIGHT", "COUNTED_LOOP", "SYNTHETIC"})
+    private ProgramFixtures.Shape shape;
+    
+    @Param({"1", "100"})
+    private int copies;
+    
+    /**
+     * Value of x1, which sets the iteration count of every loop in the program
+     */
+    @Param({"10", "10000"})
+    private int input;
+    
+    @Param({"INTERPRETED", "REGISTER", "ACCELERATED", "OPTIMIZED", "COMPILED"})
+    private ExecutionMode mode;
+    
+    private Program program;
+    private int[] inputs;
+    
+    @Setup
+    public void prepareProgram() throws Exception {
+        program = ProgramParser.parseProgram(ProgramFixtures.write(shape, copies).toString()).expandToDegree(0);
+        inputs = new int[] {input};
+        
+        // Link or compile outside the measurement
+        program.execute(inputs, mode);
+    }
+    
+    @Benchmark
+    public ExecutionResult execute() {
+        return program.execute(inputs, mode);
+    }
+}
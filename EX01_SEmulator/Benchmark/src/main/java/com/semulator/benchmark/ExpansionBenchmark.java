@@ -0,0 +1,77 @@
+package com.semulator.benchmark;
+
+import com.semulator.engine.instruction.Instruction;
+import com.semulator.engine.parser.ProgramParser;
+import com.semulator.engine.program.Program;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Program#expandToDegree} at every degree of a program with synthetic instructions.
+ * Expansions are cached by the program, so the cold benchmark expands a fresh copy on every call
+ * while the cached benchmark measures repeated lookups on one program.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpansionBenchmark {
+    
+    @Param({"SYNTHETIC"})
+    private ProgramFixtures.Shape shape;
+    
+    @Param({"1", "100", "10000"})
+    private int copies;
+    
+    /**
+     * Target degree; must not exceed the maximum degree of the chosen shape
+     */
+    @Param({"0", "1"})
+    private int degree;
+    
+    private Program parsedProgram;
+    private Program freshProgram;
+    
+    @Setup
+    public void parseFixture() throws Exception {
+        parsedProgram = ProgramParser.parseProgram(ProgramFixtures.write(shape, copies).toString());
+        if (degree > parsedProgram.getMaxDegree()) {
+            throw new IllegalArgumentException("Degree " + degree + " exceeds the maximum degree of " + shape);
+        }
+    }
+    
+    /**
+     * Copy the parsed program so the next cold expansion does not hit its cache
+     */
+    @Setup(Level.Invocation)
+    public void copyProgram() {
+        freshProgram = new Program(parsedProgram.getName());
+        for (Instruction instruction : parsedProgram.getInstructions()) {
+            freshProgram.addInstruction(instruction);
+        }
+    }
+    
+    @Benchmark
+    public Program expandCold() {
+        return freshProgram.expandToDegree(degree);
+    }
+    
+    @Benchmark
+    public Program expandCached() {
+        return parsedProgram.expandToDegree(degree);
+    }
+}
@@ -0,0 +1,49 @@
+package com.semulator.benchmark;
+
+import com.semulator.engine.parser.ProgramParser;
+import com.semulator.engine.program.Program;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ProgramParser#parseProgram} on generated XML files of increasing size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    
+    @Param({"STRAIGHT", "SYNTHETIC"})
+    private ProgramFixtures.Shape shape;
+    
+    @Param({"1", "100", "10000"})
+    private int copies;
+    
+    private String filePath;
+    
+    @Setup
+    public void writeFixture() throws Exception {
+        Path file = ProgramFixtures.write(shape, copies);
+        filePath = file.toString();
+    }
+    
+    @Benchmark
+    public Program parseProgram() throws Exception {
+        return ProgramParser.parseProgram(filePath);
+    }
+}
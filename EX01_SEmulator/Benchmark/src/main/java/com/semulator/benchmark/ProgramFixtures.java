@@ -0,0 +1,138 @@
+package com.semulator.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates the XML programs used by the benchmarks.
+ * Every shape is built from copies of a small block, so fixtures can be scaled up
+ * to any size while staying valid S programs.
+ */
+public final class ProgramFixtures {
+    
+    /**
+     * Program shapes exercised by the benchmarks
+     */
+    public enum Shape {
+        /**
+         * Copies of the instructions in test.xml: straight-line code with no jumps
+         */
+        STRAIGHT,
+        
+        /**
+         * Counted loops moving x1 into z1 and back, each running once per unit of input
+         */
+        COUNTED_LOOP,
+        
+        /**
+         * Counted loops whose bodies use GOTO_LABEL and ZERO_VARIABLE, so expansion changes the code
+         */
+        SYNTHETIC
+    }
+    
+    private ProgramFixtures() {
+    }
+    
+    /**
+     * Build the XML for a program of the given shape made of {@code copies} blocks
+     */
+    public static String generate(Shape shape, int copies) {
+        if (copies < 1) {
+            throw new IllegalArgumentException("Fixture needs at least one block: " + copies);
+        }
+        
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<S-Program name=\"").append(shape).append(" x").append(copies).append("\">\n");
+        xml.append("    <S-Instructions>\n");
+        for (int block = 0; block < copies; block++) {
+            switch (shape) {
+                case STRAIGHT:
+                    appendStraightBlock(xml, block);
+                    break;
+                case COUNTED_LOOP:
+                    appendCountedLoopBlock(xml, block);
+                    break;
+                case SYNTHETIC:
+                default:
+                    appendSyntheticBlock(xml, block);
+                    break;
+            }
+        }
+        xml.append("    </S-Instructions>\n");
+        xml.append("</S-Program>\n");
+        return xml.toString();
+    }
+    
+    /**
+     * Write a generated program to a temporary file and return its path
+     */
+    public static Path write(Shape shape, int copies) throws IOException {
+        Path file = Files.createTempFile("semulator-" + shape.name().toLowerCase() + "-" + copies + "-", ".xml");
+        file.toFile().deleteOnExit();
+        Files.write(file, generate(shape, copies).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+    
+    /**
+     * INCREASE x1 [L], DECREASE x1, NEUTRAL y - the body of test.xml
+     */
+    private static void appendStraightBlock(StringBuilder xml, int block) {
+        appendInstruction(xml, "basic", "INCREASE", "x1", label(block, 0), null, null);
+        appendInstruction(xml, "basic", "DECREASE", "x1", null, null, null);
+        appendInstruction(xml, "basic", "NEUTRAL", "y", null, null, null);
+    }
+    
+    /**
+     * [L] DECREASE from, INCREASE to, INCREASE y, JUMP_NOT_ZERO from L - alternating between x1 and z1
+     */
+    private static void appendCountedLoopBlock(StringBuilder xml, int block) {
+        String from = block % 2 == 0 ? "x1" : "z1";
+        String to = block % 2 == 0 ? "z1" : "x1";
+        String loop = label(block, 0);
+        appendInstruction(xml, "basic", "DECREASE", from, loop, null, null);
+        appendInstruction(xml, "basic", "INCREASE", to, null, null, null);
+        appendInstruction(xml, "basic", "INCREASE", "y", null, null, null);
+        appendInstruction(xml, "basic", "JUMP_NOT_ZERO", from, null, "JNZLabel", loop);
+    }
+    
+    /**
+     * A loop like COUNTED_LOOP that also jumps over a NEUTRAL with GOTO_LABEL and clears z1 every iteration
+     */
+    private static void appendSyntheticBlock(StringBuilder xml, int block) {
+        String from = block % 2 == 0 ? "x1" : "z2";
+        String to = block % 2 == 0 ? "z2" : "x1";
+        String loop = label(block, 0);
+        String skip = label(block, 1);
+        appendInstruction(xml, "basic", "DECREASE", from, loop, null, null);
+        appendInstruction(xml, "basic", "INCREASE", to, null, null, null);
+        appendInstruction(xml, "basic", "INCREASE", "y", null, null, null);
+        appendInstruction(xml, "basic", "INCREASE", "z1", null, null, null);
+        appendInstruction(xml, "synthetic", "GOTO_LABEL", "", null, "gotoLabel", skip);
+        appendInstruction(xml, "basic", "NEUTRAL", "y", null, null, null);
+        appendInstruction(xml, "synthetic", "ZERO_VARIABLE", "z1", skip, null, null);
+        appendInstruction(xml, "basic", "JUMP_NOT_ZERO", from, null, "JNZLabel", loop);
+    }
+    
+    private static String label(int block, int index) {
+        return "L" + (block * 2 + index + 1);
+    }
+    
+    private static void appendInstruction(StringBuilder xml, String type, String name, String variable,
+                                          String label, String argumentName, String argumentValue) {
+        xml.append("        <S-Instruction type=\"").append(type).append("\" name=\"").append(name).append("\">\n");
+        xml.append("            <S-Variable>").append(variable).append("</S-Variable>\n");
+        if (label != null) {
+            xml.append("            <S-Label>").append(label).append("</S-Label>\n");
+        }
+        if (argumentName != null) {
+            xml.append("            <S-Instruction-Arguments>\n");
+            xml.append("                <S-Instruction-Argument name=\"").append(argumentName)
+               .append("\" value=\"").append(argumentValue).append("\"/>\n");
+            xml.append("            </S-Instruction-Arguments>\n");
+        }
+        xml.append("        </S-Instruction>\n");
+    }
+}
@@ -0,0 +1,325 @@
+package com.semulator.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free, append-only execution history kept column by column in primitive arrays: degree,
+ * output, cycles and program, with the inputs of every run packed one after another into a
+ * shared input arena. Records are only built when asked for, so a long history costs a few ints
+ * per run instead of an object and an input array each.
+ * <p>
+ * Appends work like the record log this replaced: a row is reserved from an atomic counter,
+ * its columns are written into fixed-size segments reached through a directory that is only
+ * ever replaced as a whole, and the row is then marked filled. The published count advances
+ * over consecutively filled rows, so appends never block each other and readers only see
+ * complete rows. Row positions are also indexed by degree and by program; the indexes are
+ * brought up to date by the queries that use them, so appends never wait for them either.
+ */
+class ColumnarHistoryStore implements HistoryStore {
+    
+    private static final int ROW_BITS = 10;
+    private static final int ROW_SEGMENT_SIZE = 1 << ROW_BITS;
+    private static final int ROW_MASK = ROW_SEGMENT_SIZE - 1;
+    private static final int INPUT_BITS = 12;
+    private static final int INPUT_SEGMENT_SIZE = 1 << INPUT_BITS;
+    private static final int INPUT_MASK = INPUT_SEGMENT_SIZE - 1;
+    
+    private final AtomicReference<RowSegment[]> rows;
+    private final AtomicReference<int[][]> inputArena;
+    private final AtomicInteger reserved;
+    private final AtomicInteger published;
+    private final AtomicLong inputEnd;
+    private final Map<String, Integer> programIds;
+    private final Map<Integer, String> programNames;
+    private final AtomicInteger nextProgramId;
+    private final Map<Integer, RowList> degreeIndex;
+    private final Map<Integer, RowList> programIndex;
+    private int indexedRows;
+    
+    ColumnarHistoryStore() {
+        this.rows = new AtomicReference<>(new RowSegment[] {new RowSegment()});
+        this.inputArena = new AtomicReference<>(new int[][] {new int[INPUT_SEGMENT_SIZE]});
+        this.reserved = new AtomicInteger();
+        this.published = new AtomicInteger();
+        this.inputEnd = new AtomicLong();
+        this.programIds = new ConcurrentHashMap<>();
+        this.programNames = new ConcurrentHashMap<>();
+        this.nextProgramId = new AtomicInteger();
+        this.degreeIndex = new HashMap<>();
+        this.programIndex = new HashMap<>();
+    }
+    
+    /**
+     * Append a record, numbering the run from an atomic counter
+     */
+    @Override
+    public SemulatorEngine.ExecutionHistory append(String programName, int expansionDegree,
+                                                   int[] inputs, int output, int cycles) {
+        int row = reserved.getAndIncrement();
+        if (row < 0) {
+            throw new IllegalStateException("Execution history is full");
+        }
+        
+        long inputStart = inputEnd.getAndAdd(inputs.length);
+        for (int i = 0; i < inputs.length; i++) {
+            long position = inputStart + i;
+            inputSegmentFor(position)[(int) (position & INPUT_MASK)] = inputs[i];
+        }
+        
+        RowSegment segment = segmentFor(row);
+        int slot = row & ROW_MASK;
+        segment.degrees[slot] = expansionDegree;
+        segment.outputs[slot] = output;
+        segment.cycles[slot] = cycles;
+        segment.programIds[slot] = programName == null ? -1 : programIdOf(programName);
+        segment.inputStarts[slot] = inputStart;
+        segment.inputCounts[slot] = inputs.length;
+        
+        // The volatile write orders the column writes before the row becomes visible
+        segment.filled.set(slot, 1);
+        publish();
+        return new SemulatorEngine.ExecutionHistory(row + 1, programName, expansionDegree, inputs, output, cycles);
+    }
+    
+    @Override
+    public int size() {
+        return published.get();
+    }
+    
+    @Override
+    public SemulatorEngine.ExecutionHistory get(int index) {
+        RowSegment segment = rowSegment(index);
+        int slot = index & ROW_MASK;
+        int[] inputs = new int[segment.inputCounts[slot]];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = inputAt(segment.inputStarts[slot] + i);
+        }
+        return new SemulatorEngine.ExecutionHistory(index + 1, programNameOf(segment.programIds[slot]),
+                segment.degrees[slot], inputs, segment.outputs[slot], segment.cycles[slot]);
+    }
+    
+    @Override
+    public int getValue(int index, HistoryColumn column) {
+        RowSegment segment = rowSegment(index);
+        int slot = index & ROW_MASK;
+        switch (column) {
+            case RUN_NUMBER:
+                return index + 1;
+            case DEGREE:
+                return segment.degrees[slot];
+            case OUTPUT:
+                return segment.outputs[slot];
+            case CYCLES:
+                return segment.cycles[slot];
+            default:
+                throw new IllegalArgumentException("Unknown history column: " + column);
+        }
+    }
+    
+    @Override
+    public int getInputCount(int index) {
+        return rowSegment(index).inputCounts[index & ROW_MASK];
+    }
+    
+    @Override
+    public int getInput(int index, int input) {
+        RowSegment segment = rowSegment(index);
+        int slot = index & ROW_MASK;
+        if (input < 0 || input >= segment.inputCounts[slot]) {
+            throw new IndexOutOfBoundsException("Input index out of bounds: " + input);
+        }
+        return inputAt(segment.inputStarts[slot] + input);
+    }
+    
+    @Override
+    public String getProgramName(int index) {
+        return programNameOf(rowSegment(index).programIds[index & ROW_MASK]);
+    }
+    
+    @Override
+    public int[] rowsWithDegree(int expansionDegree) {
+        synchronized (degreeIndex) {
+            updateIndexes();
+            RowList list = degreeIndex.get(expansionDegree);
+            return list == null ? new int[0] : list.toArray();
+        }
+    }
+    
+    @Override
+    public int[] rowsOfProgram(String programName) {
+        Integer programId = programIds.get(programName);
+        if (programId == null) {
+            return new int[0];
+        }
+        synchronized (degreeIndex) {
+            updateIndexes();
+            RowList list = programIndex.get(programId);
+            return list == null ? new int[0] : list.toArray();
+        }
+    }
+    
+    @Override
+    public List<SemulatorEngine.ExecutionHistory> view() {
+        return new HistoryRows(this, published.get());
+    }
+    
+    /**
+     * Start a new store, leaving views of this one intact
+     */
+    @Override
+    public HistoryStore cleared() {
+        return new ColumnarHistoryStore();
+    }
+    
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+    
+    /**
+     * Add the rows published since the last query to the degree and program indexes.
+     * Called with the index lock held; rows are added in order, so every list stays sorted.
+     */
+    private void updateIndexes() {
+        int count = published.get();
+        for (int row = indexedRows; row < count; row++) {
+            RowSegment segment = rows.get()[row >>> ROW_BITS];
+            int slot = row & ROW_MASK;
+            degreeIndex.computeIfAbsent(segment.degrees[slot], key -> new RowList()).add(row);
+            int programId = segment.programIds[slot];
+            if (programId >= 0) {
+                programIndex.computeIfAbsent(programId, key -> new RowList()).add(row);
+            }
+        }
+        indexedRows = count;
+    }
+    
+    /**
+     * Advance the published count over every consecutively filled row.
+     * Any thread can finish another thread's publication, so no appender ever waits.
+     */
+    private void publish() {
+        int count = published.get();
+        while (count < reserved.get()) {
+            RowSegment[] segments = rows.get();
+            int segment = count >>> ROW_BITS;
+            if (segment >= segments.length || segments[segment].filled.get(count & ROW_MASK) == 0) {
+                return;
+            }
+            published.compareAndSet(count, count + 1);
+            count = published.get();
+        }
+    }
+    
+    /**
+     * Get the segment of a published row
+     */
+    private RowSegment rowSegment(int index) {
+        if (index < 0 || index >= published.get()) {
+            throw new IndexOutOfBoundsException("History index out of bounds: " + index);
+        }
+        return rows.get()[index >>> ROW_BITS];
+    }
+    
+    private int inputAt(long position) {
+        return inputArena.get()[(int) (position >>> INPUT_BITS)][(int) (position & INPUT_MASK)];
+    }
+    
+    private String programNameOf(int programId) {
+        return programId < 0 ? null : programNames.get(programId);
+    }
+    
+    /**
+     * Get the id of a program name, adding it to the dictionary if it is new.
+     * The name is stored under its id before the id is handed out, so readers of a row
+     * always find the name.
+     */
+    private int programIdOf(String programName) {
+        return programIds.computeIfAbsent(programName, name -> {
+            int programId = nextProgramId.getAndIncrement();
+            programNames.put(programId, name);
+            return programId;
+        });
+    }
+    
+    /**
+     * Get the segment holding a row, growing the directory if needed.
+     * Segments are only created while building a new directory, which is then swapped in
+     * with a single compare-and-set, so every row maps to exactly one segment.
+     */
+    private RowSegment segmentFor(int row) {
+        int segment = row >>> ROW_BITS;
+        while (true) {
+            RowSegment[] segments = rows.get();
+            if (segment < segments.length) {
+                return segments[segment];
+            }
+            RowSegment[] grown = Arrays.copyOf(segments, Math.max(segments.length * 2, segment + 1));
+            for (int i = segments.length; i < grown.length; i++) {
+                grown[i] = new RowSegment();
+            }
+            rows.compareAndSet(segments, grown);
+        }
+    }
+    
+    /**
+     * Get the input arena segment holding a position, growing the arena the same way as the rows
+     */
+    private int[] inputSegmentFor(long position) {
+        long segment = position >>> INPUT_BITS;
+        if (segment >= Integer.MAX_VALUE) {
+            throw new IllegalStateException("Execution history is full");
+        }
+        while (true) {
+            int[][] segments = inputArena.get();
+            if (segment < segments.length) {
+                return segments[(int) segment];
+            }
+            int[][] grown = Arrays.copyOf(segments, (int) Math.max(segments.length * 2L, segment + 1));
+            for (int i = segments.length; i < grown.length; i++) {
+                grown[i] = new int[INPUT_SEGMENT_SIZE];
+            }
+            inputArena.compareAndSet(segments, grown);
+        }
+    }
+    
+    /**
+     * Columns of a fixed-size block of rows, with a flag per row set once its columns are written
+     */
+    private static final class RowSegment {
+        final int[] degrees = new int[ROW_SEGMENT_SIZE];
+        final int[] outputs = new int[ROW_SEGMENT_SIZE];
+        final int[] cycles = new int[ROW_SEGMENT_SIZE];
+        final int[] programIds = new int[ROW_SEGMENT_SIZE];
+        final long[] inputStarts = new long[ROW_SEGMENT_SIZE];
+        final int[] inputCounts = new int[ROW_SEGMENT_SIZE];
+        final AtomicIntegerArray filled = new AtomicIntegerArray(ROW_SEGMENT_SIZE);
+    }
+    
+    /**
+     * Growable list of row positions, kept in ascending order by appending only
+     */
+    private static final class RowList {
+        private int[] rows = new int[16];
+        private int count;
+        
+        void add(int row) {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+            }
+            rows[count++] = row;
+        }
+        
+        int[] toArray() {
+            return Arrays.copyOf(rows, count);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.semulator.engine;
+
+/**
+ * Summary of the cycle counts of a group of runs: count, minimum, maximum, mean and percentiles
+ */
+public class CycleStatistics {
+    
+    private final int[] sortedCycles;
+    private final double mean;
+    
+    /**
+     * Create statistics over cycle counts that are already sorted in ascending order
+     */
+    CycleStatistics(int[] sortedCycles) {
+        if (sortedCycles.length == 0) {
+            throw new IllegalArgumentException("Cycle statistics need at least one run");
+        }
+        this.sortedCycles = sortedCycles;
+        
+        long total = 0;
+        for (int cycles : sortedCycles) {
+            total += cycles;
+        }
+        this.mean = (double) total / sortedCycles.length;
+    }
+    
+    public int getCount() {
+        return sortedCycles.length;
+    }
+    
+    public int getMin() {
+        return sortedCycles[0];
+    }
+    
+    public int getMax() {
+        return sortedCycles[sortedCycles.length - 1];
+    }
+    
+    public double getMean() {
+        return mean;
+    }
+    
+    /**
+     * Get the cycle count at a percentile between 0 and 100, using the nearest-rank method
+     */
+    public int getPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sortedCycles.length);
+        return sortedCycles[Math.max(0, rank - 1)];
+    }
+}
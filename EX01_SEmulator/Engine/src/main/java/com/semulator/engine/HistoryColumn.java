@@ -0,0 +1,26 @@
+package com.semulator.engine;
+
+/**
+ * Numeric fields of an execution history record that queries can filter and sort on.
+ */
+public enum HistoryColumn {
+    /**
+     * Number of the run, counted from 1 in the order runs were recorded
+     */
+    RUN_NUMBER,
+    
+    /**
+     * Expansion degree the program was run at
+     */
+    DEGREE,
+    
+    /**
+     * Value of y when the run finished
+     */
+    OUTPUT,
+    
+    /**
+     * Cycles the run took
+     */
+    CYCLES
+}
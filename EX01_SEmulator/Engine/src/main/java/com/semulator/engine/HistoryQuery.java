@@ -0,0 +1,290 @@
+package com.semulator.engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable query over the execution history: filters on degree, program, inputs, output and
+ * cycles, and an optional sort order. Every {@code with} method returns a new query with one
+ * more filter; with no order the runs come back in the order they were recorded.
+ * <p>
+ * Degree and program filters are answered from the store's indexes when it has them, so only
+ * the runs they select are looked at; all other filters are checked column by column without
+ * building records.
+ */
+public class HistoryQuery {
+    
+    /**
+     * Query matching every run, in the order they were recorded
+     */
+    public static final HistoryQuery ALL = new HistoryQuery(null, null, new int[0], new int[0], new int[0],
+            Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, null, false);
+    
+    private final Integer degree;
+    private final String programName;
+    private final int[] inputPositions;
+    private final int[] inputMins;
+    private final int[] inputMaxes;
+    private final int minCycles;
+    private final int maxCycles;
+    private final int minOutput;
+    private final int maxOutput;
+    private final HistoryColumn orderColumn;
+    private final boolean descending;
+    
+    private HistoryQuery(Integer degree, String programName, int[] inputPositions, int[] inputMins,
+                         int[] inputMaxes, int minCycles, int maxCycles, int minOutput, int maxOutput,
+                         HistoryColumn orderColumn, boolean descending) {
+        this.degree = degree;
+        this.programName = programName;
+        this.inputPositions = inputPositions;
+        this.inputMins = inputMins;
+        this.inputMaxes = inputMaxes;
+        this.minCycles = minCycles;
+        this.maxCycles = maxCycles;
+        this.minOutput = minOutput;
+        this.maxOutput = maxOutput;
+        this.orderColumn = orderColumn;
+        this.descending = descending;
+    }
+    
+    /**
+     * Keep only runs at the given expansion degree
+     */
+    public HistoryQuery withDegree(int degree) {
+        if (degree < 0) {
+            throw new IllegalArgumentException("Expansion degree cannot be negative: " + degree);
+        }
+        return new HistoryQuery(degree, programName, inputPositions, inputMins, inputMaxes,
+                minCycles, maxCycles, minOutput, maxOutput, orderColumn, descending);
+    }
+    
+    /**
+     * Keep only runs of the named program
+     */
+    public HistoryQuery withProgram(String programName) {
+        if (programName == null) {
+            throw new IllegalArgumentException("Program name is required");
+        }
+        return new HistoryQuery(degree, programName, inputPositions, inputMins, inputMaxes,
+                minCycles, maxCycles, minOutput, maxOutput, orderColumn, descending);
+    }
+    
+    /**
+     * Keep only runs whose input x{@code input} lies between {@code min} and {@code max}, inclusive.
+     * Inputs a run was not given count as 0, as they do during execution.
+     */
+    public HistoryQuery withInputRange(int input, int min, int max) {
+        if (input < 1) {
+            throw new IllegalArgumentException("Input numbers start at 1: " + input);
+        }
+        checkRange(min, max);
+        int filters = inputPositions.length;
+        int[] positions = Arrays.copyOf(inputPositions, filters + 1);
+        int[] mins = Arrays.copyOf(inputMins, filters + 1);
+        int[] maxes = Arrays.copyOf(inputMaxes, filters + 1);
+        positions[filters] = input - 1;
+        mins[filters] = min;
+        maxes[filters] = max;
+        return new HistoryQuery(degree, programName, positions, mins, maxes,
+                minCycles, maxCycles, minOutput, maxOutput, orderColumn, descending);
+    }
+    
+    /**
+     * Keep only runs that took between {@code min} and {@code max} cycles, inclusive
+     */
+    public HistoryQuery withCyclesRange(int min, int max) {
+        checkRange(min, max);
+        return new HistoryQuery(degree, programName, inputPositions, inputMins, inputMaxes,
+                min, max, minOutput, maxOutput, orderColumn, descending);
+    }
+    
+    /**
+     * Keep only runs whose output lies between {@code min} and {@code max}, inclusive
+     */
+    public HistoryQuery withOutputRange(int min, int max) {
+        checkRange(min, max);
+        return new HistoryQuery(degree, programName, inputPositions, inputMins, inputMaxes,
+                minCycles, maxCycles, min, max, orderColumn, descending);
+    }
+    
+    /**
+     * Sort the matching runs by a column; runs with equal values stay in the order they were recorded
+     */
+    public HistoryQuery orderBy(HistoryColumn column, boolean descending) {
+        if (column == null) {
+            throw new IllegalArgumentException("Sort column is required");
+        }
+        return new HistoryQuery(degree, programName, inputPositions, inputMins, inputMaxes,
+                minCycles, maxCycles, minOutput, maxOutput, column, descending);
+    }
+    
+    /**
+     * Run the query against a store, returning a list that reads matching records as accessed
+     */
+    List<SemulatorEngine.ExecutionHistory> run(HistoryStore store) {
+        return Collections.unmodifiableList(new HistoryRows(store, select(store)));
+    }
+    
+    /**
+     * Group the cycle counts of the matching runs by expansion degree and summarize each group
+     */
+    Map<Integer, CycleStatistics> cycleStatistics(HistoryStore store) {
+        int[] rows = filter(store);
+        
+        // Sort degree and cycles together, so each degree's cycles end up in one sorted run
+        long[] keys = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            long degreeKey = store.getValue(rows[i], HistoryColumn.DEGREE);
+            keys[i] = degreeKey << 32 | unsigned(store.getValue(rows[i], HistoryColumn.CYCLES));
+        }
+        Arrays.sort(keys);
+        
+        Map<Integer, CycleStatistics> statistics = new TreeMap<>();
+        int start = 0;
+        while (start < keys.length) {
+            int groupDegree = (int) (keys[start] >>> 32);
+            int end = start;
+            while (end < keys.length && (int) (keys[end] >>> 32) == groupDegree) {
+                end++;
+            }
+            int[] cycles = new int[end - start];
+            for (int i = 0; i < cycles.length; i++) {
+                cycles[i] = (int) keys[start + i] ^ Integer.MIN_VALUE;
+            }
+            statistics.put(groupDegree, new CycleStatistics(cycles));
+            start = end;
+        }
+        return statistics;
+    }
+    
+    /**
+     * Get the positions of the matching records in the store, in the query's order
+     */
+    int[] select(HistoryStore store) {
+        int[] rows = filter(store);
+        if (orderColumn == null) {
+            return rows;
+        }
+        
+        // Pack each sort value above its row so one primitive sort orders by value, then by row;
+        // complementing the value reverses its order without overflowing
+        long[] keys = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int value = store.getValue(rows[i], orderColumn);
+            keys[i] = (long) (descending ? ~value : value) << 32 | rows[i];
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = (int) keys[i];
+        }
+        return rows;
+    }
+    
+    /**
+     * Get the positions of the matching records in ascending order
+     */
+    private int[] filter(HistoryStore store) {
+        int size = store.size();
+        int[] candidates = null;
+        if (degree != null) {
+            candidates = store.rowsWithDegree(degree);
+        }
+        if (programName != null) {
+            int[] programRows = store.rowsOfProgram(programName);
+            candidates = candidates == null ? programRows
+                    : programRows == null ? candidates : intersect(candidates, programRows);
+        }
+        
+        int count = candidates == null ? size : upperBound(candidates, size);
+        int[] rows = new int[count];
+        int matches = 0;
+        for (int i = 0; i < count; i++) {
+            int row = candidates == null ? i : candidates[i];
+            if (matches(store, row)) {
+                rows[matches++] = row;
+            }
+        }
+        return matches == count ? rows : Arrays.copyOf(rows, matches);
+    }
+    
+    private boolean matches(HistoryStore store, int row) {
+        if (degree != null && store.getValue(row, HistoryColumn.DEGREE) != degree) {
+            return false;
+        }
+        if (programName != null && !programName.equals(store.getProgramName(row))) {
+            return false;
+        }
+        if (!inRange(store.getValue(row, HistoryColumn.CYCLES), minCycles, maxCycles)
+                || !inRange(store.getValue(row, HistoryColumn.OUTPUT), minOutput, maxOutput)) {
+            return false;
+        }
+        if (inputPositions.length > 0) {
+            int inputCount = store.getInputCount(row);
+            for (int i = 0; i < inputPositions.length; i++) {
+                int position = inputPositions[i];
+                int value = position < inputCount ? store.getInput(row, position) : 0;
+                if (!inRange(value, inputMins[i], inputMaxes[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    private static boolean inRange(int value, int min, int max) {
+        return value >= min && value <= max;
+    }
+    
+    private static void checkRange(int min, int max) {
+        if (min > max) {
+            throw new IllegalArgumentException("Range minimum " + min + " is above its maximum " + max);
+        }
+    }
+    
+    /**
+     * Map an int to an unsigned 32-bit key whose order matches the value's
+     */
+    private static long unsigned(int value) {
+        return (value ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+    }
+    
+    /**
+     * Count the leading entries of an ascending array that are below a limit
+     */
+    private static int upperBound(int[] rows, int limit) {
+        int low = 0;
+        int high = rows.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (rows[middle] < limit) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    private static int[] intersect(int[] first, int[] second) {
+        int[] common = new int[Math.min(first.length, second.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, count);
+    }
+}
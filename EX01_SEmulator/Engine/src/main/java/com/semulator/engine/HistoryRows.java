@@ -0,0 +1,46 @@
+package com.semulator.engine;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list over records of a history store, either its first records or the rows picked
+ * by a query. Records are read from the store only as they are accessed.
+ */
+class HistoryRows extends AbstractList<SemulatorEngine.ExecutionHistory> implements RandomAccess {
+    
+    private final HistoryStore store;
+    private final int[] rows;
+    private final int size;
+    
+    /**
+     * List the first {@code size} records of a store
+     */
+    HistoryRows(HistoryStore store, int size) {
+        this.store = store;
+        this.rows = null;
+        this.size = size;
+    }
+    
+    /**
+     * List the records at the given positions of a store, in that order
+     */
+    HistoryRows(HistoryStore store, int[] rows) {
+        this.store = store;
+        this.rows = rows;
+        this.size = rows.length;
+    }
+    
+    @Override
+    public SemulatorEngine.ExecutionHistory get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("History index out of bounds: " + index);
+        }
+        return store.get(rows == null ? index : rows[index]);
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+}
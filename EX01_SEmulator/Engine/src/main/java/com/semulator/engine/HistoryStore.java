@@ -0,0 +1,75 @@
+package com.semulator.engine;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Append-only store of execution history records, numbered from 1 in the order they were appended.
+ * Besides whole records, a store hands out single fields by row so queries can filter and sort
+ * without building a record for every run they look at.
+ */
+interface HistoryStore {
+    
+    /**
+     * Append a record for a finished run of the named program
+     */
+    SemulatorEngine.ExecutionHistory append(String programName, int expansionDegree, int[] inputs, int output, int cycles);
+    
+    /**
+     * Get the number of records visible to readers
+     */
+    int size();
+    
+    /**
+     * Get a record by its position in the store
+     */
+    SemulatorEngine.ExecutionHistory get(int index);
+    
+    /**
+     * Get one numeric field of the record at a position
+     */
+    int getValue(int index, HistoryColumn column);
+    
+    /**
+     * Get the number of inputs of the record at a position
+     */
+    int getInputCount(int index);
+    
+    /**
+     * Get an input of the record at a position, by its 0-based position among the inputs
+     */
+    int getInput(int index, int input);
+    
+    /**
+     * Get the name of the program of the record at a position, or null if it was not recorded
+     */
+    String getProgramName(int index);
+    
+    /**
+     * Get the positions of the records with the given expansion degree in ascending order,
+     * or null if the store keeps no index and must be scanned
+     */
+    int[] rowsWithDegree(int expansionDegree);
+    
+    /**
+     * Get the positions of the records of the named program in ascending order,
+     * or null if the store keeps no index and must be scanned
+     */
+    int[] rowsOfProgram(String programName);
+    
+    /**
+     * Get a read-only view of the records appended so far; later appends are not reflected
+     */
+    List<SemulatorEngine.ExecutionHistory> view();
+    
+    /**
+     * Drop every record, returning the store to append to from now on. Views taken before
+     * either keep their records or, if the store reuses their storage, throw IllegalStateException.
+     */
+    HistoryStore cleared();
+    
+    /**
+     * Release any file the store is kept in
+     */
+    void close() throws IOException;
+}
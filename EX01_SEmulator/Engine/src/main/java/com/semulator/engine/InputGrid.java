@@ -0,0 +1,89 @@
+package com.semulator.engine;
+
+/**
+ * Grid of input vectors for a sweep: an inclusive range of values for each of x1..xn.
+ * Points are numbered with the last input varying fastest, so x1 changes slowest.
+ */
+public class InputGrid {
+    
+    private final int[] from;
+    private final int[] to;
+    private final long size;
+    
+    /**
+     * Create the grid where input x{@code i+1} runs from {@code from[i]} to {@code to[i]}, inclusive
+     */
+    public InputGrid(int[] from, int[] to) {
+        if (from.length != to.length) {
+            throw new IllegalArgumentException("Each input needs both ends of its range");
+        }
+        long points = 1;
+        for (int i = 0; i < from.length; i++) {
+            if (from[i] < 0 || from[i] > to[i]) {
+                throw new IllegalArgumentException("Invalid range for x" + (i + 1) + ": " + from[i] + ".." + to[i]);
+            }
+            long width = (long) to[i] - from[i] + 1;
+            points = points > Long.MAX_VALUE / width ? Long.MAX_VALUE : points * width;
+        }
+        this.from = from.clone();
+        this.to = to.clone();
+        this.size = points;
+    }
+    
+    /**
+     * Get the number of inputs each point sets
+     */
+    public int getInputCount() {
+        return from.length;
+    }
+    
+    /**
+     * Get the first value of input x{@code input}
+     */
+    public int getFrom(int input) {
+        return from[input - 1];
+    }
+    
+    /**
+     * Get the last value of input x{@code input}
+     */
+    public int getTo(int input) {
+        return to[input - 1];
+    }
+    
+    /**
+     * Get the number of points in the grid, or Long.MAX_VALUE if there are more
+     */
+    public long size() {
+        return size;
+    }
+    
+    /**
+     * Write the inputs of a point into an array with one slot per input
+     */
+    public void inputsAt(long point, int[] inputs) {
+        if (point < 0 || point >= size) {
+            throw new IndexOutOfBoundsException("Grid point out of bounds: " + point);
+        }
+        long remaining = point;
+        for (int i = from.length - 1; i >= 0; i--) {
+            long width = (long) to[i] - from[i] + 1;
+            inputs[i] = (int) (from[i] + remaining % width);
+            remaining /= width;
+        }
+    }
+    
+    /**
+     * Move an input vector to the next point of the grid, returning false after the last point
+     */
+    public boolean advance(int[] inputs) {
+        for (int i = from.length - 1; i >= 0; i--) {
+            if (inputs[i] < to[i]) {
+                inputs[i]++;
+                return true;
+            }
+            inputs[i] = from[i];
+        }
+        return false;
+    }
+}
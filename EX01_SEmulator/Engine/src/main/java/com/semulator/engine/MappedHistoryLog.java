@@ -0,0 +1,484 @@
+package com.semulator.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Execution history kept in an append-only file and read back through memory mapping.
+ * Records are written to a data file and their offsets to an index file next to it, both mapped
+ * in fixed-size segments, so any record can be read by number and the history survives restarts.
+ * Only the most recent {@code tailSize} records are also held as objects; older ones are decoded
+ * from the mapping when asked for, so heap use does not grow with the number of runs.
+ * <p>
+ * The data file starts with its magic and version, followed by records of six ints (run number,
+ * expansion degree, output, cycles, input count, program name length or -1 if there is none),
+ * the inputs and the program name in UTF-8, padded to a whole int. A record never crosses a segment.
+ * The index file starts with its magic, version and the number of records as a long, followed by
+ * one long offset per record. The count is written last, so a record cut short by a crash is
+ * never read.
+ * <p>
+ * Clearing starts the files over in a new log. Views and query results taken from the old log would
+ * read records as they are written over, so they throw IllegalStateException once it is cleared.
+ */
+class MappedHistoryLog implements HistoryStore {
+    
+    /**
+     * Suffix of the index file kept next to the data file
+     */
+    static final String INDEX_SUFFIX = ".idx";
+    
+    private static final int DATA_MAGIC = 0x53454844;
+    private static final int INDEX_MAGIC = 0x53454849;
+    private static final int VERSION = 2;
+    private static final int DATA_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int INDEX_HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+    private static final int COUNT_POSITION = 2 * Integer.BYTES;
+    private static final int RECORD_HEADER_BYTES = 6 * Integer.BYTES;
+    private static final int INPUT_COUNT = 4 * Integer.BYTES;
+    private static final int NAME_LENGTH = 5 * Integer.BYTES;
+    private static final int SEGMENT_BITS = 22;
+    private static final long SEGMENT_BYTES = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_MASK = SEGMENT_BYTES - 1;
+    
+    private final String filePath;
+    private final FileChannel data;
+    private final FileChannel index;
+    private final AtomicReferenceArray<SemulatorEngine.ExecutionHistory> tail;
+    private volatile MappedByteBuffer[] dataSegments;
+    private volatile MappedByteBuffer[] indexSegments;
+    private volatile int size;
+    private volatile boolean cleared;
+    private long dataEnd;
+    
+    private MappedHistoryLog(String filePath, FileChannel data, FileChannel index, int tailSize) {
+        this.filePath = filePath;
+        this.data = data;
+        this.index = index;
+        this.tail = new AtomicReferenceArray<>(tailSize);
+        this.dataSegments = new MappedByteBuffer[0];
+        this.indexSegments = new MappedByteBuffer[0];
+    }
+    
+    /**
+     * Open the history file at a path, creating it if it does not exist, and keep the last
+     * {@code tailSize} records in memory
+     */
+    static MappedHistoryLog open(String filePath, int tailSize) throws IOException {
+        return open(filePath, tailSize, false);
+    }
+    
+    /**
+     * Open the history file at a path, discarding any records in it if {@code fresh}
+     */
+    private static MappedHistoryLog open(String filePath, int tailSize, boolean fresh) throws IOException {
+        if (tailSize < 0) {
+            throw new IllegalArgumentException("History tail size cannot be negative: " + tailSize);
+        }
+        Path dataPath = Paths.get(filePath);
+        Path indexPath = Paths.get(filePath + INDEX_SUFFIX);
+        
+        // Check existing files before opening them for writing, since mapping a segment grows the file
+        boolean created = fresh || !Files.exists(dataPath) || Files.size(dataPath) == 0;
+        if (!fresh && (created ? Files.exists(indexPath) && Files.size(indexPath) > 0
+                : !hasHeader(dataPath, DATA_MAGIC) || !hasHeader(indexPath, INDEX_MAGIC))) {
+            throw new IllegalArgumentException("Not an execution history file: " + filePath);
+        }
+        
+        FileChannel data = FileChannel.open(dataPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel index;
+        try {
+            index = FileChannel.open(indexPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+        
+        MappedHistoryLog log = new MappedHistoryLog(filePath, data, index, tailSize);
+        try {
+            log.recover(created);
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        return log;
+    }
+    
+    /**
+     * Check that a file starts with the given magic number and the current version
+     */
+    private static boolean hasHeader(Path path, int magic) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) < INDEX_HEADER_BYTES) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is complete
+            }
+        }
+        return header.getInt(0) == magic && header.getInt(Integer.BYTES) == VERSION;
+    }
+    
+    /**
+     * Write the headers of a new file, or find the end of the records in an existing one
+     */
+    private void recover(boolean created) throws IOException {
+        MappedByteBuffer dataHeader = dataSegment(0);
+        MappedByteBuffer indexHeader = indexSegment(0);
+        if (created) {
+            dataHeader.putInt(0, DATA_MAGIC);
+            dataHeader.putInt(Integer.BYTES, VERSION);
+            indexHeader.putInt(0, INDEX_MAGIC);
+            indexHeader.putInt(Integer.BYTES, VERSION);
+            indexHeader.putLong(COUNT_POSITION, 0);
+            dataEnd = DATA_HEADER_BYTES;
+            return;
+        }
+        
+        long count = indexHeader.getLong(COUNT_POSITION);
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Corrupt execution history file: " + filePath);
+        }
+        
+        int records = (int) count;
+        dataEnd = DATA_HEADER_BYTES;
+        if (records > 0) {
+            long offset = offsetOf(records - 1);
+            MappedByteBuffer segment = dataSegment(offset);
+            int position = position(offset);
+            dataEnd = offset + recordBytes(segment.getInt(position + INPUT_COUNT), segment.getInt(position + NAME_LENGTH));
+        }
+        for (int i = Math.max(0, records - tail.length()); i < records; i++) {
+            tail.set(i % tail.length(), decode(i));
+        }
+        size = records;
+    }
+    
+    @Override
+    public synchronized SemulatorEngine.ExecutionHistory append(String programName, int expansionDegree,
+                                                                int[] inputs, int output, int cycles) {
+        int recordIndex = size;
+        if (cleared) {
+            // A run that finishes as the history is cleared is dropped, as from a cleared in-memory store
+            return new SemulatorEngine.ExecutionHistory(recordIndex + 1, programName, expansionDegree, inputs, output, cycles);
+        }
+        if (recordIndex == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Execution history is full");
+        }
+        byte[] name = programName == null ? null : programName.getBytes(StandardCharsets.UTF_8);
+        long length = recordBytes(inputs.length, name == null ? -1 : name.length);
+        if (length > SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Run too large to record: " + inputs.length + " inputs");
+        }
+        
+        // Start a new segment rather than split the record
+        long offset = dataEnd;
+        if ((offset & SEGMENT_MASK) + length > SEGMENT_BYTES) {
+            offset = (offset | SEGMENT_MASK) + 1;
+        }
+        
+        SemulatorEngine.ExecutionHistory record =
+            new SemulatorEngine.ExecutionHistory(recordIndex + 1, programName, expansionDegree, inputs, output, cycles);
+        try {
+            MappedByteBuffer segment = dataSegment(offset);
+            int position = position(offset);
+            segment.putInt(position, record.getRunNumber());
+            segment.putInt(position + Integer.BYTES, expansionDegree);
+            segment.putInt(position + 2 * Integer.BYTES, output);
+            segment.putInt(position + 3 * Integer.BYTES, cycles);
+            segment.putInt(position + INPUT_COUNT, inputs.length);
+            segment.putInt(position + NAME_LENGTH, name == null ? -1 : name.length);
+            for (int i = 0; i < inputs.length; i++) {
+                segment.putInt(position + RECORD_HEADER_BYTES + i * Integer.BYTES, inputs[i]);
+            }
+            if (name != null) {
+                segment.put(position + RECORD_HEADER_BYTES + inputs.length * Integer.BYTES, name);
+            }
+            
+            long entry = INDEX_HEADER_BYTES + (long) recordIndex * Long.BYTES;
+            indexSegment(entry).putLong(position(entry), offset);
+            indexSegment(0).putLong(COUNT_POSITION, recordIndex + 1L);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write execution history file: " + filePath, e);
+        }
+        
+        dataEnd = offset + length;
+        if (tail.length() > 0) {
+            tail.set(recordIndex % tail.length(), record);
+        }
+        size = recordIndex + 1;
+        return record;
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public SemulatorEngine.ExecutionHistory get(int recordIndex) {
+        checkNotCleared();
+        int count = size;
+        if (recordIndex < 0 || recordIndex >= count) {
+            throw new IndexOutOfBoundsException("History index out of bounds: " + recordIndex);
+        }
+        if (recordIndex >= count - tail.length()) {
+            // The slot may already hold a newer record, which has a different run number
+            SemulatorEngine.ExecutionHistory record = tail.get(recordIndex % tail.length());
+            if (record != null && record.getRunNumber() == recordIndex + 1) {
+                return record;
+            }
+        }
+        SemulatorEngine.ExecutionHistory record;
+        try {
+            record = decode(recordIndex);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read execution history file: " + filePath, e);
+        }
+        checkNotCleared();
+        return record;
+    }
+    
+    @Override
+    public int getValue(int recordIndex, HistoryColumn column) {
+        long offset = checkedOffsetOf(recordIndex);
+        int field;
+        switch (column) {
+            case RUN_NUMBER:
+                field = 0;
+                break;
+            case DEGREE:
+                field = 1;
+                break;
+            case OUTPUT:
+                field = 2;
+                break;
+            case CYCLES:
+                field = 3;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown history column: " + column);
+        }
+        return readInt(offset, field * Integer.BYTES);
+    }
+    
+    @Override
+    public int getInputCount(int recordIndex) {
+        return readInt(checkedOffsetOf(recordIndex), INPUT_COUNT);
+    }
+    
+    @Override
+    public int getInput(int recordIndex, int input) {
+        long offset = checkedOffsetOf(recordIndex);
+        if (input < 0 || input >= readInt(offset, INPUT_COUNT)) {
+            throw new IndexOutOfBoundsException("Input index out of bounds: " + input);
+        }
+        return readInt(offset, RECORD_HEADER_BYTES + input * Integer.BYTES);
+    }
+    
+    @Override
+    public String getProgramName(int recordIndex) {
+        long offset = checkedOffsetOf(recordIndex);
+        String name;
+        try {
+            name = decodeName(dataSegment(offset), position(offset));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read execution history file: " + filePath, e);
+        }
+        checkNotCleared();
+        return name;
+    }
+    
+    /**
+     * The file keeps no indexes, so queries scan it
+     */
+    @Override
+    public int[] rowsWithDegree(int expansionDegree) {
+        return null;
+    }
+    
+    @Override
+    public int[] rowsOfProgram(String programName) {
+        return null;
+    }
+    
+    @Override
+    public List<SemulatorEngine.ExecutionHistory> view() {
+        return new HistoryRows(this, size);
+    }
+    
+    /**
+     * Start the files over in a new log with the same tail size, which later records are appended to.
+     * The files keep their size and are written over, so this log and its views fail from now on.
+     */
+    @Override
+    public synchronized HistoryStore cleared() {
+        checkNotCleared();
+        if (!data.isOpen()) {
+            throw new IllegalStateException("Execution history file is closed: " + filePath);
+        }
+        cleared = true;
+        try {
+            closeChannels();
+            return open(filePath, tail.length(), true);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write execution history file: " + filePath, e);
+        }
+    }
+    
+    /**
+     * Flush the mapped files to disk and close them
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (cleared) {
+            // The new log owns the files now
+            return;
+        }
+        try {
+            for (MappedByteBuffer segment : dataSegments) {
+                segment.force();
+            }
+            for (MappedByteBuffer segment : indexSegments) {
+                segment.force();
+            }
+        } finally {
+            closeChannels();
+        }
+    }
+    
+    private void closeChannels() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+    
+    /**
+     * Fail if the log was cleared, which readers check again after reading, since the records
+     * may have been written over while they were read
+     */
+    private void checkNotCleared() {
+        if (cleared) {
+            throw new IllegalStateException("Execution history was cleared after this view was taken");
+        }
+    }
+    
+    private SemulatorEngine.ExecutionHistory decode(int recordIndex) throws IOException {
+        long offset = offsetOf(recordIndex);
+        MappedByteBuffer segment = dataSegment(offset);
+        int position = position(offset);
+        int[] inputs = new int[segment.getInt(position + INPUT_COUNT)];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = segment.getInt(position + RECORD_HEADER_BYTES + i * Integer.BYTES);
+        }
+        return new SemulatorEngine.ExecutionHistory(segment.getInt(position), decodeName(segment, position),
+                segment.getInt(position + Integer.BYTES), inputs,
+                segment.getInt(position + 2 * Integer.BYTES), segment.getInt(position + 3 * Integer.BYTES));
+    }
+    
+    private static String decodeName(MappedByteBuffer segment, int position) {
+        int length = segment.getInt(position + NAME_LENGTH);
+        if (length < 0) {
+            return null;
+        }
+        byte[] name = new byte[length];
+        segment.get(position + RECORD_HEADER_BYTES + segment.getInt(position + INPUT_COUNT) * Integer.BYTES, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Read an int field of the record at an offset
+     */
+    private int readInt(long offset, int field) {
+        int value;
+        try {
+            value = dataSegment(offset).getInt(position(offset) + field);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read execution history file: " + filePath, e);
+        }
+        checkNotCleared();
+        return value;
+    }
+    
+    private long checkedOffsetOf(int recordIndex) {
+        checkNotCleared();
+        if (recordIndex < 0 || recordIndex >= size) {
+            throw new IndexOutOfBoundsException("History index out of bounds: " + recordIndex);
+        }
+        try {
+            return offsetOf(recordIndex);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read execution history file: " + filePath, e);
+        }
+    }
+    
+    private long offsetOf(int recordIndex) throws IOException {
+        long entry = INDEX_HEADER_BYTES + (long) recordIndex * Long.BYTES;
+        return indexSegment(entry).getLong(position(entry));
+    }
+    
+    /**
+     * Get the size of a record, rounding the name up to a whole int so the next record is aligned
+     */
+    private static long recordBytes(int inputCount, int nameLength) {
+        long nameBytes = nameLength < 0 ? 0 : ((long) nameLength + Integer.BYTES - 1) & -Integer.BYTES;
+        return RECORD_HEADER_BYTES + (long) inputCount * Integer.BYTES + nameBytes;
+    }
+    
+    private static int position(long offset) {
+        return (int) (offset & SEGMENT_MASK);
+    }
+    
+    private MappedByteBuffer dataSegment(long offset) throws IOException {
+        MappedByteBuffer[] segments = dataSegments;
+        int segment = (int) (offset >>> SEGMENT_BITS);
+        if (segment < segments.length) {
+            return segments[segment];
+        }
+        segments = mapSegments(data, segment);
+        dataSegments = segments;
+        return segments[segment];
+    }
+    
+    private MappedByteBuffer indexSegment(long offset) throws IOException {
+        MappedByteBuffer[] segments = indexSegments;
+        int segment = (int) (offset >>> SEGMENT_BITS);
+        if (segment < segments.length) {
+            return segments[segment];
+        }
+        segments = mapSegments(index, segment);
+        indexSegments = segments;
+        return segments[segment];
+    }
+    
+    /**
+     * Map every segment of a file up to and including the given one, growing the file if needed.
+     * Readers only ask for segments below the published end, which are always already mapped,
+     * so only appends and recovery, which hold the lock, get here.
+     */
+    private synchronized MappedByteBuffer[] mapSegments(FileChannel channel, int segment) throws IOException {
+        MappedByteBuffer[] current = channel == data ? dataSegments : indexSegments;
+        if (segment < current.length) {
+            return current;
+        }
+        MappedByteBuffer[] grown = Arrays.copyOf(current, segment + 1);
+        for (int i = current.length; i <= segment; i++) {
+            grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * SEGMENT_BYTES, SEGMENT_BYTES);
+        }
+        return grown;
+    }
+}
@@ -0,0 +1,218 @@
+package com.semulator.engine;
+
+import com.semulator.engine.program.Program;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of parsed, validated programs keyed by the content of the file they were loaded from.
+ * Loading the same content again, from any path, returns the program that is already parsed.
+ * Each path also remembers the modification time and size it was last hashed at, so an
+ * unchanged file is found without reading it; once the file changes it is hashed again.
+ * The least recently used program is evicted when the cache is full.
+ */
+public class ProgramCache {
+    
+    /**
+     * Number of programs kept by the cache shared between engines
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+    
+    private static final ProgramCache SHARED = new ProgramCache(DEFAULT_CAPACITY);
+    
+    private final int capacity;
+    private final LinkedHashMap<String, Program> programs;
+    private final Map<String, FileState> files;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    
+    /**
+     * Create a cache holding at most {@code capacity} programs
+     */
+    public ProgramCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.programs = new LinkedHashMap<>(16, 0.75f, true);
+        this.files = new HashMap<>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+    
+    /**
+     * Get the cache shared by every engine created without one of its own
+     */
+    public static ProgramCache getShared() {
+        return SHARED;
+    }
+    
+    /**
+     * Get the cached program for a file, loading it with the given loader on a miss.
+     * Programs that fail to load are not cached.
+     */
+    public Program load(String filePath, Loader loader) throws Exception {
+        File file = new File(filePath);
+        if (!file.isFile()) {
+            // Let the loader report the missing file
+            return loader.load(filePath);
+        }
+        
+        String path = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        
+        // Unchanged since it was last hashed: no need to read the file
+        Program program = lookup(path, lastModified, length);
+        if (program != null) {
+            hits.incrementAndGet();
+            return program;
+        }
+        
+        String key = contentKey(file, lastModified);
+        synchronized (this) {
+            program = programs.get(key);
+            if (program != null) {
+                files.put(path, new FileState(lastModified, length, key));
+            }
+        }
+        if (program != null) {
+            hits.incrementAndGet();
+            return program;
+        }
+        
+        misses.incrementAndGet();
+        program = loader.load(filePath);
+        
+        // Only cache the program if the file did not change while it was being loaded
+        if (file.lastModified() == lastModified && file.length() == length) {
+            synchronized (this) {
+                programs.put(key, program);
+                files.put(path, new FileState(lastModified, length, key));
+                evict();
+            }
+        }
+        return program;
+    }
+    
+    /**
+     * Get the program recorded for a path if the file still has the recorded state
+     */
+    private synchronized Program lookup(String path, long lastModified, long length) {
+        FileState state = files.get(path);
+        if (state == null) {
+            return null;
+        }
+        if (state.lastModified != lastModified || state.length != length) {
+            // The file changed; forget what it used to contain
+            files.remove(path);
+            return null;
+        }
+        return programs.get(state.key);
+    }
+    
+    /**
+     * Drop least recently used programs beyond the capacity, and paths that refer to them
+     */
+    private void evict() {
+        while (programs.size() > capacity) {
+            String eldest = programs.keySet().iterator().next();
+            programs.remove(eldest);
+            files.values().removeIf(state -> state.key.equals(eldest));
+        }
+    }
+    
+    /**
+     * Forget the program loaded from a path, so the next load reads the file again
+     */
+    public synchronized void invalidate(String filePath) {
+        FileState state = files.remove(new File(filePath).getAbsolutePath());
+        if (state != null) {
+            programs.remove(state.key);
+            files.values().removeIf(other -> other.key.equals(state.key));
+        }
+    }
+    
+    /**
+     * Remove every program from the cache
+     */
+    public synchronized void clear() {
+        programs.clear();
+        files.clear();
+    }
+    
+    /**
+     * Get the number of cached programs
+     */
+    public synchronized int size() {
+        return programs.size();
+    }
+    
+    /**
+     * Get the maximum number of cached programs
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Get the number of loads answered from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+    
+    /**
+     * Get the number of loads that had to parse the file
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+    
+    /**
+     * Key a file by a hash of its content, or by path and modification time if it cannot be read
+     */
+    private static String contentKey(File file, long lastModified) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath()));
+            StringBuilder key = new StringBuilder("sha256:");
+            for (byte b : digest) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return "file:" + file.getAbsolutePath() + "@" + lastModified;
+        }
+    }
+    
+    /**
+     * Loads a program from a file on a cache miss
+     */
+    @FunctionalInterface
+    public interface Loader {
+        Program load(String filePath) throws Exception;
+    }
+    
+    /**
+     * State of a file when its content was last hashed
+     */
+    private static class FileState {
+        private final long lastModified;
+        private final long length;
+        private final String key;
+        
+        FileState(long lastModified, long length, String key) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.semulator.engine;
+
+import com.semulator.engine.execution.ExecutionLimits;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.program.LinkedProgram;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of finished runs keyed by the linked program, the expansion degree and the input vector.
+ * S programs are deterministic, so a run with the same key always ends with the same output,
+ * cycles and variables and can be answered without executing it again. Programs are matched by
+ * their code rather than by identity, so runs of the same program loaded twice share entries;
+ * the program's fingerprint only picks the hash bucket, and its instructions are compared in full.
+ * <p>
+ * The cache is bounded both by its number of entries and by their total weight, counted as one
+ * per entry plus one per input and per final variable, so a few runs with many variables cannot
+ * crowd out the memory of many small ones. The least recently used runs are evicted first.
+ * Only runs that completed are cached, since a run stopped by a limit depends on that limit.
+ */
+public class ResultCache {
+    
+    private final int maxEntries;
+    private final long maxWeight;
+    private final LinkedHashMap<Key, ExecutionResult> results;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+    private long weight;
+    
+    /**
+     * Create a cache holding at most {@code maxEntries} runs with a total weight of at most {@code maxWeight}
+     */
+    public ResultCache(int maxEntries, long maxWeight) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + maxEntries);
+        }
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("Cache weight limit must be positive: " + maxWeight);
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.results = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+    }
+    
+    /**
+     * Get the cached result of a run, or null if there is none or the run as cached would have
+     * been stopped by the given limits. Hits and misses are counted.
+     */
+    public ExecutionResult get(LinkedProgram program, int expansionDegree, int[] inputs, ExecutionLimits limits) {
+        ExecutionResult result;
+        synchronized (this) {
+            result = results.get(new Key(program, expansionDegree, inputs));
+        }
+        if (result == null || !fits(result, limits)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return result;
+    }
+    
+    /**
+     * Cache the result of a run if it completed, evicting least recently used runs beyond the bounds
+     */
+    public void put(LinkedProgram program, int expansionDegree, int[] inputs, ExecutionResult result) {
+        if (!result.isComplete()) {
+            return;
+        }
+        Key key = new Key(program, expansionDegree, inputs.clone());
+        long entryWeight = weightOf(key, result);
+        if (entryWeight > maxWeight) {
+            return;
+        }
+        
+        synchronized (this) {
+            ExecutionResult previous = results.put(key, result);
+            if (previous != null) {
+                weight -= weightOf(key, previous);
+            }
+            weight += entryWeight;
+            evict();
+        }
+    }
+    
+    /**
+     * Drop least recently used runs until both bounds hold
+     */
+    private void evict() {
+        Iterator<Map.Entry<Key, ExecutionResult>> eldest = results.entrySet().iterator();
+        while (results.size() > maxEntries || weight > maxWeight) {
+            Map.Entry<Key, ExecutionResult> entry = eldest.next();
+            weight -= weightOf(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Check that the limits would not have stopped the cached run. Its step count is not kept,
+     * so runs with a step limit are always executed.
+     */
+    private static boolean fits(ExecutionResult result, ExecutionLimits limits) {
+        if (limits.getMaxSteps() > 0) {
+            return false;
+        }
+        if (limits.getMaxCycles() > 0 && result.getTotalCycles() > limits.getMaxCycles()) {
+            return false;
+        }
+        return limits.getCancellation() == null || !limits.getCancellation().isCancelled();
+    }
+    
+    private static long weightOf(Key key, ExecutionResult result) {
+        return 1L + key.inputs.length + result.getUsedVariables().size();
+    }
+    
+    /**
+     * Remove every run from the cache; the hit and miss counts are kept
+     */
+    public synchronized void clear() {
+        results.clear();
+        weight = 0;
+    }
+    
+    /**
+     * Get the number of cached runs
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+    
+    /**
+     * Get the total weight of the cached runs
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+    
+    /**
+     * Get the maximum number of cached runs
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+    
+    /**
+     * Get the maximum total weight of the cached runs
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+    
+    /**
+     * Get the number of runs answered from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+    
+    /**
+     * Get the number of runs that had to be executed
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+    
+    /**
+     * Get the number of runs evicted to keep the cache within its bounds
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+    
+    /**
+     * Get the fraction of lookups answered from the cache, or 0 if there were none
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+    
+    /**
+     * Linked program, expansion degree and inputs of a run
+     */
+    private static final class Key {
+        private final LinkedProgram program;
+        private final int expansionDegree;
+        private final int[] inputs;
+        private final int hash;
+        
+        Key(LinkedProgram program, int expansionDegree, int[] inputs) {
+            this.program = program;
+            this.expansionDegree = expansionDegree;
+            this.inputs = inputs;
+            this.hash = 31 * (31 * Long.hashCode(program.getFingerprint()) + expansionDegree) + Arrays.hashCode(inputs);
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return expansionDegree == key.expansionDegree && Arrays.equals(inputs, key.inputs)
+                    && program.hasSameCode(key.program);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -1,92 +1,620 @@
 package com.semulator.engine;
 
+import com.semulator.engine.execution.ExecutionLimits;
+import com.semulator.engine.execution.ExecutionMode;
 import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.parser.BinaryProgramFormat;
 import com.semulator.engine.parser.ProgramParser;
+import com.semulator.engine.program.Checkpointer;
+import com.semulator.engine.program.ExecutionCheckpoint;
+import com.semulator.engine.program.ExecutionProfile;
+import com.semulator.engine.program.ExecutionTrace;
+import com.semulator.engine.program.ExpansionView;
+import com.semulator.engine.program.LinkedProgram;
 import com.semulator.engine.program.Program;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 /**
  * Main engine class for the S-Emulator system.
  * Manages program loading, execution, and history.
+ * An engine can be shared between threads: the current program is swapped atomically
+ * and history is kept in a lock-free append-only log.
  */
 public class SemulatorEngine {
     
-    private Program currentProgram;
-    private final List<ExecutionHistory> executionHistory;
+    private final AtomicReference<Program> currentProgram;
+    private final AtomicReference<HistoryStore> executionHistory;
+    private final AtomicReference<ExecutionProfile> lastProfile;
+    private final AtomicReference<ExecutionTrace> lastTrace;
+    private final AtomicLong runCount;
+    private volatile int traceInterval;
+    private volatile int traceCapacity;
+    private volatile Checkpointing checkpointing;
+    private volatile ExecutionMode executionMode;
+    private volatile ExecutionLimits executionLimits;
+    private volatile long maxExpansionSize;
+    private volatile ResultCache resultCache;
+    private final ForkJoinPool batchPool;
+    private final ProgramCache programCache;
     
     public SemulatorEngine() {
-        this.currentProgram = null;
-        this.executionHistory = new ArrayList<>();
+        this(ForkJoinPool.commonPool());
     }
     
     /**
-     * Load a program from an XML file
+     * Create an engine that runs batch executions on the given fork-join pool
+     */
+    public SemulatorEngine(ForkJoinPool batchPool) {
+        this(batchPool, ProgramCache.getShared());
+    }
+    
+    /**
+     * Create an engine that runs batch executions on the given pool and loads programs through the given cache
+     */
+    public SemulatorEngine(ForkJoinPool batchPool, ProgramCache programCache) {
+        this.currentProgram = new AtomicReference<>();
+        this.executionHistory = new AtomicReference<>(new ColumnarHistoryStore());
+        this.lastProfile = new AtomicReference<>();
+        this.lastTrace = new AtomicReference<>();
+        this.runCount = new AtomicLong();
+        this.executionMode = ExecutionMode.ADAPTIVE;
+        this.executionLimits = ExecutionLimits.NONE;
+        this.maxExpansionSize = Long.MAX_VALUE;
+        this.batchPool = batchPool;
+        this.programCache = programCache;
+    }
+    
+    /**
+     * Load a program from an XML file or a binary program file written by ProgramConverter.
+     * A file whose content was loaded before is served from the program cache without parsing.
      */
     public LoadResult loadProgram(String filePath) {
         try {
-            Program program = ProgramParser.parseProgram(filePath);
-            this.currentProgram = program;
+            Program program = isProgramFile(filePath)
+                    ? programCache.load(filePath, SemulatorEngine::readProgramFile)
+                    : ProgramParser.parseProgram(filePath);
+            currentProgram.set(program);
+            lastProfile.set(null);
+            lastTrace.set(null);
             return new LoadResult(true, "Program loaded successfully: " + program.getName());
         } catch (Exception e) {
             return new LoadResult(false, "Failed to load program: " + e.getMessage());
         }
     }
     
+    /**
+     * Check if a path names a file in one of the program formats, which are the only ones cached
+     */
+    private static boolean isProgramFile(String filePath) {
+        return filePath.toLowerCase().endsWith(".xml") || BinaryProgramFormat.isBinaryProgram(filePath);
+    }
+    
+    /**
+     * Read and validate a program file in either format
+     */
+    private static Program readProgramFile(String filePath) throws Exception {
+        return BinaryProgramFormat.isBinaryProgram(filePath)
+                ? BinaryProgramFormat.read(filePath)
+                : ProgramParser.parseProgram(filePath);
+    }
+    
+    /**
+     * Get the cache programs are loaded through
+     */
+    public ProgramCache getProgramCache() {
+        return programCache;
+    }
+    
     /**
      * Get the currently loaded program
      */
     public Program getCurrentProgram() {
-        return currentProgram;
+        return currentProgram.get();
     }
     
     /**
      * Check if a program is currently loaded
      */
     public boolean hasProgram() {
-        return currentProgram != null;
+        return currentProgram.get() != null;
+    }
+    
+    /**
+     * Get the execution tier used for program runs
+     */
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+    
+    /**
+     * Select the execution tier used for program runs
+     */
+    public void setExecutionMode(ExecutionMode executionMode) {
+        if (executionMode == null) {
+            throw new IllegalArgumentException("Execution mode is required");
+        }
+        this.executionMode = executionMode;
+    }
+    
+    /**
+     * Get the limits applied to program runs that do not pass their own
+     */
+    public ExecutionLimits getExecutionLimits() {
+        return executionLimits;
+    }
+    
+    /**
+     * Set the limits applied to program runs that do not pass their own
+     */
+    public void setExecutionLimits(ExecutionLimits executionLimits) {
+        if (executionLimits == null) {
+            throw new IllegalArgumentException("Execution limits are required");
+        }
+        this.executionLimits = executionLimits;
+    }
+    
+    /**
+     * Get the largest expansion, in instructions, the engine will build
+     */
+    public long getMaxExpansionSize() {
+        return maxExpansionSize;
+    }
+    
+    /**
+     * Set the largest expansion, in instructions, the engine will build.
+     * Larger expansions are refused before any instruction is built; INTERPRETED runs on a
+     * lazy expansion view never build the expansion and are not limited.
+     */
+    public void setMaxExpansionSize(long maxExpansionSize) {
+        if (maxExpansionSize < 1) {
+            throw new IllegalArgumentException("Maximum expansion size must be positive: " + maxExpansionSize);
+        }
+        this.maxExpansionSize = maxExpansionSize;
+    }
+    
+    /**
+     * Get the directory executeProgram writes checkpoint files to, or null if checkpointing is off
+     */
+    public Path getCheckpointDirectory() {
+        Checkpointing checkpoints = checkpointing;
+        return checkpoints != null ? checkpoints.directory : null;
+    }
+    
+    /**
+     * Get the number of steps between checkpoints, or 0 if checkpointing is off
+     */
+    public long getCheckpointInterval() {
+        Checkpointing checkpoints = checkpointing;
+        return checkpoints != null ? checkpoints.interval : 0;
+    }
+    
+    /**
+     * Write a checkpoint of every executeProgram run each {@code interval} steps, so a run that
+     * is stopped or crashes can be continued with resumeProgram. Each run gets its own file in the
+     * directory, named after a run id, and its result reports the file.
+     * Checkpointed runs use the register interpreter, since compiled and optimized code cannot stop part way.
+     */
+    public void setCheckpointing(Path directory, long interval) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Checkpoint directory is required");
+        }
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalArgumentException("Checkpoint directory does not exist: " + directory);
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+        }
+        this.checkpointing = new Checkpointing(directory, interval);
+    }
+    
+    /**
+     * Stop writing checkpoints of runs
+     */
+    public void stopCheckpointing() {
+        this.checkpointing = null;
+    }
+    
+    /**
+     * Get the cache of finished runs executeProgram answers repeated runs from, or null if there is none
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+    
+    /**
+     * Answer executeProgram runs already seen from the given cache, or always execute if it is null.
+     * A cache can be shared between engines, since runs are keyed by the program's content.
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+    
+    /**
+     * Get the number of runs between traced runs, or 0 if runs are not sampled
+     */
+    public int getTraceInterval() {
+        return traceInterval;
+    }
+    
+    /**
+     * Trace every {@code interval}-th run of executeProgram into an in-memory trace keeping its
+     * last {@code capacity} steps, or stop sampling if the interval is 0.
+     * Sampled runs step through the register interpreter whatever the execution mode.
+     */
+    public void setTraceSampling(int interval, int capacity) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("Trace interval cannot be negative: " + interval);
+        }
+        if (interval > 0 && capacity < 1) {
+            throw new IllegalArgumentException("Trace capacity must be positive: " + capacity);
+        }
+        this.traceCapacity = capacity;
+        this.traceInterval = interval;
+    }
+    
+    /**
+     * Get the trace of the most recent traced run of the current program, or null if none was traced
+     */
+    public ExecutionTrace getLastTrace() {
+        return lastTrace.get();
     }
     
     /**
      * Execute the current program with given inputs
      */
     public ExecutionResult executeProgram(int[] inputs, int expansionDegree) {
-        if (currentProgram == null) {
-            throw new IllegalStateException("No program loaded");
-        }
+        return executeProgram(inputs, expansionDegree, executionLimits);
+    }
+    
+    /**
+     * Execute the current program with given inputs, stopping early if a limit is reached.
+     * A stopped run is recorded in the history with its partial output and cycles.
+     * INTERPRETED runs of an expansion execute on a lazy expansion view instead of the expanded program.
+     * A checkpointed run's result reports its checkpoint file, unless it finished before the first checkpoint.
+     * With a result cache set, a run already cached is answered from it and still recorded in the history.
+     */
+    public ExecutionResult executeProgram(int[] inputs, int expansionDegree, ExecutionLimits limits) {
+        ExecutionMode mode = executionMode;
+        int interval = traceInterval;
+        Checkpointing checkpoints = checkpointing;
+        Program program = requireProgram();
+        boolean sampled = interval > 0 && runCount.incrementAndGet() % interval == 0;
         
-        Program programToExecute = currentProgram;
-        if (expansionDegree > 0) {
-            programToExecute = currentProgram.expandToDegree(expansionDegree);
+        // Traced and checkpointed runs are executed for their side effects, so they skip the cache
+        ResultCache cache = sampled || checkpoints != null ? null : resultCache;
+        LinkedProgram linked = cache != null ? program.link() : null;
+        ExecutionResult result = cache != null ? cache.get(linked, expansionDegree, inputs, limits) : null;
+        if (result != null) {
+            recordHistory(program.getName(), expansionDegree, inputs, result);
+            return result;
         }
         
-        ExecutionResult result = programToExecute.execute(inputs);
+        if (sampled) {
+            ExecutionTrace trace = ExecutionTrace.inMemory(traceCapacity);
+            result = programForDegree(expansionDegree).trace(inputs, limits, trace);
+            lastTrace.set(trace);
+        } else if (checkpoints != null) {
+            Checkpointer checkpointer = checkpoints.newRun(expansionDegree);
+            try {
+                result = programForDegree(expansionDegree).executeCheckpointed(inputs, mode, limits, checkpointer);
+            } finally {
+                checkpoints.release(checkpointer);
+            }
+            result = checkpointed(result, checkpointer);
+        } else if (mode == ExecutionMode.INTERPRETED && expansionDegree > 0) {
+            result = program.expansionView(expansionDegree).execute(inputs, limits);
+        } else {
+            result = programForDegree(expansionDegree).execute(inputs, mode, limits);
+        }
+        if (cache != null) {
+            cache.put(linked, expansionDegree, inputs, result);
+        }
         
         // Record execution history
-        executionHistory.add(new ExecutionHistory(
-            executionHistory.size() + 1,
+        recordHistory(program.getName(), expansionDegree, inputs, result);
+        
+        return result;
+    }
+    
+    /**
+     * Resume a run of the current program from a checkpoint file, on the expansion it was taken on.
+     * If checkpointing is on, the resumed run keeps writing checkpoints to the same file. The finished
+     * run is recorded in the history with the inputs it was started with.
+     *
+     * @throws IllegalArgumentException if the checkpoint was taken on a different program
+     */
+    public ExecutionResult resumeProgram(String checkpointPath, ExecutionLimits limits) throws IOException {
+        ExecutionCheckpoint checkpoint = ExecutionCheckpoint.read(checkpointPath);
+        int expansionDegree = checkpoint.getExpansionDegree();
+        Checkpointing checkpoints = checkpointing;
+        Checkpointer checkpointer = checkpoints != null
+                ? new Checkpointer(checkpointPath, checkpoints.interval, expansionDegree) : null;
+        Program program = programForDegree(expansionDegree);
+        ExecutionResult result = checkpointed(program.resume(checkpoint, executionMode, limits, checkpointer), checkpointer);
+        recordHistory(program.getSourceName(), expansionDegree, checkpoint.getInputs(), result);
+        return result;
+    }
+    
+    /**
+     * Execute the current program with profiling, counting how often each instruction runs.
+     * Profiled runs always step through the expanded program on the register interpreter,
+     * whatever the execution mode. The run is recorded in the history like any other, and its
+     * profile is kept until the next profiled run or program load.
+     */
+    public ExecutionProfile profileProgram(int[] inputs, int expansionDegree, ExecutionLimits limits) {
+        Program program = programForDegree(expansionDegree);
+        ExecutionProfile profile = program.profile(inputs, limits);
+        lastProfile.set(profile);
+        recordHistory(program.getSourceName(), expansionDegree, inputs, profile.getResult());
+        return profile;
+    }
+    
+    /**
+     * Execute the current program, recording its steps into the given trace.
+     * The run is recorded in the history like any other, and the trace is kept as the last trace.
+     */
+    public ExecutionResult traceProgram(int[] inputs, int expansionDegree, ExecutionLimits limits, ExecutionTrace trace) {
+        Program program = programForDegree(expansionDegree);
+        ExecutionResult result = program.trace(inputs, limits, trace);
+        lastTrace.set(trace);
+        recordHistory(program.getSourceName(), expansionDegree, inputs, result);
+        return result;
+    }
+    
+    /**
+     * Get the profile of the most recent profiled run of the current program, rolled up to the
+     * program as loaded, or null if it has not been profiled
+     */
+    public ExecutionProfile getLastProfile() {
+        ExecutionProfile profile = lastProfile.get();
+        Program program = currentProgram.get();
+        return profile != null && program != null ? profile.rollUp(program) : null;
+    }
+    
+    /**
+     * Execute the current program once per input vector, in parallel across the batch pool.
+     * The program is expanded once and shared by all workers; results are returned in input order.
+     */
+    public List<ExecutionResult> executeBatch(List<int[]> inputs, int expansionDegree) {
+        return executeBatch(inputs.size(), inputs::get, expansionDegree);
+    }
+    
+    /**
+     * Execute the current program for {@code count} input vectors produced by a generator.
+     * The generator is called from worker threads and must be safe to call concurrently.
+     */
+    public List<ExecutionResult> executeBatch(int count, IntFunction<int[]> inputGenerator, int expansionDegree) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Batch size cannot be negative: " + count);
+        }
+        
+        Program programToExecute = programForDegree(expansionDegree);
+        ExecutionMode mode = executionMode;
+        ExecutionLimits limits = executionLimits;
+        int[][] batchInputs = new int[count][];
+        ExecutionResult[] results = new ExecutionResult[count];
+        
+        batchPool.submit(() -> IntStream.range(0, count).parallel().forEach(i -> {
+            batchInputs[i] = inputGenerator.apply(i);
+            results[i] = programToExecute.execute(batchInputs[i], mode, limits);
+        })).join();
+        
+        // Record history in input order once the whole batch has completed
+        for (int i = 0; i < count; i++) {
+            recordHistory(programToExecute.getSourceName(), expansionDegree, batchInputs[i], results[i]);
+        }
+        
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+    
+    /**
+     * Run the current program at every point of an input grid, in parallel across the batch pool
+     */
+    public SweepTable sweepProgram(InputGrid grid, int expansionDegree) {
+        return sweepProgram(grid, expansionDegree, executionLimits);
+    }
+    
+    /**
+     * Run the current program at every point of an input grid under the given per-run limits.
+     * The grid is split into contiguous blocks of points, one per task on the batch pool, and each
+     * run's output, cycles and stop reason go straight into the table. The program is expanded
+     * once, except that INTERPRETED runs of an expansion execute on the lazy expansion view, as
+     * single runs do. Sweep runs are not recorded in the history or the result cache.
+     */
+    public SweepTable sweepProgram(InputGrid grid, int expansionDegree, ExecutionLimits limits) {
+        SweepTable table = new SweepTable(grid);
+        ExecutionMode mode = executionMode;
+        ExpansionView view = mode == ExecutionMode.INTERPRETED && expansionDegree > 0
+                ? requireProgram().expansionView(expansionDegree) : null;
+        Program programToExecute = view == null ? programForDegree(expansionDegree) : null;
+        int points = table.size();
+        
+        // A few blocks per worker keeps them busy when some points run much longer than others
+        int blocks = (int) Math.min(points, batchPool.getParallelism() * 4L);
+        batchPool.submit(() -> IntStream.range(0, blocks).parallel().forEach(block -> {
+            int start = (int) ((long) points * block / blocks);
+            int end = (int) ((long) points * (block + 1) / blocks);
+            int[] inputs = new int[grid.getInputCount()];
+            grid.inputsAt(start, inputs);
+            for (int point = start; point < end; point++) {
+                ExecutionResult result = view != null
+                        ? view.execute(inputs, limits) : programToExecute.execute(inputs, mode, limits);
+                table.set(point, result.getOutput(), result.getTotalCycles(), result.getStopReason());
+                grid.advance(inputs);
+            }
+        })).join();
+        return table;
+    }
+    
+    /**
+     * Get the current program, failing if none is loaded
+     */
+    private Program requireProgram() {
+        Program program = currentProgram.get();
+        if (program == null) {
+            throw new IllegalStateException("No program loaded");
+        }
+        return program;
+    }
+    
+    /**
+     * Get the current program expanded to the requested degree
+     *
+     * @throws IllegalStateException if the expansion is larger than the maximum expansion size
+     */
+    private Program programForDegree(int expansionDegree) {
+        Program program = requireProgram();
+        if (expansionDegree > 0) {
+            long size = program.estimateExpansions().getInstructionCount(expansionDegree);
+            if (size > maxExpansionSize) {
+                throw new IllegalStateException("Expansion to degree " + expansionDegree + " has " + size
+                        + " instructions, more than the maximum of " + maxExpansionSize);
+            }
+            return program.expandToDegree(expansionDegree);
+        }
+        return program;
+    }
+    
+    /**
+     * Append a run to the execution history
+     */
+    private void recordHistory(String programName, int expansionDegree, int[] inputs, ExecutionResult result) {
+        executionHistory.get().append(
+            programName,
             expansionDegree,
             inputs,
             result.getOutput(),
             result.getTotalCycles()
-        ));
-        
-        return result;
+        );
     }
     
     /**
-     * Get execution history
+     * Get a read-only view of the execution history recorded so far, without copying it
      */
     public List<ExecutionHistory> getExecutionHistory() {
-        return new ArrayList<>(executionHistory);
+        return executionHistory.get().view();
+    }
+    
+    /**
+     * Get the number of runs in the execution history
+     */
+    public int getExecutionHistorySize() {
+        return executionHistory.get().size();
+    }
+    
+    /**
+     * Get up to {@code count} history records starting at position {@code from}, oldest first
+     */
+    public List<ExecutionHistory> getExecutionHistory(int from, int count) {
+        List<ExecutionHistory> history = executionHistory.get().view();
+        if (from < 0 || count < 0 || from > history.size()) {
+            throw new IllegalArgumentException("Invalid history page: " + count + " records from " + from);
+        }
+        return history.subList(from, (int) Math.min(history.size(), (long) from + count));
+    }
+    
+    /**
+     * Find the runs in the execution history that match a query, in the query's order.
+     * Matching runs are found when called; the records are read as the list is accessed.
+     */
+    public List<ExecutionHistory> queryHistory(HistoryQuery query) {
+        return query.run(executionHistory.get());
+    }
+    
+    /**
+     * Get cycle statistics of the runs matching a query, by expansion degree in ascending order
+     */
+    public Map<Integer, CycleStatistics> getCycleStatistics(HistoryQuery query) {
+        return query.cycleStatistics(executionHistory.get());
+    }
+    
+    /**
+     * Keep the execution history in a file from now on, holding only the last {@code tailSize}
+     * records in memory. Runs already in the file are kept and numbering continues after them;
+     * history recorded in memory before is dropped.
+     */
+    public void openHistoryFile(String filePath, int tailSize) throws IOException {
+        replaceHistory(MappedHistoryLog.open(filePath, tailSize));
+    }
+    
+    /**
+     * Close the history file, if one is open, and go back to an empty in-memory history
+     */
+    public void closeHistoryFile() throws IOException {
+        replaceHistory(new ColumnarHistoryStore());
+    }
+    
+    private void replaceHistory(HistoryStore store) throws IOException {
+        executionHistory.getAndSet(store).close();
     }
     
     /**
      * Clear execution history
      */
     public void clearHistory() {
-        executionHistory.clear();
+        executionHistory.updateAndGet(HistoryStore::cleared);
+    }
+    
+    /**
+     * Report the checkpoint file in the result of a run, if a checkpoint of it was written
+     */
+    private static ExecutionResult checkpointed(ExecutionResult result, Checkpointer checkpointer) {
+        if (checkpointer == null || checkpointer.getLastCheckpoint() == null) {
+            return result;
+        }
+        return result.withCheckpointFile(checkpointer.getFilePath());
+    }
+    
+    /**
+     * Checkpoint directory and interval, replaced as a whole so runs never see half of a change
+     */
+    private static class Checkpointing {
+        private final Path directory;
+        private final long interval;
+        
+        Checkpointing(Path directory, long interval) {
+            this.directory = directory;
+            this.interval = interval;
+        }
+        
+        /**
+         * Create a checkpointer for a new run, claiming a file for it whose name holds a unique run id
+         */
+        Checkpointer newRun(int expansionDegree) {
+            Path file;
+            try {
+                file = Files.createTempFile(directory, "run-", ".checkpoint");
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot create checkpoint file in " + directory, e);
+            }
+            return new Checkpointer(file.toString(), interval, expansionDegree);
+        }
+        
+        /**
+         * Delete the file claimed for a run that ended before its first checkpoint
+         */
+        void release(Checkpointer checkpointer) {
+            if (checkpointer.getLastCheckpoint() == null) {
+                try {
+                    Files.deleteIfExists(Paths.get(checkpointer.getFilePath()));
+                } catch (IOException e) {
+                    // The empty file is only clutter
+                }
+            }
+        }
     }
     
     /**
@@ -115,13 +643,19 @@ public class SemulatorEngine {
      */
     public static class ExecutionHistory {
         private final int runNumber;
+        private final String programName;
         private final int expansionDegree;
         private final int[] inputs;
         private final int output;
         private final int cycles;
         
         public ExecutionHistory(int runNumber, int expansionDegree, int[] inputs, int output, int cycles) {
+            this(runNumber, null, expansionDegree, inputs, output, cycles);
+        }
+        
+        public ExecutionHistory(int runNumber, String programName, int expansionDegree, int[] inputs, int output, int cycles) {
             this.runNumber = runNumber;
+            this.programName = programName;
             this.expansionDegree = expansionDegree;
             this.inputs = inputs.clone();
             this.output = output;
@@ -132,6 +666,10 @@ public class SemulatorEngine {
             return runNumber;
         }
         
+        public String getProgramName() {
+            return programName;
+        }
+        
         public int getExpansionDegree() {
             return expansionDegree;
         }
@@ -0,0 +1,133 @@
+package com.semulator.engine;
+
+import com.semulator.engine.execution.StopReason;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Results of a sweep over an input grid, kept in primitive arrays indexed by grid point:
+ * the output, the cycle count and the reason each run stopped.
+ */
+public class SweepTable {
+    
+    /**
+     * Largest number of points a table can hold
+     */
+    public static final int MAX_POINTS = Integer.MAX_VALUE - 8;
+    
+    private static final StopReason[] STOP_REASONS = StopReason.values();
+    
+    private final InputGrid grid;
+    private final int[] outputs;
+    private final int[] cycles;
+    private final byte[] stopReasons;
+    
+    /**
+     * Create an empty table with one row per point of the grid
+     */
+    SweepTable(InputGrid grid) {
+        if (grid.size() > MAX_POINTS) {
+            throw new IllegalArgumentException("Input grid has " + grid.size() + " points, more than the maximum of "
+                    + MAX_POINTS);
+        }
+        int points = (int) grid.size();
+        this.grid = grid;
+        this.outputs = new int[points];
+        this.cycles = new int[points];
+        this.stopReasons = new byte[points];
+    }
+    
+    /**
+     * Record the result of the run at a grid point
+     */
+    void set(int point, int output, int cycleCount, StopReason stopReason) {
+        outputs[point] = output;
+        cycles[point] = cycleCount;
+        stopReasons[point] = (byte) stopReason.ordinal();
+    }
+    
+    /**
+     * Get the grid the table covers
+     */
+    public InputGrid getGrid() {
+        return grid;
+    }
+    
+    /**
+     * Get the number of points in the table
+     */
+    public int size() {
+        return outputs.length;
+    }
+    
+    /**
+     * Get the inputs of the run at a grid point
+     */
+    public int[] getInputs(int point) {
+        int[] inputs = new int[grid.getInputCount()];
+        grid.inputsAt(point, inputs);
+        return inputs;
+    }
+    
+    /**
+     * Get the output of the run at a grid point
+     */
+    public int getOutput(int point) {
+        return outputs[point];
+    }
+    
+    /**
+     * Get the cycles taken by the run at a grid point
+     */
+    public int getCycles(int point) {
+        return cycles[point];
+    }
+    
+    /**
+     * Get the reason the run at a grid point stopped
+     */
+    public StopReason getStopReason(int point) {
+        return STOP_REASONS[stopReasons[point]];
+    }
+    
+    /**
+     * Write the table as CSV with a header row: one column per input, then y, cycles and the stop reason
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        int inputCount = grid.getInputCount();
+        for (int input = 1; input <= inputCount; input++) {
+            writer.write("x" + input + ",");
+        }
+        writer.write("y,cycles,stop\n");
+        
+        // Walk the grid alongside the rows rather than decoding each point's inputs
+        int[] inputs = new int[inputCount];
+        if (outputs.length > 0) {
+            grid.inputsAt(0, inputs);
+        }
+        StringBuilder row = new StringBuilder();
+        for (int point = 0; point < outputs.length; point++) {
+            row.setLength(0);
+            for (int input : inputs) {
+                row.append(input).append(',');
+            }
+            row.append(outputs[point]).append(',').append(cycles[point]).append(',')
+                    .append(STOP_REASONS[stopReasons[point]]).append('\n');
+            writer.append(row);
+            grid.advance(inputs);
+        }
+    }
+    
+    /**
+     * Write the table as CSV to a file
+     */
+    public void writeCsv(String filePath) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filePath))) {
+            writeCsv(writer);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.semulator.engine.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal class file writer for generated program classes.
+ * Builds the constant pool and writes a class holding a single public static method.
+ * Classes use class file version 49, which the JVM verifies by type inference,
+ * so no stack map frames have to be computed for the generated branches.
+ */
+class ClassFileWriter {
+    
+    private static final int CLASS_FILE_VERSION = 49;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    
+    private static final int TAG_UTF8 = 1;
+    private static final int TAG_LONG = 5;
+    private static final int TAG_CLASS = 7;
+    private static final int TAG_STRING = 8;
+    private static final int TAG_METHODREF = 10;
+    private static final int TAG_NAME_AND_TYPE = 12;
+    
+    private final ByteArrayOutputStream poolBytes;
+    private final DataOutputStream pool;
+    private final Map<String, Integer> poolEntries;
+    private int poolCount;
+    
+    ClassFileWriter() {
+        this.poolBytes = new ByteArrayOutputStream();
+        this.pool = new DataOutputStream(poolBytes);
+        this.poolEntries = new HashMap<>();
+        this.poolCount = 1;
+    }
+    
+    /**
+     * Get the constant pool index of a UTF-8 entry
+     */
+    int utf8(String value) {
+        Integer index = poolEntries.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(TAG_UTF8);
+            pool.writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return register("U" + value, 1);
+    }
+    
+    /**
+     * Get the constant pool index of a class reference given its internal name
+     */
+    int classRef(String internalName) {
+        Integer index = poolEntries.get("C" + internalName);
+        if (index != null) {
+            return index;
+        }
+        int name = utf8(internalName);
+        writeEntry(TAG_CLASS, name);
+        return register("C" + internalName, 1);
+    }
+    
+    /**
+     * Get the constant pool index of a string constant
+     */
+    int string(String value) {
+        Integer index = poolEntries.get("S" + value);
+        if (index != null) {
+            return index;
+        }
+        int utf8 = utf8(value);
+        writeEntry(TAG_STRING, utf8);
+        return register("S" + value, 1);
+    }
+    
+    /**
+     * Get the constant pool index of a long constant
+     */
+    int longConstant(long value) {
+        Integer index = poolEntries.get("J" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(TAG_LONG);
+            pool.writeLong(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Long constants take up two pool entries
+        return register("J" + value, 2);
+    }
+    
+    /**
+     * Get the constant pool index of a method reference
+     */
+    int methodRef(String owner, String name, String descriptor) {
+        String key = "M" + owner + "." + name + descriptor;
+        Integer index = poolEntries.get(key);
+        if (index != null) {
+            return index;
+        }
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType;
+        try {
+            pool.writeByte(TAG_NAME_AND_TYPE);
+            pool.writeShort(nameIndex);
+            pool.writeShort(descriptorIndex);
+            nameAndType = register("N" + name + descriptor, 1);
+            pool.writeByte(TAG_METHODREF);
+            pool.writeShort(ownerIndex);
+            pool.writeShort(nameAndType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return register(key, 1);
+    }
+    
+    /**
+     * Write a class with one public static method whose body is the given bytecode
+     */
+    byte[] toByteArray(String className, String methodName, String descriptor,
+                       int maxStack, int maxLocals, byte[] code) {
+        int thisClass = classRef(className);
+        int superClass = classRef("java/lang/Object");
+        int name = utf8(methodName);
+        int type = utf8(descriptor);
+        int codeAttribute = utf8("Code");
+        if (poolCount > 0xFFFF) {
+            throw new IllegalStateException("Constant pool too large: " + poolCount);
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(code.length + poolBytes.size() + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_FILE_VERSION);
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            
+            out.writeShort(1); // methods
+            out.writeShort(ACC_PUBLIC | ACC_STATIC);
+            out.writeShort(name);
+            out.writeShort(type);
+            out.writeShort(1); // method attributes
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // code attributes
+            
+            out.writeShort(0); // class attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private void writeEntry(int tag, int reference) {
+        try {
+            pool.writeByte(tag);
+            pool.writeShort(reference);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private int register(String key, int size) {
+        int index = poolCount;
+        poolEntries.put(key, index);
+        poolCount += size;
+        return index;
+    }
+}
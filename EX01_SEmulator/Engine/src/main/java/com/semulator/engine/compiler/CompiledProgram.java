@@ -0,0 +1,40 @@
+package com.semulator.engine.compiler;
+
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.program.LinkedProgram;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * A program compiled to a JVM hidden class by {@link ProgramCompiler}.
+ */
+public class CompiledProgram {
+    
+    private final LinkedProgram program;
+    private final MethodHandle entry;
+    
+    CompiledProgram(LinkedProgram program, MethodHandle entry) {
+        this.program = program;
+        this.entry = entry;
+    }
+    
+    /**
+     * Execute the compiled program with given inputs
+     */
+    public ExecutionResult execute(int[] inputs) {
+        long[] registers = new long[program.getSlotCount()];
+        boolean[] written = new boolean[program.getSlotCount()];
+        program.loadInputs(inputs, registers, written);
+        
+        long totalCycles;
+        try {
+            totalCycles = (long) entry.invokeExact(registers, written);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Compiled program failed: " + t.getMessage(), t);
+        }
+        
+        return program.createResult(inputs, registers, written, totalCycles);
+    }
+}
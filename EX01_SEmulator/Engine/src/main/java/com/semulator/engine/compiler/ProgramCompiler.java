@@ -0,0 +1,381 @@
+package com.semulator.engine.compiler;
+
+import com.semulator.engine.program.LinkedProgram;
+import com.semulator.engine.program.LoopIdiom;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles linked programs to JVM bytecode.
+ * Each program becomes a hidden class with one static method that keeps every
+ * variable in a local long, turns jumps into real branch instructions and runs
+ * counted loops in closed form. Hidden classes are not strongly tied to their
+ * defining loader, so they are unloaded once the compiled program is unreachable.
+ */
+public class ProgramCompiler {
+    
+    private static final String CLASS_NAME = "com/semulator/engine/compiler/GeneratedProgram";
+    private static final String METHOD_NAME = "run";
+    private static final String METHOD_DESCRIPTOR = "([J[Z)J";
+    private static final MethodType METHOD_TYPE =
+            MethodType.methodType(long.class, long[].class, boolean[].class);
+    
+    private static final int MAX_CODE_LENGTH = 65535;
+    private static final int MAX_STACK = 6;
+    
+    // JVM opcodes used by the generated code
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int LCONST_0 = 0x09;
+    private static final int LCONST_1 = 0x0a;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int LLOAD = 0x16;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int LALOAD = 0x2f;
+    private static final int LSTORE = 0x37;
+    private static final int LASTORE = 0x50;
+    private static final int BASTORE = 0x54;
+    private static final int DUP = 0x59;
+    private static final int LADD = 0x61;
+    private static final int LSUB = 0x65;
+    private static final int LMUL = 0x69;
+    private static final int LCMP = 0x94;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int GOTO = 0xa7;
+    private static final int LRETURN = 0xad;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int NEW = 0xbb;
+    private static final int ATHROW = 0xbf;
+    private static final int WIDE = 0xc4;
+    
+    private final LinkedProgram program;
+    private final ClassFileWriter classFile;
+    private final CodeBuffer code;
+    private final int[] instructionOffsets;
+    private final List<int[]> branches;
+    private final int cyclesLocal;
+    private final int iterationsLocal;
+    private final int mathMax;
+    
+    private ProgramCompiler(LinkedProgram program) {
+        this.program = program;
+        this.classFile = new ClassFileWriter();
+        this.code = new CodeBuffer();
+        this.instructionOffsets = new int[program.getInstructionCount() + 1];
+        this.branches = new ArrayList<>();
+        this.cyclesLocal = local(program.getSlotCount());
+        this.iterationsLocal = cyclesLocal + 2;
+        this.mathMax = classFile.methodRef("java/lang/Math", "max", "(JJ)J");
+    }
+    
+    /**
+     * Compile a linked program into a loaded hidden class
+     *
+     * @throws IllegalStateException if the program is too large for a single JVM method
+     */
+    public static CompiledProgram compile(LinkedProgram program) {
+        if (program.getSlotCount() > Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many variables to compile: " + program.getSlotCount());
+        }
+        
+        ProgramCompiler compiler = new ProgramCompiler(program);
+        byte[] bytes = compiler.generate();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            MethodHandle entry = lookup.findStatic(lookup.lookupClass(), METHOD_NAME, METHOD_TYPE);
+            return new CompiledProgram(program, entry);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to load compiled program: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Generate the class file bytes
+     */
+    private byte[] generate() {
+        int slotCount = program.getSlotCount();
+        int count = program.getInstructionCount();
+        
+        // Prologue: copy the register file into locals and clear the cycle counter
+        for (int slot = 0; slot < slotCount; slot++) {
+            code.u1(ALOAD_0);
+            pushInt(slot);
+            code.u1(LALOAD);
+            localInstruction(LSTORE, local(slot));
+        }
+        code.u1(LCONST_0);
+        localInstruction(LSTORE, cyclesLocal);
+        
+        for (int i = 0; i < count; i++) {
+            instructionOffsets[i] = code.length();
+            emitInstruction(i);
+        }
+        
+        // Epilogue: copy locals back into the register file and return the cycle count
+        instructionOffsets[count] = code.length();
+        for (int slot = 0; slot < slotCount; slot++) {
+            code.u1(ALOAD_0);
+            pushInt(slot);
+            localInstruction(LLOAD, local(slot));
+            code.u1(LASTORE);
+        }
+        localInstruction(LLOAD, cyclesLocal);
+        code.u1(LRETURN);
+        
+        emitMissingLabelStubs();
+        patchBranches();
+        
+        if (code.length() > MAX_CODE_LENGTH) {
+            throw new IllegalStateException("Program too large to compile: " + code.length() + " bytes of code");
+        }
+        return classFile.toByteArray(CLASS_NAME, METHOD_NAME, METHOD_DESCRIPTOR,
+                MAX_STACK, iterationsLocal + 2, code.toByteArray());
+    }
+    
+    private void emitInstruction(int index) {
+        LoopIdiom loop = program.getLoop(index);
+        if (loop != null) {
+            emitLoop(loop);
+            return;
+        }
+        
+        addCycles(program.getCycles(index));
+        int slot = program.getOperand(index);
+        switch (program.getOpcode(index)) {
+            case LinkedProgram.OP_INCREASE:
+                localInstruction(LLOAD, local(slot));
+                code.u1(LCONST_1);
+                code.u1(LADD);
+                localInstruction(LSTORE, local(slot));
+                markWritten(slot);
+                break;
+            case LinkedProgram.OP_DECREASE:
+                localInstruction(LLOAD, local(slot));
+                code.u1(LCONST_0);
+                code.u1(LCMP);
+                int skip = code.length();
+                code.u1(IFEQ);
+                code.u2(0);
+                localInstruction(LLOAD, local(slot));
+                code.u1(LCONST_1);
+                code.u1(LSUB);
+                localInstruction(LSTORE, local(slot));
+                code.patchOffset(skip, code.length() - skip);
+                markWritten(slot);
+                break;
+            case LinkedProgram.OP_JUMP_NOT_ZERO:
+                localInstruction(LLOAD, local(slot));
+                code.u1(LCONST_0);
+                code.u1(LCMP);
+                branch(IFNE, index);
+                break;
+            case LinkedProgram.OP_ZERO_VARIABLE:
+                code.u1(LCONST_0);
+                localInstruction(LSTORE, local(slot));
+                markWritten(slot);
+                break;
+            case LinkedProgram.OP_GOTO_LABEL:
+                branch(GOTO, index);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Emit a counted loop in closed form: it runs max(control, 1) iterations
+     */
+    private void emitLoop(LoopIdiom loop) {
+        int control = loop.getControlSlot();
+        localInstruction(LLOAD, local(control));
+        code.u1(LCONST_1);
+        code.u1(INVOKESTATIC);
+        code.u2(mathMax);
+        localInstruction(LSTORE, iterationsLocal);
+        
+        code.u1(LCONST_0);
+        localInstruction(LSTORE, local(control));
+        markWritten(control);
+        
+        for (int i = 0; i < loop.getSlotCount(); i++) {
+            int slot = loop.getSlot(i);
+            localInstruction(LLOAD, local(slot));
+            pushLong(loop.getDelta(i));
+            localInstruction(LLOAD, iterationsLocal);
+            code.u1(LMUL);
+            code.u1(LADD);
+            code.u1(LCONST_0);
+            code.u1(INVOKESTATIC);
+            code.u2(mathMax);
+            localInstruction(LSTORE, local(slot));
+            markWritten(slot);
+        }
+        
+        localInstruction(LLOAD, cyclesLocal);
+        pushLong(loop.getIterationCycles());
+        localInstruction(LLOAD, iterationsLocal);
+        code.u1(LMUL);
+        code.u1(LADD);
+        localInstruction(LSTORE, cyclesLocal);
+        
+        branches.add(new int[] {code.length(), loop.getExit()});
+        code.u1(GOTO);
+        code.u2(0);
+    }
+    
+    /**
+     * Emit a branch to the target of the jump at an instruction index
+     */
+    private void branch(int opcode, int index) {
+        int target = program.getTarget(index);
+        // Missing labels are encoded as a negative index into the stub list
+        branches.add(new int[] {code.length(), target == LinkedProgram.UNRESOLVED_TARGET ? -1 - index : target});
+        code.u1(opcode);
+        code.u2(0);
+    }
+    
+    /**
+     * Emit one stub per missing label that throws the same error as the interpreter
+     */
+    private void emitMissingLabelStubs() {
+        int[] stubOffsets = new int[program.getInstructionCount()];
+        Arrays.fill(stubOffsets, -1);
+        int exceptionClass = classFile.classRef("java/lang/IllegalArgumentException");
+        int constructor = classFile.methodRef("java/lang/IllegalArgumentException", "<init>", "(Ljava/lang/String;)V");
+        
+        for (int[] branch : branches) {
+            if (branch[1] >= 0) {
+                continue;
+            }
+            int index = -1 - branch[1];
+            if (stubOffsets[index] < 0) {
+                stubOffsets[index] = code.length();
+                code.u1(NEW);
+                code.u2(exceptionClass);
+                code.u1(DUP);
+                code.u1(LDC_W);
+                code.u2(classFile.string("Label not found: " + program.getJumpLabel(index)));
+                code.u1(INVOKESPECIAL);
+                code.u2(constructor);
+                code.u1(ATHROW);
+            }
+            branch[1] = -1 - stubOffsets[index];
+        }
+    }
+    
+    private void patchBranches() {
+        for (int[] branch : branches) {
+            int target = branch[1] >= 0 ? instructionOffsets[branch[1]] : -1 - branch[1];
+            int offset = target - branch[0];
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new IllegalStateException("Program too large to compile: branch offset " + offset);
+            }
+            code.patchOffset(branch[0], offset);
+        }
+    }
+    
+    private void addCycles(int cycles) {
+        if (cycles == 0) {
+            return;
+        }
+        localInstruction(LLOAD, cyclesLocal);
+        pushLong(cycles);
+        code.u1(LADD);
+        localInstruction(LSTORE, cyclesLocal);
+    }
+    
+    private void markWritten(int slot) {
+        code.u1(ALOAD_1);
+        pushInt(slot);
+        code.u1(ICONST_1);
+        code.u1(BASTORE);
+    }
+    
+    private void pushInt(int value) {
+        if (value >= 0 && value <= 5) {
+            code.u1(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            code.u1(BIPUSH);
+            code.u1(value);
+        } else {
+            code.u1(SIPUSH);
+            code.u2(value);
+        }
+    }
+    
+    private void pushLong(long value) {
+        if (value == 0) {
+            code.u1(LCONST_0);
+        } else if (value == 1) {
+            code.u1(LCONST_1);
+        } else {
+            code.u1(LDC2_W);
+            code.u2(classFile.longConstant(value));
+        }
+    }
+    
+    private void localInstruction(int opcode, int local) {
+        if (local > 0xFF) {
+            code.u1(WIDE);
+            code.u1(opcode);
+            code.u2(local);
+        } else {
+            code.u1(opcode);
+            code.u1(local);
+        }
+    }
+    
+    /**
+     * Get the local variable index holding a register slot (locals 0 and 1 are the arrays)
+     */
+    private static int local(int slot) {
+        return 2 + 2 * slot;
+    }
+    
+    /**
+     * Growable bytecode buffer
+     */
+    private static class CodeBuffer {
+        private byte[] bytes = new byte[256];
+        private int length;
+        
+        void u1(int value) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[length++] = (byte) value;
+        }
+        
+        void u2(int value) {
+            u1(value >>> 8);
+            u1(value);
+        }
+        
+        /**
+         * Patch the 16-bit offset of the branch instruction starting at the given position
+         */
+        void patchOffset(int position, int offset) {
+            bytes[position + 1] = (byte) (offset >>> 8);
+            bytes[position + 2] = (byte) offset;
+        }
+        
+        int length() {
+            return length;
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
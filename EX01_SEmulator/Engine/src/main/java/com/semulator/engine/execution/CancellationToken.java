@@ -0,0 +1,25 @@
+package com.semulator.engine.execution;
+
+/**
+ * Token used to cancel a running program from another thread.
+ * Cancellation is cooperative: the execution loop polls the token periodically
+ * and stops with {@link StopReason#CANCELLED} once it has been cancelled.
+ */
+public class CancellationToken {
+    
+    private volatile boolean cancelled;
+    
+    /**
+     * Request cancellation of every run using this token
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+    
+    /**
+     * Check if cancellation has been requested
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
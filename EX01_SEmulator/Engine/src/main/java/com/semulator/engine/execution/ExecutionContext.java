@@ -25,6 +25,17 @@ public class ExecutionContext {
         this.shouldExit = false;
     }
     
+    /**
+     * Create a context that shares an already-built label table instead of copying it
+     */
+    public ExecutionContext(Map<String, Integer> labelPositions) {
+        this.variables = new HashMap<>();
+        this.labelPositions = labelPositions;
+        this.currentInstructionIndex = 0;
+        this.totalCycles = 0;
+        this.shouldExit = false;
+    }
+    
     /**
      * Initialize input variables with provided values
      */
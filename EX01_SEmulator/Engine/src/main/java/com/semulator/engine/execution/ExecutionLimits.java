@@ -0,0 +1,174 @@
+package com.semulator.engine.execution;
+
+/**
+ * Per-run limits on cycles, executed instructions and wall-clock time, plus an optional
+ * cancellation token. A limit of 0 means unlimited. Instances are immutable.
+ */
+public class ExecutionLimits {
+    
+    /**
+     * Limits that never stop a run
+     */
+    public static final ExecutionLimits NONE = new ExecutionLimits(0, 0, 0, null);
+    
+    /**
+     * Number of instructions executed between checks of the clock and the cancellation token
+     */
+    public static final int CHECK_INTERVAL = 1 << 14;
+    
+    private final long maxCycles;
+    private final long maxSteps;
+    private final long timeoutMillis;
+    private final CancellationToken cancellation;
+    
+    public ExecutionLimits(long maxCycles, long maxSteps, long timeoutMillis, CancellationToken cancellation) {
+        if (maxCycles < 0 || maxSteps < 0 || timeoutMillis < 0) {
+            throw new IllegalArgumentException("Execution limits cannot be negative");
+        }
+        this.maxCycles = maxCycles;
+        this.maxSteps = maxSteps;
+        this.timeoutMillis = timeoutMillis;
+        this.cancellation = cancellation;
+    }
+    
+    /**
+     * Get a copy of these limits with a cycle budget
+     */
+    public ExecutionLimits withMaxCycles(long maxCycles) {
+        return new ExecutionLimits(maxCycles, maxSteps, timeoutMillis, cancellation);
+    }
+    
+    /**
+     * Get a copy of these limits with a maximum number of executed instructions
+     */
+    public ExecutionLimits withMaxSteps(long maxSteps) {
+        return new ExecutionLimits(maxCycles, maxSteps, timeoutMillis, cancellation);
+    }
+    
+    /**
+     * Get a copy of these limits with a wall-clock timeout
+     */
+    public ExecutionLimits withTimeout(long timeoutMillis) {
+        return new ExecutionLimits(maxCycles, maxSteps, timeoutMillis, cancellation);
+    }
+    
+    /**
+     * Get a copy of these limits that can be cancelled through the given token
+     */
+    public ExecutionLimits withCancellation(CancellationToken cancellation) {
+        return new ExecutionLimits(maxCycles, maxSteps, timeoutMillis, cancellation);
+    }
+    
+    /**
+     * Get the cycle budget (0 for unlimited)
+     */
+    public long getMaxCycles() {
+        return maxCycles;
+    }
+    
+    /**
+     * Get the maximum number of executed instructions (0 for unlimited)
+     */
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+    
+    /**
+     * Get the wall-clock timeout in milliseconds (0 for unlimited)
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+    
+    /**
+     * Get the cancellation token (can be null)
+     */
+    public CancellationToken getCancellation() {
+        return cancellation;
+    }
+    
+    /**
+     * Check if these limits can ever stop a run
+     */
+    public boolean isUnlimited() {
+        return maxCycles == 0 && maxSteps == 0 && timeoutMillis == 0 && cancellation == null;
+    }
+    
+    /**
+     * Start tracking a run against these limits
+     */
+    public Budget start() {
+        return new Budget(this);
+    }
+    
+    /**
+     * Tracks one run against its limits.
+     * The execution loop compares its counters with {@link #getCycleBudget()} on every instruction
+     * and calls {@link #check(long)} whenever the step count reaches {@link #getNextCheck()}.
+     */
+    public static class Budget {
+        private final long cycleBudget;
+        private final long maxSteps;
+        private final long deadline;
+        private final boolean timed;
+        private final CancellationToken cancellation;
+        private long nextCheck;
+        
+        private Budget(ExecutionLimits limits) {
+            this.cycleBudget = limits.maxCycles == 0 ? Long.MAX_VALUE : limits.maxCycles;
+            this.maxSteps = limits.maxSteps == 0 ? Long.MAX_VALUE : limits.maxSteps;
+            this.timed = limits.timeoutMillis > 0;
+            this.deadline = timed ? System.nanoTime() + limits.timeoutMillis * 1_000_000L : 0;
+            this.cancellation = limits.cancellation;
+            this.nextCheck = computeNextCheck(0);
+        }
+        
+        /**
+         * Get the highest cycle total the run may reach
+         */
+        public long getCycleBudget() {
+            return cycleBudget;
+        }
+        
+        /**
+         * Get the step count at which the run must call check next
+         */
+        public long getNextCheck() {
+            return nextCheck;
+        }
+        
+        /**
+         * Check the step, time and cancellation limits
+         *
+         * @return the reason to stop, or null if the run may continue until the next check
+         */
+        public StopReason check(long steps) {
+            if (steps >= maxSteps) {
+                return StopReason.STEP_LIMIT;
+            }
+            if (cancellation != null && cancellation.isCancelled()) {
+                return StopReason.CANCELLED;
+            }
+            if (timed && System.nanoTime() - deadline >= 0) {
+                return StopReason.TIMEOUT;
+            }
+            nextCheck = computeNextCheck(steps);
+            return null;
+        }
+        
+        /**
+         * Check if a block of instructions fits entirely within the remaining cycle and step budget
+         */
+        public boolean fits(long steps, long totalCycles, long blockSteps, long blockCycles) {
+            return blockSteps <= maxSteps - steps && blockCycles <= cycleBudget - totalCycles;
+        }
+        
+        private long computeNextCheck(long steps) {
+            long next = maxSteps;
+            if (timed || cancellation != null) {
+                next = Math.min(next, steps + CHECK_INTERVAL);
+            }
+            return next;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.semulator.engine.execution;
+
+/**
+ * Enum selecting how a program is executed.
+ */
+public enum ExecutionMode {
+    /**
+     * Executes each instruction through {@link ExecutionContext}, keeping variables in a name map
+     */
+    INTERPRETED,
+    
+    /**
+     * Executes the linked program on a primitive register file with one dense slot per variable
+     */
+    REGISTER,
+    
+    /**
+     * Executes the linked program on a register file, running counted decrement/jump loops in constant time
+     */
+    ACCELERATED,
+    
+    /**
+     * Executes the linked program on a register file after a peephole pass that removes redundant instructions
+     */
+    OPTIMIZED,
+    
+    /**
+     * Executes the program as generated JVM bytecode, compiling it on first use
+     */
+    COMPILED,
+    
+    /**
+     * Starts in ACCELERATED and promotes the program to COMPILED once it has been run often enough
+     */
+    ADAPTIVE
+}
@@ -5,6 +5,7 @@ import java.util.Set;
 
 /**
  * Represents the result of executing an S-Emulator program.
+ * A run stopped early by its limits carries the partial state at the point it stopped.
  */
 public class ExecutionResult {
     
@@ -12,8 +13,21 @@ public class ExecutionResult {
     private final int totalCycles;
     private final Map<String, Integer> finalVariableValues;
     private final Set<String> usedVariables;
+    private final StopReason stopReason;
+    private final int stopIndex;
+    private final String checkpointFile;
     
     public ExecutionResult(ExecutionContext context) {
+        this(context, StopReason.COMPLETED);
+    }
+    
+    /**
+     * Create a result from the state of a context when its run stopped
+     */
+    public ExecutionResult(ExecutionContext context, StopReason stopReason) {
+        this.stopReason = stopReason;
+        this.stopIndex = context.getCurrentInstructionIndex();
+        this.checkpointFile = null;
         this.output = context.getOutput();
         this.totalCycles = context.getTotalCycles();
         this.usedVariables = context.getUsedVariables();
@@ -25,6 +39,44 @@ public class ExecutionResult {
         }
     }
     
+    /**
+     * Create a result from final variable values collected outside an ExecutionContext
+     */
+    public ExecutionResult(int totalCycles, Map<String, Integer> finalVariableValues) {
+        this(totalCycles, finalVariableValues, StopReason.COMPLETED, -1);
+    }
+    
+    /**
+     * Create a result for a run that stopped for the given reason before the instruction at stopIndex
+     */
+    public ExecutionResult(int totalCycles, Map<String, Integer> finalVariableValues,
+                           StopReason stopReason, int stopIndex) {
+        this.stopReason = stopReason;
+        this.stopIndex = stopIndex;
+        this.checkpointFile = null;
+        this.output = finalVariableValues.getOrDefault("y", 0);
+        this.totalCycles = totalCycles;
+        this.usedVariables = new java.util.TreeSet<>(finalVariableValues.keySet());
+        this.finalVariableValues = new java.util.HashMap<>(finalVariableValues);
+    }
+    
+    private ExecutionResult(ExecutionResult result, String checkpointFile) {
+        this.stopReason = result.stopReason;
+        this.stopIndex = result.stopIndex;
+        this.checkpointFile = checkpointFile;
+        this.output = result.output;
+        this.totalCycles = result.totalCycles;
+        this.usedVariables = result.usedVariables;
+        this.finalVariableValues = result.finalVariableValues;
+    }
+    
+    /**
+     * Get a copy of this result that reports the file its run was checkpointed to
+     */
+    public ExecutionResult withCheckpointFile(String checkpointFile) {
+        return new ExecutionResult(this, checkpointFile);
+    }
+    
     /**
      * Get the output value (y variable)
      */
@@ -59,4 +111,32 @@ public class ExecutionResult {
     public Map<String, Integer> getFinalVariableValues() {
         return new java.util.HashMap<>(finalVariableValues);
     }
+    
+    /**
+     * Get the reason the run stopped
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+    
+    /**
+     * Check if the run completed rather than being stopped by a limit
+     */
+    public boolean isComplete() {
+        return stopReason == StopReason.COMPLETED;
+    }
+    
+    /**
+     * Get the index of the instruction the run would have executed next
+     */
+    public int getStopIndex() {
+        return stopIndex;
+    }
+    
+    /**
+     * Get the file the run's last checkpoint was written to, or null if none was written
+     */
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
 }
@@ -0,0 +1,31 @@
+package com.semulator.engine.execution;
+
+/**
+ * Enum describing why a program run stopped.
+ */
+public enum StopReason {
+    /**
+     * The program ran off the end of its instructions
+     */
+    COMPLETED,
+    
+    /**
+     * The next instruction would have exceeded the run's cycle budget
+     */
+    CYCLE_LIMIT,
+    
+    /**
+     * The run executed its maximum number of instructions
+     */
+    STEP_LIMIT,
+    
+    /**
+     * The run exceeded its wall-clock time limit
+     */
+    TIMEOUT,
+    
+    /**
+     * The run was cancelled from another thread
+     */
+    CANCELLED
+}
@@ -0,0 +1,95 @@
+package com.semulator.engine.instruction.synthetic;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shape of the instructions a synthetic instruction expands to, without the instructions themselves.
+ * A template lists the name, cycles and degree of every instruction one expansion produces, the
+ * template of each synthetic one among them, and how many fresh work variables and labels the
+ * expansion makes up. It lets the size and cost of an expansion be computed without expanding.
+ */
+public class ExpansionTemplate {
+    
+    private final List<Child> children;
+    private final int freshVariables;
+    private final int freshLabels;
+    
+    public ExpansionTemplate(int freshVariables, int freshLabels, Child... children) {
+        this.children = Collections.unmodifiableList(Arrays.asList(children));
+        this.freshVariables = freshVariables;
+        this.freshLabels = freshLabels;
+    }
+    
+    /**
+     * Get the instructions one expansion produces, in order
+     */
+    public List<Child> getChildren() {
+        return children;
+    }
+    
+    /**
+     * Get the number of work variables the expansion makes up
+     */
+    public int getFreshVariables() {
+        return freshVariables;
+    }
+    
+    /**
+     * Get the number of labels the expansion makes up
+     */
+    public int getFreshLabels() {
+        return freshLabels;
+    }
+    
+    /**
+     * One instruction produced by an expansion
+     */
+    public static class Child {
+        private final String name;
+        private final int cycles;
+        private final int degree;
+        private final ExpansionTemplate template;
+        
+        private Child(String name, int cycles, int degree, ExpansionTemplate template) {
+            this.name = name;
+            this.cycles = cycles;
+            this.degree = degree;
+            this.template = template;
+        }
+        
+        /**
+         * A basic instruction
+         */
+        public static Child basic(String name, int cycles) {
+            return new Child(name, cycles, 0, null);
+        }
+        
+        /**
+         * A synthetic instruction that expands further according to its own template
+         */
+        public static Child synthetic(String name, int cycles, int degree, ExpansionTemplate template) {
+            return new Child(name, cycles, degree, template);
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public int getCycles() {
+            return cycles;
+        }
+        
+        public int getDegree() {
+            return degree;
+        }
+        
+        /**
+         * Get the template of a synthetic child, or null for a basic one
+         */
+        public ExpansionTemplate getTemplate() {
+            return template;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.semulator.engine.instruction.synthetic;
+
+import com.semulator.engine.instruction.Instruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+
+/**
+ * Hands out the work variables and labels made up while expanding a program.
+ * Names are sequential, z and L followed by a number above every number the program
+ * already uses with that prefix, so they never clash with the program's own names.
+ * The same program expanded in the same order always gets the same names.
+ */
+public class FreshNameAllocator {
+    
+    private final int variableBase;
+    private final int labelBase;
+    private int variableCount;
+    private int labelCount;
+    
+    /**
+     * Create an allocator for expanding the given instructions
+     */
+    public FreshNameAllocator(Iterable<Instruction> instructions) {
+        int maxVariable = 0;
+        int maxLabel = 0;
+        for (Instruction instruction : instructions) {
+            maxVariable = Math.max(maxVariable, numberAfter("z", instruction.getVariable()));
+            maxLabel = Math.max(maxLabel, numberAfter("L", instruction.getLabel()));
+            
+            // Labels that are only jumped to are reserved too, so a fresh label never captures a jump
+            if (instruction instanceof JumpNotZeroInstruction) {
+                maxLabel = Math.max(maxLabel, numberAfter("L", ((JumpNotZeroInstruction) instruction).getJumpLabel()));
+            } else if (instruction instanceof GotoLabelInstruction) {
+                maxLabel = Math.max(maxLabel, numberAfter("L", ((GotoLabelInstruction) instruction).getGotoLabel()));
+            }
+        }
+        this.variableBase = maxVariable;
+        this.labelBase = maxLabel;
+    }
+    
+    private FreshNameAllocator(int variableBase, int labelBase, int variableCount, int labelCount) {
+        this.variableBase = variableBase;
+        this.labelBase = labelBase;
+        this.variableCount = variableCount;
+        this.labelCount = labelCount;
+    }
+    
+    /**
+     * Get an allocator with the same base that continues after the given numbers of names,
+     * so part of an expansion can be rebuilt with the names it was first given
+     */
+    public FreshNameAllocator resumeAt(int variableCount, int labelCount) {
+        return new FreshNameAllocator(variableBase, labelBase, variableCount, labelCount);
+    }
+    
+    /**
+     * Get the next fresh work variable
+     */
+    public String nextVariable() {
+        return "z" + (variableBase + ++variableCount);
+    }
+    
+    /**
+     * Get the next fresh label
+     */
+    public String nextLabel() {
+        return "L" + (labelBase + ++labelCount);
+    }
+    
+    /**
+     * Get the number of work variables handed out so far
+     */
+    public int getVariableCount() {
+        return variableCount;
+    }
+    
+    /**
+     * Get the number of labels handed out so far
+     */
+    public int getLabelCount() {
+        return labelCount;
+    }
+    
+    /**
+     * Get the number after a prefix in a name such as z7, or 0 if the name has another form
+     */
+    private static int numberAfter(String prefix, String name) {
+        if (name == null || name.length() <= prefix.length() || !name.startsWith(prefix)) {
+            return 0;
+        }
+        int number = 0;
+        for (int i = prefix.length(); i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9' || number > (Integer.MAX_VALUE - 9) / 10) {
+                return 0;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+}
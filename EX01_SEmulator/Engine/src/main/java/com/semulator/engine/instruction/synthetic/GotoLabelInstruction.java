@@ -14,6 +14,13 @@ import java.util.List;
  */
 public class GotoLabelInstruction extends SyntheticInstruction {
     
+    /**
+     * z <- z + 1 on a fresh work variable, then IF z != 0 GOTO L
+     */
+    private static final ExpansionTemplate TEMPLATE = new ExpansionTemplate(1, 0,
+        ExpansionTemplate.Child.basic("INCREASE", 1),
+        ExpansionTemplate.Child.basic("JUMP_NOT_ZERO", 2));
+    
     private final String gotoLabel;
     
     public GotoLabelInstruction(String variable, String label, String gotoLabel) {
@@ -29,11 +36,11 @@ public class GotoLabelInstruction extends SyntheticInstruction {
     }
     
     @Override
-    public List<Instruction> expand() {
+    public List<Instruction> expand(FreshNameAllocator names) {
         List<Instruction> expanded = new ArrayList<>();
         
         // Create a temporary work variable
-        String tempVar = "z" + System.identityHashCode(this);
+        String tempVar = names.nextVariable();
         
         // Add the label to the first instruction if this instruction has a label
         String firstLabel = (label != null && !label.isEmpty()) ? label : null;
@@ -51,6 +58,11 @@ public class GotoLabelInstruction extends SyntheticInstruction {
         return expanded;
     }
     
+    @Override
+    public ExpansionTemplate getExpansionTemplate() {
+        return TEMPLATE;
+    }
+    
     @Override
     public int getDegree() {
         return 1; // This instruction expands to basic instructions
@@ -73,9 +73,15 @@ public abstract class SyntheticInstruction implements Instruction {
     protected abstract void executeInstruction(ExecutionContext context);
     
     /**
-     * Expand this synthetic instruction to a list of basic instructions
+     * Expand this synthetic instruction to a list of basic instructions,
+     * taking any work variables and labels it needs from the given allocator
      */
-    public abstract List<Instruction> expand();
+    public abstract List<Instruction> expand(FreshNameAllocator names);
+    
+    /**
+     * Describe what expand() produces, so expansions can be measured without building them
+     */
+    public abstract ExpansionTemplate getExpansionTemplate();
     
     /**
      * Get the degree of this instruction (how many expansions needed to reach basic instructions)
@@ -15,6 +15,20 @@ import java.util.List;
  */
 public class ZeroVariableInstruction extends SyntheticInstruction {
     
+    /**
+     * [L] V <- V - 1, then IF V != 0 GOTO L, looping on the instruction's own label
+     */
+    private static final ExpansionTemplate LABELLED_TEMPLATE = new ExpansionTemplate(0, 0,
+        ExpansionTemplate.Child.basic("DECREASE", 1),
+        ExpansionTemplate.Child.basic("JUMP_NOT_ZERO", 2));
+    
+    /**
+     * The same loop on a fresh label, for an instruction without a label of its own
+     */
+    private static final ExpansionTemplate UNLABELLED_TEMPLATE = new ExpansionTemplate(0, 1,
+        ExpansionTemplate.Child.basic("DECREASE", 1),
+        ExpansionTemplate.Child.basic("JUMP_NOT_ZERO", 2));
+    
     public ZeroVariableInstruction(String variable, String label) {
         super("ZERO_VARIABLE", variable, label, 1);
     }
@@ -26,26 +40,28 @@ public class ZeroVariableInstruction extends SyntheticInstruction {
     }
     
     @Override
-    public List<Instruction> expand() {
+    public List<Instruction> expand(FreshNameAllocator names) {
         List<Instruction> expanded = new ArrayList<>();
         
-        // Create a temporary label for the loop
-        String tempLabel = "L" + System.identityHashCode(this);
-        
-        // Add the label to the first instruction if this instruction has a label
-        String firstLabel = (label != null && !label.isEmpty()) ? label : null;
+        // Loop back to this instruction's own label, or to a temporary label if it has none
+        String loopLabel = (label != null && !label.isEmpty()) ? label : names.nextLabel();
         
         // Loop: decrement until 0
-        expanded.add(new DecreaseInstruction(variable, firstLabel));
-        expanded.add(new JumpNotZeroInstruction(variable, null, tempLabel));
+        expanded.add(new DecreaseInstruction(variable, loopLabel));
+        expanded.add(new JumpNotZeroInstruction(variable, null, loopLabel));
         
-        // Set the temp label position
+        // Set parent instructions
         expanded.get(0).setParentInstruction(this);
         expanded.get(1).setParentInstruction(this);
         
         return expanded;
     }
     
+    @Override
+    public ExpansionTemplate getExpansionTemplate() {
+        return label != null && !label.isEmpty() ? LABELLED_TEMPLATE : UNLABELLED_TEMPLATE;
+    }
+    
     @Override
     public int getDegree() {
         return 1; // This instruction expands to basic instructions
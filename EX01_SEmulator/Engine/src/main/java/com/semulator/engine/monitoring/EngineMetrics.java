@@ -0,0 +1,118 @@
+package com.semulator.engine.monitoring;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-process registry of load, expand and execute metrics per program and degree.
+ * Each operation's metrics are exported as an MXBean named
+ * {@code com.semulator:type=OperationMetrics,operation=...,program=...,degree=...}.
+ * Recording is off unless the {@value #ENABLED_PROPERTY} system property is true or it is
+ * switched on with {@link #setEnabled(boolean)}. While it is off and no Flight Recorder
+ * recording has the engine's events enabled, program runs are not timed at all.
+ */
+public class EngineMetrics {
+    
+    public static final String LOAD = "load";
+    public static final String EXPAND = "expand";
+    public static final String EXECUTE = "execute";
+    
+    /**
+     * System property that switches recording on at startup
+     */
+    public static final String ENABLED_PROPERTY = "semulator.metrics";
+    
+    private static final EngineMetrics SHARED = new EngineMetrics(true);
+    
+    private final boolean exported;
+    private final ConcurrentMap<String, OperationMetrics> metrics;
+    private volatile boolean enabled;
+    
+    /**
+     * Create a registry, exporting its metrics to the platform MBean server if asked
+     */
+    public EngineMetrics(boolean exported) {
+        this.exported = exported;
+        this.metrics = new ConcurrentHashMap<>();
+        this.enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+    
+    /**
+     * Get the registry the engine records into
+     */
+    public static EngineMetrics getShared() {
+        return SHARED;
+    }
+    
+    /**
+     * Check if operations are being recorded
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Switch recording on or off; metrics recorded so far are kept
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    /**
+     * Get the metrics of an operation on a program and degree, creating and exporting them on first use
+     */
+    public OperationMetrics get(String operation, String programName, int degree) {
+        String key = operation + '\u0000' + programName + '\u0000' + degree;
+        OperationMetrics existing = metrics.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        
+        OperationMetrics created = new OperationMetrics(operation, programName, degree);
+        existing = metrics.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        if (exported) {
+            export(created);
+        }
+        return created;
+    }
+    
+    /**
+     * Record one operation if recording is on
+     */
+    public void record(String operation, String programName, int degree, long nanos, long cycles) {
+        if (enabled) {
+            get(operation, programName, degree).record(nanos, cycles);
+        }
+    }
+    
+    /**
+     * Get the metrics of every operation recorded so far
+     */
+    public List<OperationMetrics> getAll() {
+        return new ArrayList<>(metrics.values());
+    }
+    
+    private static void export(OperationMetrics operationMetrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.semulator:type=OperationMetrics"
+                    + ",operation=" + operationMetrics.getOperation()
+                    + ",program=" + ObjectName.quote(operationMetrics.getProgramName())
+                    + ",degree=" + operationMetrics.getDegree());
+            if (!server.isRegistered(name)) {
+                server.registerMBean(operationMetrics, name);
+            }
+        } catch (JMException | SecurityException e) {
+            // JMX is only a window on the metrics; they are still recorded in process
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.semulator.engine.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, with one bucket per power of two.
+ * Percentiles are reported as the upper bound of the bucket they fall in, so they are
+ * accurate to within a factor of two.
+ */
+public class LatencyHistogram {
+    
+    private static final int BUCKETS = 64;
+    
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong totalNanos;
+    private final AtomicLong maxNanos;
+    
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.totalNanos = new AtomicLong();
+        this.maxNanos = new AtomicLong();
+    }
+    
+    /**
+     * Record one duration
+     */
+    public void record(long nanos) {
+        long duration = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(duration));
+        count.incrementAndGet();
+        totalNanos.addAndGet(duration);
+        long max = maxNanos.get();
+        while (duration > max && !maxNanos.compareAndSet(max, duration)) {
+            max = maxNanos.get();
+        }
+    }
+    
+    /**
+     * Get the number of durations recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+    
+    /**
+     * Get the sum of all durations recorded
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+    
+    /**
+     * Get the longest duration recorded
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+    
+    /**
+     * Get the mean duration, or 0 if none was recorded
+     */
+    public long getMeanNanos() {
+        long recorded = count.get();
+        return recorded == 0 ? 0 : totalNanos.get() / recorded;
+    }
+    
+    /**
+     * Get the duration that the given fraction of recorded durations do not exceed, between 0 and 1
+     */
+    public long getPercentileNanos(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1: " + fraction);
+        }
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBound(i), maxNanos.get());
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Get the bucket of a duration: 0 holds 0, bucket i holds durations below 2^i
+     */
+    private static int bucket(long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+    
+    private static long upperBound(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,85 @@
+package com.semulator.engine.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency histogram of one operation (load, expand or execute) on one program and degree
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+    
+    private final String operation;
+    private final String programName;
+    private final int degree;
+    private final LatencyHistogram latency;
+    private final AtomicLong totalCycles;
+    
+    OperationMetrics(String operation, String programName, int degree) {
+        this.operation = operation;
+        this.programName = programName;
+        this.degree = degree;
+        this.latency = new LatencyHistogram();
+        this.totalCycles = new AtomicLong();
+    }
+    
+    /**
+     * Record one completed operation
+     */
+    public void record(long nanos, long cycles) {
+        latency.record(nanos);
+        if (cycles != 0) {
+            totalCycles.addAndGet(cycles);
+        }
+    }
+    
+    /**
+     * Get the histogram of the operation's durations
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+    
+    @Override
+    public String getOperation() {
+        return operation;
+    }
+    
+    @Override
+    public String getProgramName() {
+        return programName;
+    }
+    
+    @Override
+    public int getDegree() {
+        return degree;
+    }
+    
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+    
+    @Override
+    public long getTotalCycles() {
+        return totalCycles.get();
+    }
+    
+    @Override
+    public long getMeanLatencyMicros() {
+        return latency.getMeanNanos() / 1000;
+    }
+    
+    @Override
+    public long getMedianLatencyMicros() {
+        return latency.getPercentileNanos(0.5) / 1000;
+    }
+    
+    @Override
+    public long getP99LatencyMicros() {
+        return latency.getPercentileNanos(0.99) / 1000;
+    }
+    
+    @Override
+    public long getMaxLatencyMicros() {
+        return latency.getMaxNanos() / 1000;
+    }
+}
@@ -0,0 +1,25 @@
+package com.semulator.engine.monitoring;
+
+/**
+ * Management interface of the metrics of one operation on one program and degree
+ */
+public interface OperationMetricsMXBean {
+    
+    String getOperation();
+    
+    String getProgramName();
+    
+    int getDegree();
+    
+    long getCount();
+    
+    long getTotalCycles();
+    
+    long getMeanLatencyMicros();
+    
+    long getMedianLatencyMicros();
+    
+    long getP99LatencyMicros();
+    
+    long getMaxLatencyMicros();
+}
@@ -0,0 +1,35 @@
+package com.semulator.engine.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one run of a program
+ */
+@Name("com.semulator.ProgramExecute")
+@Label("Program Execute")
+@Category("S-Emulator")
+@Description("A program was run to completion or until a limit was reached")
+public class ProgramExecuteEvent extends Event {
+    
+    @Label("Program")
+    public String programName;
+    
+    @Label("Degree")
+    public int degree;
+    
+    @Label("Instructions")
+    public int instructionCount;
+    
+    @Label("Mode")
+    public String mode;
+    
+    @Label("Cycles")
+    public long cycles;
+    
+    @Label("Stop Reason")
+    public String stopReason;
+}
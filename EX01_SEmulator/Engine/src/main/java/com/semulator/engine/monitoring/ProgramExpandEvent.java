@@ -0,0 +1,27 @@
+package com.semulator.engine.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for building one degree of a program's expansion
+ */
+@Name("com.semulator.ProgramExpand")
+@Label("Program Expand")
+@Category("S-Emulator")
+@Description("An expansion of a program was built; cached expansions are not reported")
+public class ProgramExpandEvent extends Event {
+    
+    @Label("Program")
+    public String programName;
+    
+    @Label("Degree")
+    public int degree;
+    
+    @Label("Instructions")
+    @Description("Number of instructions in the expansion")
+    public int instructionCount;
+}
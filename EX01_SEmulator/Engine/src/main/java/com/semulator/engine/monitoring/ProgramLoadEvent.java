@@ -0,0 +1,30 @@
+package com.semulator.engine.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for parsing a program file
+ */
+@Name("com.semulator.ProgramLoad")
+@Label("Program Load")
+@Category("S-Emulator")
+@Description("A program file was parsed and validated")
+public class ProgramLoadEvent extends Event {
+    
+    @Label("File")
+    public String filePath;
+    
+    @Label("Program")
+    public String programName;
+    
+    @Label("Degree")
+    @Description("Maximum degree of the program's instructions")
+    public int degree;
+    
+    @Label("Instructions")
+    public int instructionCount;
+}
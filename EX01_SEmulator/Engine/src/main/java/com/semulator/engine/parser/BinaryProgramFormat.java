@@ -0,0 +1,324 @@
+package com.semulator.engine.parser;
+
+import com.semulator.engine.instruction.Instruction;
+import com.semulator.engine.instruction.basic.DecreaseInstruction;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.instruction.basic.NeutralInstruction;
+import com.semulator.engine.instruction.synthetic.GotoLabelInstruction;
+import com.semulator.engine.instruction.synthetic.ZeroVariableInstruction;
+import com.semulator.engine.program.LinkedProgram;
+import com.semulator.engine.program.Program;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of a parsed program, loaded by memory-mapping the file.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * int magic, int version
+ * int poolSize, then per entry: int length, UTF-8 bytes   - variable, label and program names
+ * int sectionCount, then per section:
+ *     int degree (-1 for the program itself), int name, int instructionCount,
+ *     instructionCount fixed-width records of RECORD_INTS ints:
+ *     opcode, variable, label, jump label, jump target, source, flags
+ * </pre>
+ * Names are constant pool indexes, -1 meaning none. Jump targets are resolved when the file is
+ * written, -1 for a missing label, and loading links each section straight from its records, so
+ * labels are never looked up again. The first section is the program; any further sections are
+ * its expansions from the maximum degree down, where source is the index of the instruction in
+ * the previous section that the record was expanded from, or the same instance when FLAG_SHARED is set.
+ */
+public class BinaryProgramFormat {
+    
+    /**
+     * File extension used for binary program files
+     */
+    public static final String EXTENSION = ".semb";
+    
+    private static final int MAGIC = 0x53454D42;
+    private static final int VERSION = 1;
+    private static final int PROGRAM_DEGREE = -1;
+    private static final int NONE = -1;
+    private static final int RECORD_INTS = 7;
+    private static final int FLAG_SHARED = 1;
+    
+    /**
+     * Instruction names indexed by the LinkedProgram opcode they are stored as
+     */
+    private static final String[] OPCODE_NAMES = {
+        "NEUTRAL", "INCREASE", "DECREASE", "JUMP_NOT_ZERO", "ZERO_VARIABLE", "GOTO_LABEL"
+    };
+    
+    /**
+     * Check if a file starts with the binary program header
+     */
+    public static boolean isBinaryProgram(String filePath) {
+        try (InputStream input = Files.newInputStream(Paths.get(filePath))) {
+            return new DataInputStream(input).readInt() == MAGIC;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Write a program to a binary file, optionally with all of its expansions
+     */
+    public static void write(Program program, String filePath, boolean includeExpansions) throws IOException {
+        List<Program> sections = new ArrayList<>();
+        sections.add(program);
+        if (includeExpansions) {
+            for (int degree = program.getMaxDegree(); degree >= 0; degree--) {
+                sections.add(program.expandToDegree(degree));
+            }
+        }
+        
+        // Collect every name into the constant pool first
+        Map<String, Integer> pool = new HashMap<>();
+        List<String> poolEntries = new ArrayList<>();
+        for (Program section : sections) {
+            poolIndex(section.getName(), pool, poolEntries);
+            for (Instruction instruction : section.getInstructions()) {
+                poolIndex(instruction.getVariable(), pool, poolEntries);
+                poolIndex(instruction.getLabel(), pool, poolEntries);
+                poolIndex(jumpLabel(instruction), pool, poolEntries);
+            }
+        }
+        
+        try (OutputStream file = Files.newOutputStream(Paths.get(filePath));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            
+            output.writeInt(poolEntries.size());
+            for (String entry : poolEntries) {
+                byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+            
+            output.writeInt(sections.size());
+            Map<Instruction, Integer> sourceIndexes = new IdentityHashMap<>();
+            for (int s = 0; s < sections.size(); s++) {
+                Program section = sections.get(s);
+                List<Instruction> instructions = section.getInstructions();
+                output.writeInt(s == 0 ? PROGRAM_DEGREE : program.getMaxDegree() - (s - 1));
+                output.writeInt(pool.get(section.getName()));
+                output.writeInt(instructions.size());
+                
+                for (Instruction instruction : instructions) {
+                    String jumpLabel = jumpLabel(instruction);
+                    Integer shared = sourceIndexes.get(instruction);
+                    Integer parent = sourceIndexes.get(instruction.getParentInstruction());
+                    
+                    output.writeInt(opcode(instruction));
+                    output.writeInt(poolIndex(instruction.getVariable(), pool, poolEntries));
+                    output.writeInt(poolIndex(instruction.getLabel(), pool, poolEntries));
+                    output.writeInt(poolIndex(jumpLabel, pool, poolEntries));
+                    output.writeInt(jumpLabel != null && section.hasLabel(jumpLabel)
+                            ? section.getLabelPosition(jumpLabel) : NONE);
+                    output.writeInt(shared != null ? shared : parent != null ? parent : NONE);
+                    output.writeInt(shared != null ? FLAG_SHARED : 0);
+                }
+                
+                // The next section is expanded from this one
+                sourceIndexes.clear();
+                for (int i = 0; i < instructions.size(); i++) {
+                    sourceIndexes.put(instructions.get(i), i);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Load a program from a binary file, installing any stored expansions in its expansion cache
+     */
+    public static Program read(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            throw new IllegalArgumentException("File does not exist: " + filePath);
+        }
+        
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        
+        try {
+            return read(buffer, filePath);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Corrupt binary program file: " + filePath);
+        }
+    }
+    
+    private static Program read(ByteBuffer buffer, String filePath) {
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a binary program file: " + filePath);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary program version " + version + ": " + filePath);
+        }
+        
+        int poolSize = buffer.getInt();
+        if (poolSize < 0 || poolSize > buffer.remaining() / Integer.BYTES) {
+            throw new IllegalArgumentException("Corrupt binary program file: " + filePath);
+        }
+        String[] pool = new String[poolSize];
+        for (int i = 0; i < pool.length; i++) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Corrupt binary program file: " + filePath);
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            pool[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        int sectionCount = buffer.getInt();
+        Program program = null;
+        Instruction[] source = new Instruction[0];
+        for (int s = 0; s < sectionCount; s++) {
+            int degree = buffer.getInt();
+            Program section = new Program(poolString(pool, buffer.getInt()));
+            int instructionCount = buffer.getInt();
+            if (instructionCount < 0 || instructionCount > buffer.remaining() / (RECORD_INTS * Integer.BYTES)) {
+                throw new IllegalArgumentException("Corrupt binary program file: " + filePath);
+            }
+            Instruction[] instructions = new Instruction[instructionCount];
+            int[] opcodes = new int[instructionCount];
+            String[] variables = new String[instructionCount];
+            int[] cycles = new int[instructionCount];
+            int[] targets = new int[instructionCount];
+            String[] jumpLabels = new String[instructionCount];
+            
+            for (int i = 0; i < instructions.length; i++) {
+                int opcode = buffer.getInt();
+                String variable = poolString(pool, buffer.getInt());
+                String label = poolString(pool, buffer.getInt());
+                String jumpLabel = poolString(pool, buffer.getInt());
+                int target = buffer.getInt();
+                int sourceIndex = buffer.getInt();
+                int flags = buffer.getInt();
+                
+                if ((flags & FLAG_SHARED) != 0) {
+                    instructions[i] = source[sourceIndex];
+                } else {
+                    instructions[i] = createInstruction(opcode, variable, label, jumpLabel);
+                    if (sourceIndex != NONE) {
+                        instructions[i].setParentInstruction(source[sourceIndex]);
+                    }
+                }
+                
+                // Jump targets were resolved when the file was written
+                if (opcode == LinkedProgram.OP_JUMP_NOT_ZERO && target == NONE) {
+                    throw new IllegalArgumentException("Program is invalid: referenced labels do not exist");
+                }
+                if (target != NONE && (target < 0 || target >= instructionCount)) {
+                    throw new IllegalArgumentException("Corrupt binary program file: " + filePath);
+                }
+                section.addInstruction(instructions[i]);
+                
+                // A jump to its own instruction falls through, as when linking from labels
+                opcodes[i] = opcode;
+                variables[i] = variable;
+                cycles[i] = instructions[i].getCycles();
+                targets[i] = target == i ? i + 1 : target;
+                jumpLabels[i] = jumpLabel;
+            }
+            section.preloadLink(new LinkedProgram(opcodes, variables, cycles, targets, jumpLabels));
+            
+            if (degree == PROGRAM_DEGREE) {
+                program = section;
+            } else if (program != null) {
+                program.preloadExpansion(degree, section);
+            } else {
+                throw new IllegalArgumentException("Corrupt binary program file: " + filePath);
+            }
+            source = instructions;
+        }
+        
+        if (program == null) {
+            throw new IllegalArgumentException("Corrupt binary program file: " + filePath);
+        }
+        return program;
+    }
+    
+    /**
+     * Create an instruction for a stored opcode
+     */
+    private static Instruction createInstruction(int opcode, String variable, String label, String jumpLabel) {
+        switch (opcode) {
+            case LinkedProgram.OP_NEUTRAL:
+                return new NeutralInstruction(variable, label);
+            case LinkedProgram.OP_INCREASE:
+                return new IncreaseInstruction(variable, label);
+            case LinkedProgram.OP_DECREASE:
+                return new DecreaseInstruction(variable, label);
+            case LinkedProgram.OP_JUMP_NOT_ZERO:
+                return new JumpNotZeroInstruction(variable, label, jumpLabel);
+            case LinkedProgram.OP_ZERO_VARIABLE:
+                return new ZeroVariableInstruction(variable, label);
+            case LinkedProgram.OP_GOTO_LABEL:
+                return new GotoLabelInstruction(variable, label, jumpLabel);
+            default:
+                throw new IllegalArgumentException("Unknown instruction opcode: " + opcode);
+        }
+    }
+    
+    private static int opcode(Instruction instruction) {
+        for (int opcode = 0; opcode < OPCODE_NAMES.length; opcode++) {
+            if (OPCODE_NAMES[opcode].equals(instruction.getName())) {
+                return opcode;
+            }
+        }
+        throw new IllegalArgumentException("Cannot store instruction: " + instruction.getName());
+    }
+    
+    private static String jumpLabel(Instruction instruction) {
+        if (instruction instanceof JumpNotZeroInstruction) {
+            return ((JumpNotZeroInstruction) instruction).getJumpLabel();
+        }
+        if (instruction instanceof GotoLabelInstruction) {
+            return ((GotoLabelInstruction) instruction).getGotoLabel();
+        }
+        return null;
+    }
+    
+    private static int poolIndex(String value, Map<String, Integer> pool, List<String> poolEntries) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer index = pool.get(value);
+        if (index == null) {
+            index = poolEntries.size();
+            pool.put(value, index);
+            poolEntries.add(value);
+        }
+        return index;
+    }
+    
+    private static String poolString(String[] pool, int index) {
+        return index == NONE ? null : pool[index];
+    }
+}
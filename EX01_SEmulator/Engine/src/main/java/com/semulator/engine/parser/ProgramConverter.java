@@ -0,0 +1,28 @@
+package com.semulator.engine.parser;
+
+import com.semulator.engine.program.Program;
+
+/**
+ * Command line tool that converts an XML program file to the binary program format.
+ * Usage: ProgramConverter input.xml output.semb [--expanded]
+ * With --expanded, every expansion of the program is stored too, so loading it skips expansion.
+ */
+public class ProgramConverter {
+    
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 3 || args.length == 3 && !"--expanded".equals(args[2])) {
+            System.err.println("Usage: ProgramConverter <input.xml> <output" + BinaryProgramFormat.EXTENSION + "> [--expanded]");
+            System.exit(2);
+        }
+        
+        try {
+            Program program = ProgramParser.parseProgram(args[0]);
+            BinaryProgramFormat.write(program, args[1], args.length == 3);
+            System.out.println("Converted " + program.getName() + " (" + program.getInstructionCount()
+                    + " instructions) to " + args[1]);
+        } catch (Exception e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -2,13 +2,14 @@ package com.semulator.engine.parser;
 
 import com.semulator.engine.instruction.Instruction;
 import com.semulator.engine.instruction.InstructionFactory;
+import com.semulator.engine.monitoring.EngineMetrics;
+import com.semulator.engine.monitoring.ProgramLoadEvent;
 import com.semulator.engine.program.Program;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.File;
 import java.util.HashMap;
@@ -16,9 +17,17 @@ import java.util.Map;
 
 /**
  * Parser for S-Emulator program XML files.
+ * The file is read in a single streaming pass: each instruction is built and added to the
+ * program as soon as its element closes, so no document tree is kept in memory.
  */
 public class ProgramParser {
     
+    private static final String PROGRAM_ELEMENT = "S-Program";
+    private static final String INSTRUCTION_ELEMENT = "S-Instruction";
+    private static final String VARIABLE_ELEMENT = "S-Variable";
+    private static final String LABEL_ELEMENT = "S-Label";
+    private static final String ARGUMENT_ELEMENT = "S-Instruction-Argument";
+    
     /**
      * Parse an XML file and create a Program object
      */
@@ -32,29 +41,17 @@ public class ProgramParser {
             throw new IllegalArgumentException("File must be an XML file: " + filePath);
         }
         
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Document document = builder.parse(file);
-        document.getDocumentElement().normalize();
-        
-        Element rootElement = document.getDocumentElement();
-        if (!"S-Program".equals(rootElement.getTagName())) {
-            throw new IllegalArgumentException("Root element must be 'S-Program'");
-        }
-        
-        String programName = rootElement.getAttribute("name");
-        if (programName == null || programName.trim().isEmpty()) {
-            throw new IllegalArgumentException("Program name is required");
-        }
+        ProgramLoadEvent event = new ProgramLoadEvent();
+        event.begin();
+        long start = System.nanoTime();
         
-        Program program = new Program(programName.trim());
+        SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+        ProgramHandler handler = new ProgramHandler();
+        parser.parse(file, handler);
         
-        // Parse instructions
-        NodeList instructionElements = rootElement.getElementsByTagName("S-Instruction");
-        for (int i = 0; i < instructionElements.getLength(); i++) {
-            Element instructionElement = (Element) instructionElements.item(i);
-            Instruction instruction = parseInstruction(instructionElement);
-            program.addInstruction(instruction);
+        Program program = handler.getProgram();
+        if (handler.getError() != null) {
+            throw handler.getError();
         }
         
         // Validate program
@@ -62,49 +59,173 @@ public class ProgramParser {
             throw new IllegalArgumentException("Program is invalid: referenced labels do not exist");
         }
         
+        // Resolve jump targets once at load time
+        program.link();
+        
+        long duration = System.nanoTime() - start;
+        event.end();
+        if (event.shouldCommit()) {
+            event.filePath = filePath;
+            event.programName = program.getName();
+            event.degree = program.getMaxDegree();
+            event.instructionCount = program.getInstructionCount();
+            event.commit();
+        }
+        EngineMetrics.getShared().record(EngineMetrics.LOAD, program.getName(), program.getMaxDegree(), duration, 0);
         return program;
     }
     
     /**
-     * Parse a single instruction element
+     * Streaming handler that builds the program while the document is read.
+     * Like the element lookups of a document tree, the variable and label of an instruction are
+     * taken from the first matching element anywhere inside it, and arguments from all of them.
+     * The first validation error is kept until the end of the document, so a malformed file still
+     * fails with the XML parser's error as it did when the whole document was read up front.
      */
-    private static Instruction parseInstruction(Element element) throws Exception {
-        String type = element.getAttribute("type");
-        String name = element.getAttribute("name");
+    private static class ProgramHandler extends DefaultHandler {
         
-        if (type == null || type.trim().isEmpty()) {
-            throw new IllegalArgumentException("Instruction type is required");
+        private Program program;
+        private IllegalArgumentException error;
+        private int depth;
+        
+        // State of the instruction being read; instructionDepth is 0 outside an instruction
+        private int instructionDepth;
+        private String type;
+        private String name;
+        private String variable;
+        private String label;
+        private final Map<String, String> arguments = new HashMap<>();
+        
+        // Text of the first S-Variable and S-Label elements; each depth is 0 outside its element,
+        // and both can be open at once when one is nested in the other
+        private final StringBuilder variableText = new StringBuilder();
+        private final StringBuilder labelText = new StringBuilder();
+        private int variableDepth;
+        private int labelDepth;
+        
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            depth++;
+            if (error != null) {
+                return;
+            }
+            try {
+                startProgramElement(qName, attributes);
+            } catch (IllegalArgumentException e) {
+                error = e;
+            }
         }
-        if (name == null || name.trim().isEmpty()) {
-            throw new IllegalArgumentException("Instruction name is required");
+        
+        /**
+         * Handle an element start: the root, an instruction or an element inside an instruction
+         */
+        private void startProgramElement(String qName, Attributes attributes) {
+            if (depth == 1) {
+                if (!PROGRAM_ELEMENT.equals(qName)) {
+                    throw new IllegalArgumentException("Root element must be 'S-Program'");
+                }
+                String programName = attributeValue(attributes, "name");
+                if (programName.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Program name is required");
+                }
+                program = new Program(programName.trim());
+                return;
+            }
+            
+            if (instructionDepth == 0) {
+                if (INSTRUCTION_ELEMENT.equals(qName)) {
+                    startInstruction(attributes);
+                }
+                return;
+            }
+            
+            if (VARIABLE_ELEMENT.equals(qName) && variable == null && variableDepth == 0) {
+                variableDepth = depth;
+                variableText.setLength(0);
+            } else if (LABEL_ELEMENT.equals(qName) && label == null && labelDepth == 0) {
+                labelDepth = depth;
+                labelText.setLength(0);
+            } else if (ARGUMENT_ELEMENT.equals(qName)) {
+                arguments.put(attributeValue(attributes, "name").trim(), attributeValue(attributes, "value").trim());
+            }
         }
         
-        // Parse variable
-        String variable = "";
-        NodeList variableElements = element.getElementsByTagName("S-Variable");
-        if (variableElements.getLength() > 0) {
-            variable = variableElements.item(0).getTextContent().trim();
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (variableDepth > 0) {
+                variableText.append(ch, start, length);
+            }
+            if (labelDepth > 0) {
+                labelText.append(ch, start, length);
+            }
         }
         
-        // Parse label
-        String label = null;
-        NodeList labelElements = element.getElementsByTagName("S-Label");
-        if (labelElements.getLength() > 0) {
-            label = labelElements.item(0).getTextContent().trim();
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (error != null) {
+                depth--;
+                return;
+            }
+            if (depth == variableDepth) {
+                variable = variableText.toString().trim();
+                variableDepth = 0;
+            } else if (depth == labelDepth) {
+                label = labelText.toString().trim();
+                labelDepth = 0;
+            } else if (depth == instructionDepth) {
+                try {
+                    endInstruction();
+                } catch (IllegalArgumentException e) {
+                    error = e;
+                }
+            }
+            depth--;
         }
         
-        // Parse arguments
-        Map<String, String> arguments = new HashMap<>();
-        NodeList argumentElements = element.getElementsByTagName("S-Instruction-Argument");
-        for (int i = 0; i < argumentElements.getLength(); i++) {
-            Element argElement = (Element) argumentElements.item(i);
-            String argName = argElement.getAttribute("name");
-            String argValue = argElement.getAttribute("value");
-            if (argName != null && argValue != null) {
-                arguments.put(argName.trim(), argValue.trim());
+        /**
+         * Check the instruction's attributes and reset the per-instruction state
+         */
+        private void startInstruction(Attributes attributes) {
+            type = attributeValue(attributes, "type");
+            name = attributeValue(attributes, "name");
+            
+            if (type.trim().isEmpty()) {
+                throw new IllegalArgumentException("Instruction type is required");
             }
+            if (name.trim().isEmpty()) {
+                throw new IllegalArgumentException("Instruction name is required");
+            }
+            
+            instructionDepth = depth;
+            variable = null;
+            label = null;
+            arguments.clear();
         }
         
-        return InstructionFactory.createInstruction(name.trim(), variable, label, arguments);
+        /**
+         * Create the instruction that just closed and add it to the program
+         */
+        private void endInstruction() {
+            Instruction instruction = InstructionFactory.createInstruction(
+                name.trim(), variable != null ? variable : "", label, new HashMap<>(arguments));
+            program.addInstruction(instruction);
+            instructionDepth = 0;
+        }
+        
+        /**
+         * Get an attribute value, or an empty string if the attribute is missing
+         */
+        private static String attributeValue(Attributes attributes, String attributeName) {
+            String value = attributes.getValue(attributeName);
+            return value != null ? value : "";
+        }
+        
+        Program getProgram() {
+            return program;
+        }
+        
+        IllegalArgumentException getError() {
+            return error;
+        }
     }
 }
@@ -0,0 +1,69 @@
+package com.semulator.engine.program;
+
+import java.io.IOException;
+
+/**
+ * Writes checkpoints of a run to a file every {@code interval} steps.
+ * Checkpoints are taken where the interpreter already stops to check its limits, so the
+ * instruction loop does no extra work between them.
+ */
+public class Checkpointer {
+    
+    private final String filePath;
+    private final long interval;
+    private final int expansionDegree;
+    private volatile ExecutionCheckpoint lastCheckpoint;
+    
+    /**
+     * Create a checkpointer for a run of the expansion of the given degree
+     */
+    public Checkpointer(String filePath, long interval, int expansionDegree) {
+        if (filePath == null) {
+            throw new IllegalArgumentException("Checkpoint file is required");
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+        }
+        this.filePath = filePath;
+        this.interval = interval;
+        this.expansionDegree = expansionDegree;
+    }
+    
+    /**
+     * Get the file checkpoints are written to
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+    
+    /**
+     * Get the number of steps between checkpoints
+     */
+    public long getInterval() {
+        return interval;
+    }
+    
+    /**
+     * Get the most recent checkpoint written, or null if none has been
+     */
+    public ExecutionCheckpoint getLastCheckpoint() {
+        return lastCheckpoint;
+    }
+    
+    /**
+     * Write a checkpoint of the run's current state
+     *
+     * @throws IllegalStateException if the checkpoint file cannot be written
+     */
+    void save(LinkedProgram linked, int[] inputs, int instructionIndex, long steps, long totalCycles,
+              long[] registers, boolean[] written) {
+        ExecutionCheckpoint checkpoint = new ExecutionCheckpoint(linked.getFingerprint(), expansionDegree,
+                inputs, instructionIndex, steps, totalCycles, registers, written);
+        try {
+            checkpoint.write(filePath);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write checkpoint file: " + filePath, e);
+        }
+        lastCheckpoint = checkpoint;
+    }
+}
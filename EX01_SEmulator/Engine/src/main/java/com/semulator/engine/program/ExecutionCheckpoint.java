@@ -0,0 +1,184 @@
+package com.semulator.engine.program;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Snapshot of a run on the register interpreter: the fingerprint of the linked program, the
+ * expansion degree it was run at, its inputs, the next instruction, the step and cycle counts so
+ * far and the register file. A run resumed from a checkpoint finishes with the same variables
+ * and cycle total as if it had never stopped.
+ */
+public class ExecutionCheckpoint {
+    
+    private static final int MAGIC = 0x53454D43;
+    private static final int VERSION = 1;
+    
+    private final long fingerprint;
+    private final int expansionDegree;
+    private final int[] inputs;
+    private final int instructionIndex;
+    private final long steps;
+    private final long totalCycles;
+    private final long[] registers;
+    private final boolean[] written;
+    
+    ExecutionCheckpoint(long fingerprint, int expansionDegree, int[] inputs, int instructionIndex,
+                        long steps, long totalCycles, long[] registers, boolean[] written) {
+        this.fingerprint = fingerprint;
+        this.expansionDegree = expansionDegree;
+        this.inputs = inputs.clone();
+        this.instructionIndex = instructionIndex;
+        this.steps = steps;
+        this.totalCycles = totalCycles;
+        this.registers = registers.clone();
+        this.written = written.clone();
+    }
+    
+    /**
+     * Read a checkpoint file
+     */
+    public static ExecutionCheckpoint read(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            throw new IllegalArgumentException("File does not exist: " + filePath);
+        }
+        
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream input = new DataInputStream(new BufferedInputStream(file))) {
+            if (input.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a checkpoint file: " + filePath);
+            }
+            int version = input.readInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported checkpoint version " + version + ": " + filePath);
+            }
+            
+            long fingerprint = input.readLong();
+            int expansionDegree = input.readInt();
+            int instructionIndex = input.readInt();
+            long steps = input.readLong();
+            long totalCycles = input.readLong();
+            int[] inputs = new int[input.readInt()];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = input.readInt();
+            }
+            long[] registers = new long[input.readInt()];
+            boolean[] written = new boolean[registers.length];
+            for (int slot = 0; slot < registers.length; slot++) {
+                registers[slot] = input.readLong();
+                written[slot] = input.readBoolean();
+            }
+            return new ExecutionCheckpoint(fingerprint, expansionDegree, inputs, instructionIndex,
+                    steps, totalCycles, registers, written);
+        } catch (EOFException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Corrupt checkpoint file: " + filePath);
+        }
+    }
+    
+    /**
+     * Write the checkpoint to a file, replacing any previous checkpoint there only once the new
+     * one is complete. Each write goes through its own temporary file, so writers never collide.
+     */
+    public void write(String filePath) throws IOException {
+        Path path = Paths.get(filePath).toAbsolutePath();
+        Path temporary = Files.createTempFile(path.getParent(), path.getFileName() + ".", ".tmp");
+        try {
+            writeTo(temporary);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+    
+    private void writeTo(Path temporary) throws IOException {
+        try (OutputStream file = Files.newOutputStream(temporary);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(fingerprint);
+            output.writeInt(expansionDegree);
+            output.writeInt(instructionIndex);
+            output.writeLong(steps);
+            output.writeLong(totalCycles);
+            output.writeInt(inputs.length);
+            for (int input : inputs) {
+                output.writeInt(input);
+            }
+            output.writeInt(registers.length);
+            for (int slot = 0; slot < registers.length; slot++) {
+                output.writeLong(registers[slot]);
+                output.writeBoolean(written[slot]);
+            }
+        }
+    }
+    
+    /**
+     * Get the fingerprint of the linked program the run was on
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+    
+    /**
+     * Get the degree of the expansion the run was on
+     */
+    public int getExpansionDegree() {
+        return expansionDegree;
+    }
+    
+    /**
+     * Get the inputs of the run
+     */
+    public int[] getInputs() {
+        return inputs.clone();
+    }
+    
+    /**
+     * Get the index of the instruction the run continues at
+     */
+    public int getInstructionIndex() {
+        return instructionIndex;
+    }
+    
+    /**
+     * Get the number of steps run before the checkpoint
+     */
+    public long getSteps() {
+        return steps;
+    }
+    
+    /**
+     * Get the cycles charged before the checkpoint
+     */
+    public long getTotalCycles() {
+        return totalCycles;
+    }
+    
+    /**
+     * Copy the register file into arrays sized for the linked program
+     */
+    void restore(long[] registers, boolean[] written) {
+        System.arraycopy(this.registers, 0, registers, 0, registers.length);
+        System.arraycopy(this.written, 0, written, 0, written.length);
+    }
+    
+    /**
+     * Check that the checkpoint was taken on the given linked program
+     */
+    void checkProgram(LinkedProgram linked) {
+        if (fingerprint != linked.getFingerprint() || registers.length != linked.getSlotCount()) {
+            throw new IllegalArgumentException("Checkpoint was not taken on this program");
+        }
+    }
+}
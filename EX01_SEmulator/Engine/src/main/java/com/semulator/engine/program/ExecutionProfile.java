@@ -0,0 +1,130 @@
+package com.semulator.engine.program;
+
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.instruction.Instruction;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-instruction execution counts and cycles of a profiled run.
+ * A profile of an expansion can be rolled up to the program it was expanded from, or to any
+ * expansion of a higher degree, by following each instruction's parent to the instruction it
+ * came from; a synthetic instruction is then charged with everything its expansion ran.
+ */
+public class ExecutionProfile {
+    
+    private final Program program;
+    private final ExecutionResult result;
+    private final long[] executionCounts;
+    private final long[] cycles;
+    
+    private ExecutionProfile(Program program, ExecutionResult result, long[] executionCounts, long[] cycles) {
+        this.program = program;
+        this.result = result;
+        this.executionCounts = executionCounts;
+        this.cycles = cycles;
+    }
+    
+    /**
+     * Build the profile of a run from the number of times each instruction of the program ran
+     */
+    static ExecutionProfile fromCounts(Program program, ExecutionResult result, long[] executionCounts) {
+        long[] cycles = new long[executionCounts.length];
+        for (int i = 0; i < executionCounts.length; i++) {
+            cycles[i] = executionCounts[i] * program.getInstruction(i).getCycles();
+        }
+        return new ExecutionProfile(program, result, executionCounts, cycles);
+    }
+    
+    /**
+     * Get the program the counts are indexed by
+     */
+    public Program getProgram() {
+        return program;
+    }
+    
+    /**
+     * Get the result of the profiled run
+     */
+    public ExecutionResult getResult() {
+        return result;
+    }
+    
+    /**
+     * Get the number of instructions the profile covers
+     */
+    public int getInstructionCount() {
+        return executionCounts.length;
+    }
+    
+    /**
+     * Get the number of times the instruction at an index ran, or for a rolled-up synthetic
+     * instruction, the number of instructions its expansion ran
+     */
+    public long getExecutionCount(int index) {
+        return executionCounts[index];
+    }
+    
+    /**
+     * Get the cycles charged by the instruction at an index
+     */
+    public long getCycles(int index) {
+        return cycles[index];
+    }
+    
+    /**
+     * Get the cycles charged by the whole run
+     */
+    public long getTotalCycles() {
+        long total = 0;
+        for (long instructionCycles : cycles) {
+            total += instructionCycles;
+        }
+        return total;
+    }
+    
+    /**
+     * Get the fraction of the run's cycles charged by the instruction at an index, between 0 and 1
+     */
+    public double getCycleShare(int index) {
+        long total = getTotalCycles();
+        return total == 0 ? 0 : (double) cycles[index] / total;
+    }
+    
+    /**
+     * Attribute the profile to the instructions of a program this one was expanded from.
+     * Instructions that do not descend from the source program are left out.
+     */
+    public ExecutionProfile rollUp(Program source) {
+        if (source == program) {
+            return this;
+        }
+        
+        List<Instruction> sourceInstructions = source.getInstructions();
+        Map<Instruction, Integer> sourceIndexes = new IdentityHashMap<>();
+        for (int i = 0; i < sourceInstructions.size(); i++) {
+            sourceIndexes.put(sourceInstructions.get(i), i);
+        }
+        
+        long[] rolledCounts = new long[sourceInstructions.size()];
+        long[] rolledCycles = new long[sourceInstructions.size()];
+        for (int i = 0; i < executionCounts.length; i++) {
+            if (executionCounts[i] == 0) {
+                continue;
+            }
+            Instruction instruction = program.getInstruction(i);
+            Integer sourceIndex = sourceIndexes.get(instruction);
+            while (sourceIndex == null && instruction.getParentInstruction() != null) {
+                instruction = instruction.getParentInstruction();
+                sourceIndex = sourceIndexes.get(instruction);
+            }
+            if (sourceIndex != null) {
+                rolledCounts[sourceIndex] += executionCounts[i];
+                rolledCycles[sourceIndex] += cycles[i];
+            }
+        }
+        return new ExecutionProfile(source, result, rolledCounts, rolledCycles);
+    }
+}
@@ -0,0 +1,305 @@
+package com.semulator.engine.program;
+
+import com.semulator.engine.execution.ExecutionContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bounded record of the steps of one run: for every executed instruction, its index, the slot of
+ * the variable it changed (NO_SLOT if none) and that variable's new value, in 12 bytes.
+ * Records go into a ring buffer on the heap or in a memory-mapped file; once it is full the oldest
+ * records are folded into a base state, so any retained step can still be rebuilt as an
+ * ExecutionContext by replaying the records after it.
+ * <p>
+ * Layout (big-endian): a header of HEADER_INTS ints (magic, version, instruction count, slot count,
+ * capacity, input count, final instruction index, then total steps, first retained step and cycles
+ * before it as pairs of ints), the inputs, the base registers as longs, one byte per slot for
+ * whether it was written, then capacity records of three ints.
+ */
+public class ExecutionTrace {
+    
+    /**
+     * Slot recorded for a step that changed no variable
+     */
+    public static final int NO_SLOT = -1;
+    
+    private static final int MAGIC = 0x53454D54;
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 13;
+    private static final int RECORD_BYTES = 3 * Integer.BYTES;
+    
+    private final int capacity;
+    private final String filePath;
+    private Program program;
+    private LinkedProgram linked;
+    private ByteBuffer buffer;
+    private int recordsOffset;
+    private int[] inputs;
+    private long[] baseRegisters;
+    private boolean[] baseWritten;
+    private long baseCycles;
+    private long firstStep;
+    private long totalSteps;
+    private int cursor;
+    private int finalIndex;
+    
+    private ExecutionTrace(int capacity, String filePath) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Trace capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.filePath = filePath;
+    }
+    
+    /**
+     * Create a trace that keeps the last {@code capacity} steps of a run on the heap
+     */
+    public static ExecutionTrace inMemory(int capacity) {
+        return new ExecutionTrace(capacity, null);
+    }
+    
+    /**
+     * Create a trace that keeps the last {@code capacity} steps of a run in a memory-mapped file,
+     * which can be opened again with {@link #open(String, Program)} once the run has finished
+     */
+    public static ExecutionTrace mapped(String filePath, int capacity) {
+        return new ExecutionTrace(capacity, filePath);
+    }
+    
+    /**
+     * Open a trace file written by a finished run of the given program
+     */
+    public static ExecutionTrace open(String filePath, Program program) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_INTS * Integer.BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not an execution trace file: " + filePath);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported execution trace version " + buffer.getInt(4) + ": " + filePath);
+        }
+        
+        LinkedProgram linked = program.link();
+        if (buffer.getInt(8) != linked.getInstructionCount() || buffer.getInt(12) != linked.getSlotCount()) {
+            throw new IllegalArgumentException("Execution trace was not recorded from this program: " + filePath);
+        }
+        ExecutionTrace trace = new ExecutionTrace(buffer.getInt(16), filePath);
+        trace.bind(program, linked);
+        trace.inputs = new int[buffer.getInt(20)];
+        trace.layout(buffer);
+        if (buffer.capacity() < trace.recordsOffset + (long) trace.capacity * RECORD_BYTES) {
+            throw new IllegalArgumentException("Corrupt execution trace file: " + filePath);
+        }
+        
+        trace.finalIndex = buffer.getInt(24);
+        trace.totalSteps = buffer.getLong(28);
+        trace.firstStep = buffer.getLong(36);
+        trace.baseCycles = buffer.getLong(44);
+        int position = HEADER_INTS * Integer.BYTES;
+        for (int i = 0; i < trace.inputs.length; i++, position += Integer.BYTES) {
+            trace.inputs[i] = buffer.getInt(position);
+        }
+        for (int slot = 0; slot < trace.baseRegisters.length; slot++, position += Long.BYTES) {
+            trace.baseRegisters[slot] = buffer.getLong(position);
+        }
+        for (int slot = 0; slot < trace.baseWritten.length; slot++, position++) {
+            trace.baseWritten[slot] = buffer.get(position) != 0;
+        }
+        return trace;
+    }
+    
+    /**
+     * Attach the trace to the program about to be run
+     */
+    void bind(Program program, LinkedProgram linked) {
+        this.program = program;
+        this.linked = linked;
+    }
+    
+    /**
+     * Start recording a run from the state its inputs were loaded into
+     */
+    void start(int[] inputs, long[] registers, boolean[] written) {
+        this.inputs = inputs.clone();
+        ByteBuffer target;
+        long size = (long) HEADER_INTS * Integer.BYTES + (long) inputs.length * Integer.BYTES
+                + (long) registers.length * (Long.BYTES + 1) + (long) capacity * RECORD_BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Trace capacity is too large: " + capacity);
+        }
+        if (filePath == null) {
+            target = ByteBuffer.allocate((int) size);
+        } else {
+            try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                target = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot create trace file: " + filePath, e);
+            }
+        }
+        layout(target);
+        System.arraycopy(registers, 0, baseRegisters, 0, registers.length);
+        System.arraycopy(written, 0, baseWritten, 0, written.length);
+        baseCycles = 0;
+        firstStep = 0;
+        totalSteps = 0;
+        cursor = 0;
+        finalIndex = 0;
+    }
+    
+    private void layout(ByteBuffer target) {
+        this.buffer = target;
+        int slots = linked.getSlotCount();
+        this.baseRegisters = new long[slots];
+        this.baseWritten = new boolean[slots];
+        this.recordsOffset = HEADER_INTS * Integer.BYTES + inputs.length * Integer.BYTES + slots * (Long.BYTES + 1);
+    }
+    
+    /**
+     * Record one step, folding the oldest retained step into the base state if the buffer is full
+     */
+    void record(int index, int slot, long value) {
+        int position = recordsOffset + cursor * RECORD_BYTES;
+        if (totalSteps - firstStep == capacity) {
+            applyRecord(position, baseRegisters, baseWritten);
+            baseCycles += linked.getCycles(buffer.getInt(position));
+            firstStep++;
+        }
+        buffer.putInt(position, index);
+        buffer.putInt(position + Integer.BYTES, slot);
+        buffer.putInt(position + 2 * Integer.BYTES, LinkedProgram.toVariableValue(value));
+        totalSteps++;
+        if (++cursor == capacity) {
+            cursor = 0;
+        }
+    }
+    
+    /**
+     * Finish recording, noting the instruction index the run stopped at.
+     * A file-backed trace writes its header and base state and is flushed to disk.
+     */
+    void finish(int stopIndex) {
+        finalIndex = stopIndex;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, linked.getInstructionCount());
+        buffer.putInt(12, linked.getSlotCount());
+        buffer.putInt(16, capacity);
+        buffer.putInt(20, inputs.length);
+        buffer.putInt(24, finalIndex);
+        buffer.putLong(28, totalSteps);
+        buffer.putLong(36, firstStep);
+        buffer.putLong(44, baseCycles);
+        int position = HEADER_INTS * Integer.BYTES;
+        for (int input : inputs) {
+            buffer.putInt(position, input);
+            position += Integer.BYTES;
+        }
+        for (long register : baseRegisters) {
+            buffer.putLong(position, register);
+            position += Long.BYTES;
+        }
+        for (boolean written : baseWritten) {
+            buffer.put(position++, (byte) (written ? 1 : 0));
+        }
+        if (buffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) buffer).force();
+        }
+    }
+    
+    /**
+     * Get the number of steps the run took
+     */
+    public long getTotalSteps() {
+        return totalSteps;
+    }
+    
+    /**
+     * Get the earliest step that can still be replayed to
+     */
+    public long getFirstStep() {
+        return firstStep;
+    }
+    
+    /**
+     * Get the maximum number of steps kept
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Get the index of the instruction executed at a retained step
+     */
+    public int getInstructionIndex(long step) {
+        return buffer.getInt(recordPosition(step));
+    }
+    
+    /**
+     * Get the name of the variable changed at a retained step, or null if it changed none
+     */
+    public String getVariable(long step) {
+        int slot = buffer.getInt(recordPosition(step) + Integer.BYTES);
+        return slot == NO_SLOT ? null : linked.getSlotName(slot);
+    }
+    
+    /**
+     * Get the value of the variable changed at a retained step
+     */
+    public int getValue(long step) {
+        return buffer.getInt(recordPosition(step) + 2 * Integer.BYTES);
+    }
+    
+    /**
+     * Rebuild the state of the run after the given number of steps, with the current instruction
+     * index set to the instruction executed next
+     */
+    public ExecutionContext replay(long step) {
+        if (step < firstStep || step > totalSteps) {
+            throw new IllegalArgumentException("Step " + step + " is not retained; steps "
+                    + firstStep + " to " + totalSteps + " can be replayed");
+        }
+        
+        long[] registers = baseRegisters.clone();
+        boolean[] written = baseWritten.clone();
+        long cycles = baseCycles;
+        for (long s = firstStep; s < step; s++) {
+            int position = recordPosition(s);
+            applyRecord(position, registers, written);
+            cycles += linked.getCycles(buffer.getInt(position));
+        }
+        
+        ExecutionContext context = new ExecutionContext(program.getLabelTable());
+        context.initializeInputVariables(inputs);
+        for (int slot = 0; slot < registers.length; slot++) {
+            if (written[slot]) {
+                context.setVariable(linked.getSlotName(slot), LinkedProgram.toVariableValue(registers[slot]));
+            }
+        }
+        context.addCycles(LinkedProgram.toCycles(cycles));
+        context.setCurrentInstructionIndex(step < totalSteps ? getInstructionIndex(step) : finalIndex);
+        return context;
+    }
+    
+    private int recordPosition(long step) {
+        if (step < firstStep || step >= totalSteps) {
+            throw new IllegalArgumentException("Step " + step + " is not retained");
+        }
+        return recordsOffset + (int) (step % capacity) * RECORD_BYTES;
+    }
+    
+    private void applyRecord(int position, long[] registers, boolean[] written) {
+        int slot = buffer.getInt(position + Integer.BYTES);
+        if (slot != NO_SLOT) {
+            registers[slot] = buffer.getInt(position + 2 * Integer.BYTES);
+            written[slot] = true;
+        }
+    }
+}
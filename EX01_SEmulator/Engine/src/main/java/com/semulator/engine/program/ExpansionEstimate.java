@@ -0,0 +1,144 @@
+package com.semulator.engine.program;
+
+import com.semulator.engine.instruction.Instruction;
+import com.semulator.engine.instruction.InstructionType;
+import com.semulator.engine.instruction.synthetic.ExpansionTemplate;
+import com.semulator.engine.instruction.synthetic.SyntheticInstruction;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size and static cost of a program's expansion at every degree, computed without expanding it.
+ * The figures come from the expansion templates of the synthetic instructions, so estimating a
+ * program takes time proportional to its own size, not to the size of its expansions.
+ * The static cycle cost is the sum of the cycles of every instruction in the expansion, each
+ * counted once; the cycles of a run depend on its inputs and are not estimated here.
+ */
+public class ExpansionEstimate {
+    
+    private final int maxDegree;
+    private final long[] instructionCounts;
+    private final long[] freshVariables;
+    private final long[] freshLabels;
+    private final long[] staticCycles;
+    
+    ExpansionEstimate(List<Instruction> instructions, int maxDegree) {
+        this.maxDegree = maxDegree;
+        this.instructionCounts = new long[maxDegree + 1];
+        this.freshVariables = new long[maxDegree + 1];
+        this.freshLabels = new long[maxDegree + 1];
+        this.staticCycles = new long[maxDegree + 1];
+        
+        // Every expansion of one template to one degree has the same shape; work each out once
+        Map<ExpansionTemplate, Totals[]> templateTotals = new IdentityHashMap<>();
+        for (Instruction instruction : instructions) {
+            for (int degree = 0; degree <= maxDegree; degree++) {
+                if (instruction.getType() == InstructionType.SYNTHETIC && instruction.getDegree() > degree) {
+                    ExpansionTemplate template = ((SyntheticInstruction) instruction).getExpansionTemplate();
+                    add(degree, totals(template, degree, templateTotals));
+                } else {
+                    instructionCounts[degree]++;
+                    staticCycles[degree] += instruction.getCycles();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the totals of expanding one template down to a degree, counting the fresh names
+     * of every nested expansion
+     */
+    private static Totals totals(ExpansionTemplate template, int degree, Map<ExpansionTemplate, Totals[]> templateTotals) {
+        Totals[] byDegree = templateTotals.get(template);
+        if (byDegree == null) {
+            byDegree = new Totals[degree + 1];
+            templateTotals.put(template, byDegree);
+        } else if (byDegree.length <= degree) {
+            byDegree = Arrays.copyOf(byDegree, degree + 1);
+            templateTotals.put(template, byDegree);
+        }
+        if (byDegree[degree] != null) {
+            return byDegree[degree];
+        }
+        
+        Totals totals = new Totals();
+        totals.freshVariables = template.getFreshVariables();
+        totals.freshLabels = template.getFreshLabels();
+        for (ExpansionTemplate.Child child : template.getChildren()) {
+            if (child.getTemplate() != null && child.getDegree() > degree) {
+                Totals nested = totals(child.getTemplate(), degree, templateTotals);
+                totals.instructionCount += nested.instructionCount;
+                totals.freshVariables += nested.freshVariables;
+                totals.freshLabels += nested.freshLabels;
+                totals.staticCycles += nested.staticCycles;
+            } else {
+                totals.instructionCount++;
+                totals.staticCycles += child.getCycles();
+            }
+        }
+        byDegree[degree] = totals;
+        return totals;
+    }
+    
+    private void add(int degree, Totals totals) {
+        instructionCounts[degree] += totals.instructionCount;
+        freshVariables[degree] += totals.freshVariables;
+        freshLabels[degree] += totals.freshLabels;
+        staticCycles[degree] += totals.staticCycles;
+    }
+    
+    /**
+     * Get the maximum degree covered by the estimate
+     */
+    public int getMaxDegree() {
+        return maxDegree;
+    }
+    
+    /**
+     * Get the number of instructions in the expansion to a degree
+     */
+    public long getInstructionCount(int degree) {
+        return instructionCounts[checkDegree(degree)];
+    }
+    
+    /**
+     * Get the number of work variables the expansion to a degree makes up
+     */
+    public long getFreshVariables(int degree) {
+        return freshVariables[checkDegree(degree)];
+    }
+    
+    /**
+     * Get the number of labels the expansion to a degree makes up
+     */
+    public long getFreshLabels(int degree) {
+        return freshLabels[checkDegree(degree)];
+    }
+    
+    /**
+     * Get the sum of the cycles of every instruction in the expansion to a degree
+     */
+    public long getStaticCycles(int degree) {
+        return staticCycles[checkDegree(degree)];
+    }
+    
+    private int checkDegree(int degree) {
+        if (degree < 0 || degree > maxDegree) {
+            throw new IllegalArgumentException("Invalid target degree: " + degree);
+        }
+        return degree;
+    }
+    
+    /**
+     * Totals of one template expanded to one degree
+     */
+    private static class Totals {
+        private long instructionCount;
+        private long freshVariables;
+        private long freshLabels;
+        private long staticCycles;
+    }
+}
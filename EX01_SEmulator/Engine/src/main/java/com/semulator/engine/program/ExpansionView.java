@@ -0,0 +1,484 @@
+package com.semulator.engine.program;
+
+import com.semulator.engine.execution.ExecutionLimits;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.execution.StopReason;
+import com.semulator.engine.instruction.Instruction;
+import com.semulator.engine.instruction.InstructionType;
+import com.semulator.engine.instruction.basic.DecreaseInstruction;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.instruction.basic.NeutralInstruction;
+import com.semulator.engine.instruction.synthetic.FreshNameAllocator;
+import com.semulator.engine.instruction.synthetic.GotoLabelInstruction;
+import com.semulator.engine.instruction.synthetic.SyntheticInstruction;
+import com.semulator.engine.instruction.synthetic.ZeroVariableInstruction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy view of a program expanded to a degree, without building the expanded program.
+ * The view keeps only the position at which each original instruction's expansion starts
+ * and the positions of the program's own labels. The expansion of a single original
+ * instruction (a segment) is rebuilt when it is needed, and recent segments are kept in a
+ * small cache so loops do not rebuild them on every iteration.
+ * Labels made up by an expansion are only ever jumped to from within the same segment,
+ * so they are resolved against the segment rather than kept in the view. A segment is built
+ * with its jumps already resolved to positions and its variables mapped to slots numbered
+ * when the view is created, so running the view needs no label or variable lookups.
+ * Fresh names are handed out level by level, as expandToDegree does: each degree from the
+ * maximum down has its own allocator over the whole program one degree up, and expands every
+ * instruction above it once. The view remembers, per degree, how many names were handed out
+ * before each segment, so a rebuilt segment gets the same names as the first time and the
+ * view lists and runs exactly the instructions of expandToDegree.
+ * Segments are immutable once built, so a view can be shared between threads.
+ */
+public class ExpansionView implements Iterable<Instruction> {
+    
+    private static final int SEGMENT_CACHE_SIZE = 256;
+    
+    private final List<Instruction> instructions;
+    private final int targetDegree;
+    private final int maxDegree;
+    private final long[] offsets;
+    private final FreshNameAllocator[] names;
+    private final int[][] variableStarts;
+    private final int[][] labelStarts;
+    private final Map<String, Long> labelPositions;
+    private final Map<String, Integer> slots;
+    private final String[] slotNames;
+    private final Segment[] segmentCache;
+    
+    ExpansionView(List<Instruction> instructions, Map<String, Integer> programLabels, int targetDegree) {
+        this.instructions = instructions;
+        this.targetDegree = targetDegree;
+        int maxDegree = 0;
+        for (Instruction instruction : instructions) {
+            maxDegree = Math.max(maxDegree, instruction.getDegree());
+        }
+        this.maxDegree = maxDegree;
+        this.offsets = new long[instructions.size() + 1];
+        this.names = new FreshNameAllocator[Math.max(maxDegree, 1)];
+        this.variableStarts = new int[names.length][];
+        this.labelStarts = new int[names.length][];
+        this.labelPositions = new HashMap<>();
+        this.slots = new HashMap<>();
+        this.segmentCache = new Segment[SEGMENT_CACHE_SIZE];
+        
+        // Each degree's names follow the names of the whole program one degree up, which is
+        // streamed segment by segment while that degree's own name counts are recorded
+        Iterable<Instruction> source = instructions;
+        for (int degree = maxDegree - 1; degree >= targetDegree; degree--) {
+            names[degree] = new FreshNameAllocator(source);
+            variableStarts[degree] = new int[instructions.size()];
+            labelStarts[degree] = new int[instructions.size()];
+            int level = degree;
+            source = () -> new LevelIterator(level, true);
+        }
+        
+        // One pass over the expansion to size every segment, place the program's labels and
+        // give every variable a slot, y first
+        slots.put("y", 0);
+        long position = 0;
+        FreshNameAllocator allocator = allocatorAt(targetDegree, 0, true);
+        for (int i = 0; i < instructions.size(); i++) {
+            offsets[i] = position;
+            recordStarts(targetDegree, i, allocator);
+            for (Instruction instruction : expandSegment(i, targetDegree, allocator)) {
+                String label = instruction.getLabel();
+                if (label != null && !label.isEmpty() && programLabels.containsKey(label)) {
+                    labelPositions.put(label, position);
+                }
+                String variable = instruction.getVariable();
+                if (variable != null && !slots.containsKey(variable)) {
+                    slots.put(variable, slots.size());
+                }
+                position++;
+            }
+        }
+        offsets[instructions.size()] = position;
+        this.slotNames = new String[slots.size()];
+        for (Map.Entry<String, Integer> slot : slots.entrySet()) {
+            slotNames[slot.getValue()] = slot.getKey();
+        }
+    }
+    
+    /**
+     * Get the target degree of the view
+     */
+    public int getTargetDegree() {
+        return targetDegree;
+    }
+    
+    /**
+     * Get the number of instructions in the expanded program
+     */
+    public long size() {
+        return offsets[instructions.size()];
+    }
+    
+    /**
+     * Get the expanded instruction at a position
+     */
+    public Instruction get(long position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Instruction index out of bounds: " + position);
+        }
+        Segment segment = segmentAt(position);
+        return segment.instructions.get((int) (position - segment.start));
+    }
+    
+    /**
+     * Get the position of one of the program's labels in the expanded program
+     */
+    public long getLabelPosition(String label) {
+        Long position = labelPositions.get(label);
+        if (position == null) {
+            throw new IllegalArgumentException("Label not found: " + label);
+        }
+        return position;
+    }
+    
+    /**
+     * Iterate over the expanded instructions, expanding one original instruction at a time
+     */
+    @Override
+    public Iterator<Instruction> iterator() {
+        return new LevelIterator(targetDegree, false);
+    }
+    
+    /**
+     * Get a sequential stream of the expanded instructions
+     */
+    public Stream<Instruction> stream() {
+        Spliterator<Instruction> spliterator = Spliterators.spliterator(iterator(), size(),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+    
+    /**
+     * Execute the expanded program with given inputs
+     */
+    public ExecutionResult execute(int[] inputs) {
+        return execute(inputs, ExecutionLimits.NONE);
+    }
+    
+    /**
+     * Execute the expanded program directly on the view, stopping early if a limit is reached.
+     * Results match executing the materialized expansion in INTERPRETED mode.
+     */
+    public ExecutionResult execute(int[] inputs, ExecutionLimits limits) {
+        // Values saturate at 0 and wrap like the interpreter's, so results match it exactly
+        int[] registers = new int[slotNames.length];
+        boolean[] written = new boolean[slotNames.length];
+        for (int i = 0; i < inputs.length; i++) {
+            Integer slot = slots.get("x" + (i + 1));
+            if (slot != null) {
+                registers[slot] = Math.max(0, inputs[i]);
+                written[slot] = true;
+            }
+        }
+        
+        ExecutionLimits.Budget budget = limits.start();
+        long steps = 0;
+        int totalCycles = 0;
+        long size = size();
+        long position = 0;
+        Segment segment = null;
+        
+        while (position < size) {
+            if (segment == null || position < segment.start || position >= segment.end) {
+                segment = segmentAt(position);
+            }
+            int index = (int) (position - segment.start);
+            
+            // Stop with a partial result once a limit is reached
+            if (steps >= budget.getNextCheck()) {
+                StopReason stopReason = budget.check(steps);
+                if (stopReason != null) {
+                    return createResult(inputs, registers, written, totalCycles, stopReason, position);
+                }
+            }
+            if (segment.cycles[index] > budget.getCycleBudget() - totalCycles) {
+                return createResult(inputs, registers, written, totalCycles, StopReason.CYCLE_LIMIT, position);
+            }
+            steps++;
+            totalCycles += segment.cycles[index];
+            
+            int slot = segment.operands[index];
+            switch (segment.opcodes[index]) {
+                case LinkedProgram.OP_INCREASE:
+                    registers[slot] = Math.max(0, registers[slot] + 1);
+                    written[slot] = true;
+                    position++;
+                    break;
+                case LinkedProgram.OP_DECREASE:
+                    registers[slot] = Math.max(0, registers[slot] - 1);
+                    written[slot] = true;
+                    position++;
+                    break;
+                case LinkedProgram.OP_JUMP_NOT_ZERO:
+                    position = registers[slot] != 0 ? segment.jump(index) : position + 1;
+                    break;
+                case LinkedProgram.OP_ZERO_VARIABLE:
+                    registers[slot] = 0;
+                    written[slot] = true;
+                    position++;
+                    break;
+                case LinkedProgram.OP_GOTO_LABEL:
+                    position = segment.jump(index);
+                    break;
+                default:
+                    position++;
+                    break;
+            }
+        }
+        
+        return createResult(inputs, registers, written, totalCycles, StopReason.COMPLETED, position);
+    }
+    
+    /**
+     * Build the result of a run from its registers: the inputs it was given and every variable written
+     */
+    private ExecutionResult createResult(int[] inputs, int[] registers, boolean[] written, int totalCycles,
+                                         StopReason stopReason, long position) {
+        Map<String, Integer> values = new HashMap<>();
+        for (int i = 0; i < inputs.length; i++) {
+            values.put("x" + (i + 1), Math.max(0, inputs[i]));
+        }
+        for (int slot = 0; slot < slotNames.length; slot++) {
+            if (written[slot]) {
+                values.put(slotNames[slot], registers[slot]);
+            }
+        }
+        return new ExecutionResult(totalCycles, values, stopReason, (int) Math.min(position, Integer.MAX_VALUE));
+    }
+    
+    /**
+     * Resolve a jump, preferring the program's own labels over labels made up inside the segment.
+     * A jump to the jumping instruction itself falls through, as in the materialized interpreter.
+     */
+    private long resolveJump(String label, long position, Map<String, Long> segmentLabels) {
+        Long target = labelPositions.get(label);
+        if (target == null) {
+            target = segmentLabels.get(label);
+        }
+        if (target == null) {
+            return LinkedProgram.UNRESOLVED_TARGET;
+        }
+        return target == position ? position + 1 : target;
+    }
+    
+    /**
+     * Get the segment containing a position, expanding its original instruction if it is not cached
+     */
+    private Segment segmentAt(long position) {
+        int index = Arrays.binarySearch(offsets, position);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            // Skip original instructions whose expansion is empty
+            while (offsets[index + 1] == position) {
+                index++;
+            }
+        }
+        
+        int slot = index & (SEGMENT_CACHE_SIZE - 1);
+        Segment segment = segmentCache[slot];
+        if (segment == null || segment.index != index) {
+            FreshNameAllocator allocator = allocatorAt(targetDegree, index, false);
+            segment = buildSegment(index, expandSegment(index, targetDegree, allocator));
+            segmentCache[slot] = segment;
+        }
+        return segment;
+    }
+    
+    /**
+     * Expand one original instruction down to a degree, one degree at a time as expandToDegree does.
+     * Degrees above are given the names recorded for the segment; the given degree takes its
+     * names from the allocator.
+     */
+    private List<Instruction> expandSegment(int index, int degree, FreshNameAllocator allocator) {
+        List<Instruction> expanded = Collections.singletonList(instructions.get(index));
+        for (int level = maxDegree - 1; level >= degree; level--) {
+            FreshNameAllocator levelNames = level == degree ? allocator : allocatorAt(level, index, false);
+            List<Instruction> next = new ArrayList<>();
+            for (Instruction instruction : expanded) {
+                if (instruction.getType() == InstructionType.SYNTHETIC && instruction.getDegree() > level) {
+                    for (Instruction child : ((SyntheticInstruction) instruction).expand(levelNames)) {
+                        child.setParentInstruction(instruction);
+                        next.add(child);
+                    }
+                } else {
+                    next.add(instruction);
+                }
+            }
+            expanded = next;
+        }
+        return expanded;
+    }
+    
+    /**
+     * Get the allocator of a degree positioned at the start of a segment, or at the first name
+     * if the allocator is about to be run over the whole program. Degrees at or above the maximum
+     * expand nothing and have no allocator.
+     */
+    private FreshNameAllocator allocatorAt(int degree, int index, boolean fromStart) {
+        if (degree >= maxDegree) {
+            return null;
+        }
+        if (fromStart) {
+            return names[degree].resumeAt(0, 0);
+        }
+        return names[degree].resumeAt(variableStarts[degree][index], labelStarts[degree][index]);
+    }
+    
+    /**
+     * Record how many names a degree's allocator had handed out before a segment
+     */
+    private void recordStarts(int degree, int index, FreshNameAllocator allocator) {
+        if (allocator != null) {
+            variableStarts[degree][index] = allocator.getVariableCount();
+            labelStarts[degree][index] = allocator.getLabelCount();
+        }
+    }
+    
+    /**
+     * Iterates over the program expanded to a degree, expanding one original instruction at a time
+     * and optionally recording where each segment's names start
+     */
+    private class LevelIterator implements Iterator<Instruction> {
+        private final int degree;
+        private final boolean record;
+        private final FreshNameAllocator allocator;
+        private int next;
+        private Iterator<Instruction> current = Collections.emptyIterator();
+        
+        LevelIterator(int degree, boolean record) {
+            this.degree = degree;
+            this.record = record;
+            this.allocator = allocatorAt(degree, 0, true);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && next < instructions.size()) {
+                if (record) {
+                    recordStarts(degree, next, allocator);
+                }
+                current = expandSegment(next++, degree, allocator).iterator();
+            }
+            return current.hasNext();
+        }
+        
+        @Override
+        public Instruction next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+    
+    /**
+     * Build a segment, resolving its jumps and mapping its variables to slots.
+     * Labels are only indexed for real expansions; a single kept instruction defines no made-up labels.
+     */
+    private Segment buildSegment(int index, List<Instruction> expanded) {
+        long start = offsets[index];
+        Map<String, Long> segmentLabels = new HashMap<>();
+        if (expanded.size() > 1) {
+            for (int i = 0; i < expanded.size(); i++) {
+                String label = expanded.get(i).getLabel();
+                if (label != null && !label.isEmpty()) {
+                    segmentLabels.put(label, start + i);
+                }
+            }
+        }
+        
+        int count = expanded.size();
+        int[] opcodes = new int[count];
+        int[] operands = new int[count];
+        int[] cycles = new int[count];
+        long[] targets = new long[count];
+        String[] jumpLabels = new String[count];
+        for (int i = 0; i < count; i++) {
+            Instruction instruction = expanded.get(i);
+            cycles[i] = instruction.getCycles();
+            if (instruction.getVariable() != null) {
+                operands[i] = slots.get(instruction.getVariable());
+            }
+            if (instruction instanceof NeutralInstruction) {
+                opcodes[i] = LinkedProgram.OP_NEUTRAL;
+            } else if (instruction instanceof IncreaseInstruction) {
+                opcodes[i] = LinkedProgram.OP_INCREASE;
+            } else if (instruction instanceof DecreaseInstruction) {
+                opcodes[i] = LinkedProgram.OP_DECREASE;
+            } else if (instruction instanceof ZeroVariableInstruction) {
+                opcodes[i] = LinkedProgram.OP_ZERO_VARIABLE;
+            } else if (instruction instanceof JumpNotZeroInstruction) {
+                opcodes[i] = LinkedProgram.OP_JUMP_NOT_ZERO;
+                jumpLabels[i] = ((JumpNotZeroInstruction) instruction).getJumpLabel();
+                targets[i] = resolveJump(jumpLabels[i], start + i, segmentLabels);
+            } else if (instruction instanceof GotoLabelInstruction) {
+                opcodes[i] = LinkedProgram.OP_GOTO_LABEL;
+                jumpLabels[i] = ((GotoLabelInstruction) instruction).getGotoLabel();
+                targets[i] = resolveJump(jumpLabels[i], start + i, segmentLabels);
+            } else {
+                throw new IllegalArgumentException("Cannot run instruction: " + instruction.getName());
+            }
+        }
+        return new Segment(index, start, offsets[index + 1], expanded, opcodes, operands, cycles, targets, jumpLabels);
+    }
+    
+    /**
+     * The expansion of one original instruction and its position in the expanded program,
+     * with its instructions as opcodes, variable slots, cycles and resolved jump positions
+     */
+    private static class Segment {
+        private final int index;
+        private final long start;
+        private final long end;
+        private final List<Instruction> instructions;
+        private final int[] opcodes;
+        private final int[] operands;
+        private final int[] cycles;
+        private final long[] targets;
+        private final String[] jumpLabels;
+        
+        Segment(int index, long start, long end, List<Instruction> instructions, int[] opcodes, int[] operands,
+                int[] cycles, long[] targets, String[] jumpLabels) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.instructions = instructions;
+            this.opcodes = opcodes;
+            this.operands = operands;
+            this.cycles = cycles;
+            this.targets = targets;
+            this.jumpLabels = jumpLabels;
+        }
+        
+        /**
+         * Get the position the jump at an index within the segment goes to
+         */
+        long jump(int index) {
+            long target = targets[index];
+            if (target == LinkedProgram.UNRESOLVED_TARGET) {
+                throw new IllegalArgumentException("Label not found: " + jumpLabels[index]);
+            }
+            return target;
+        }
+    }
+}
@@ -0,0 +1,674 @@
+package com.semulator.engine.program;
+
+import com.semulator.engine.execution.ExecutionLimits;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.execution.StopReason;
+import com.semulator.engine.instruction.Instruction;
+import com.semulator.engine.instruction.basic.DecreaseInstruction;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.instruction.basic.NeutralInstruction;
+import com.semulator.engine.instruction.synthetic.GotoLabelInstruction;
+import com.semulator.engine.instruction.synthetic.ZeroVariableInstruction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Linked form of a program for register-file execution.
+ * Every variable is assigned a dense slot index and every jump is resolved to its
+ * target instruction index at link time, so the interpreter loop works on primitive
+ * arrays instead of maps keyed by variable or label name.
+ * Common short sequences that end in a jump are also fused into superinstructions,
+ * so the interpreter runs each of them in a single dispatch.
+ */
+public class LinkedProgram {
+    
+    public static final int OP_NEUTRAL = 0;
+    public static final int OP_INCREASE = 1;
+    public static final int OP_DECREASE = 2;
+    public static final int OP_JUMP_NOT_ZERO = 3;
+    public static final int OP_ZERO_VARIABLE = 4;
+    public static final int OP_GOTO_LABEL = 5;
+    public static final int OP_LOOP = 6;
+    
+    /**
+     * Superinstruction: DECREASE V, then JUMP_NOT_ZERO V
+     */
+    public static final int OP_DECREASE_JUMP = 7;
+    
+    /**
+     * Superinstruction: INCREASE V, then JUMP_NOT_ZERO V, which always jumps
+     */
+    public static final int OP_INCREASE_JUMP = 8;
+    
+    /**
+     * Superinstruction: DECREASE V, INCREASE W, then JUMP_NOT_ZERO V
+     */
+    public static final int OP_DECREASE_INCREASE_JUMP = 9;
+    
+    /**
+     * Slot of the output variable y, which is always allocated
+     */
+    public static final int OUTPUT_SLOT = 0;
+    
+    /**
+     * Jump target of an instruction whose label does not exist in the program
+     */
+    public static final int UNRESOLVED_TARGET = -1;
+    
+    private final String[] slotNames;
+    private final int[] inputSlots;
+    private final int[] opcodes;
+    private final int[] operands;
+    private final int[] cycles;
+    private final int[] targets;
+    private final String[] jumpLabels;
+    private final LoopIdiom[] loops;
+    private final int[] fusedOpcodes;
+    private final int[] fusedCycles;
+    private final int[] acceleratedOpcodes;
+    private final long fingerprint;
+    
+    /**
+     * Link a list of instructions, resolving jump labels through a table of label positions
+     */
+    static LinkedProgram link(List<Instruction> instructions, Map<String, Integer> labelPositions) {
+        int count = instructions.size();
+        int[] opcodes = new int[count];
+        String[] variables = new String[count];
+        int[] cycles = new int[count];
+        int[] targets = new int[count];
+        String[] jumpLabels = new String[count];
+        
+        for (int i = 0; i < count; i++) {
+            Instruction instruction = instructions.get(i);
+            variables[i] = instruction.getVariable();
+            cycles[i] = instruction.getCycles();
+            if (instruction instanceof NeutralInstruction) {
+                opcodes[i] = OP_NEUTRAL;
+            } else if (instruction instanceof IncreaseInstruction) {
+                opcodes[i] = OP_INCREASE;
+            } else if (instruction instanceof DecreaseInstruction) {
+                opcodes[i] = OP_DECREASE;
+            } else if (instruction instanceof JumpNotZeroInstruction) {
+                opcodes[i] = OP_JUMP_NOT_ZERO;
+                jumpLabels[i] = ((JumpNotZeroInstruction) instruction).getJumpLabel();
+                targets[i] = resolveTarget(i, jumpLabels[i], labelPositions);
+            } else if (instruction instanceof ZeroVariableInstruction) {
+                opcodes[i] = OP_ZERO_VARIABLE;
+            } else if (instruction instanceof GotoLabelInstruction) {
+                opcodes[i] = OP_GOTO_LABEL;
+                jumpLabels[i] = ((GotoLabelInstruction) instruction).getGotoLabel();
+                targets[i] = resolveTarget(i, jumpLabels[i], labelPositions);
+            } else {
+                throw new IllegalArgumentException("Cannot link instruction: " + instruction.getName());
+            }
+        }
+        return new LinkedProgram(opcodes, variables, cycles, targets, jumpLabels);
+    }
+    
+    /**
+     * Link instruction records whose jumps are already resolved, such as those stored in a binary
+     * program file. Each record has an opcode from OP_NEUTRAL to OP_GOTO_LABEL, its variable, its
+     * cycles, and for jumps the target index, or UNRESOLVED_TARGET, and the label it refers to.
+     * Only the variables are assigned to slots; no labels are looked up.
+     */
+    public LinkedProgram(int[] opcodes, String[] variables, int[] cycles, int[] targets, String[] jumpLabels) {
+        int count = opcodes.length;
+        if (variables.length != count || cycles.length != count || targets.length != count
+                || jumpLabels.length != count) {
+            throw new IllegalArgumentException("Every instruction needs an opcode, variable, cycles, target and label");
+        }
+        this.opcodes = opcodes.clone();
+        this.operands = new int[count];
+        this.cycles = cycles.clone();
+        this.targets = new int[count];
+        this.jumpLabels = new String[count];
+        
+        // Assign slots: y first, then inputs in index order, then everything else by first use
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        slots.put("y", OUTPUT_SLOT);
+        List<Integer> inputIndexes = new ArrayList<>();
+        for (String variable : variables) {
+            int inputIndex = inputIndex(variable);
+            if (inputIndex > 0 && !inputIndexes.contains(inputIndex)) {
+                inputIndexes.add(inputIndex);
+            }
+        }
+        inputIndexes.sort(null);
+        int maxInput = inputIndexes.isEmpty() ? 0 : inputIndexes.get(inputIndexes.size() - 1);
+        this.inputSlots = new int[maxInput];
+        Arrays.fill(inputSlots, -1);
+        for (int inputIndex : inputIndexes) {
+            int slot = slots.size();
+            slots.put("x" + inputIndex, slot);
+            inputSlots[inputIndex - 1] = slot;
+        }
+        
+        for (int i = 0; i < count; i++) {
+            int opcode = opcodes[i];
+            if (opcode < OP_NEUTRAL || opcode > OP_GOTO_LABEL) {
+                throw new IllegalArgumentException("Cannot link opcode " + opcode + " at instruction " + (i + 1));
+            }
+            if (opcode == OP_JUMP_NOT_ZERO || opcode == OP_GOTO_LABEL) {
+                int target = targets[i];
+                if (target != UNRESOLVED_TARGET && (target < 0 || target > count)) {
+                    throw new IllegalArgumentException("Jump target out of range at instruction " + (i + 1) + ": "
+                            + target);
+                }
+                this.targets[i] = target;
+                this.jumpLabels[i] = jumpLabels[i];
+            }
+            if (opcode == OP_NEUTRAL || opcode == OP_GOTO_LABEL) {
+                continue;
+            }
+            
+            Integer slot = slots.get(variables[i]);
+            if (slot == null) {
+                slot = slots.size();
+                slots.put(variables[i], slot);
+            }
+            operands[i] = slot;
+        }
+        
+        this.slotNames = slots.keySet().toArray(new String[0]);
+        
+        this.fusedCycles = new int[count];
+        this.fusedOpcodes = fuse();
+        
+        // Loop headers get their own opcode in the accelerated form
+        this.loops = LoopIdiom.find(opcodes, operands, cycles, targets);
+        this.acceleratedOpcodes = fusedOpcodes.clone();
+        for (int i = 0; i < count; i++) {
+            if (loops[i] != null) {
+                acceleratedOpcodes[i] = OP_LOOP;
+            }
+        }
+        this.fingerprint = computeFingerprint();
+    }
+    
+    /**
+     * Hash everything that decides how the program runs, so a checkpoint can be matched to it
+     */
+    private long computeFingerprint() {
+        long hash = 1125899906842597L;
+        for (String slotName : slotNames) {
+            hash = 31 * hash + slotName.hashCode();
+        }
+        for (int i = 0; i < opcodes.length; i++) {
+            hash = 31 * hash + opcodes[i];
+            hash = 31 * hash + operands[i];
+            hash = 31 * hash + cycles[i];
+            hash = 31 * hash + targets[i];
+        }
+        return hash;
+    }
+    
+    /**
+     * Find the sequences run as superinstructions, returning the opcodes the interpreter dispatches on.
+     * A sequence is only fused if no jump lands inside it, so it always runs from its first instruction.
+     */
+    private int[] fuse() {
+        int count = opcodes.length;
+        boolean[] jumpedTo = new boolean[count + 1];
+        for (int i = 0; i < count; i++) {
+            if ((opcodes[i] == OP_JUMP_NOT_ZERO || opcodes[i] == OP_GOTO_LABEL) && targets[i] != UNRESOLVED_TARGET) {
+                jumpedTo[targets[i]] = true;
+            }
+        }
+        
+        int[] fused = opcodes.clone();
+        for (int i = 0; i + 1 < count; i++) {
+            if (jumpedTo[i + 1]) {
+                continue;
+            }
+            if (isJumpOn(i + 1, operands[i])) {
+                if (opcodes[i] == OP_DECREASE) {
+                    fused[i] = OP_DECREASE_JUMP;
+                } else if (opcodes[i] == OP_INCREASE) {
+                    fused[i] = OP_INCREASE_JUMP;
+                } else {
+                    continue;
+                }
+                fusedCycles[i] = cycles[i] + cycles[i + 1];
+            } else if (opcodes[i] == OP_DECREASE && opcodes[i + 1] == OP_INCREASE && !jumpedTo[i + 2]
+                    && operands[i + 1] != operands[i] && isJumpOn(i + 2, operands[i])) {
+                fused[i] = OP_DECREASE_INCREASE_JUMP;
+                fusedCycles[i] = cycles[i] + cycles[i + 1] + cycles[i + 2];
+            }
+        }
+        return fused;
+    }
+    
+    /**
+     * Check if the instruction at an index is a JUMP_NOT_ZERO on the given slot
+     */
+    private boolean isJumpOn(int index, int slot) {
+        return index < opcodes.length && opcodes[index] == OP_JUMP_NOT_ZERO && operands[index] == slot;
+    }
+    
+    /**
+     * Get the number of instructions a superinstruction opcode stands for
+     */
+    private static int fusedLength(int opcode) {
+        return opcode == OP_DECREASE_INCREASE_JUMP ? 3 : 2;
+    }
+    
+    /**
+     * Get the number of variable slots in the register file
+     */
+    public int getSlotCount() {
+        return slotNames.length;
+    }
+    
+    /**
+     * Get a hash of the linked instructions and variable slots that identifies the program
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+    
+    /**
+     * Check if another linked program has exactly the same instructions and variable slots, and so
+     * always runs to the same result. Unlike equal fingerprints, this cannot be fooled by a hash collision.
+     */
+    public boolean hasSameCode(LinkedProgram other) {
+        return this == other || fingerprint == other.fingerprint
+                && Arrays.equals(slotNames, other.slotNames)
+                && Arrays.equals(opcodes, other.opcodes)
+                && Arrays.equals(operands, other.operands)
+                && Arrays.equals(cycles, other.cycles)
+                && Arrays.equals(targets, other.targets);
+    }
+    
+    /**
+     * Get the variable name held in a slot
+     */
+    public String getSlotName(int slot) {
+        return slotNames[slot];
+    }
+    
+    /**
+     * Get the number of linked instructions
+     */
+    public int getInstructionCount() {
+        return opcodes.length;
+    }
+    
+    /**
+     * Get the opcode at an instruction index
+     */
+    public int getOpcode(int index) {
+        return opcodes[index];
+    }
+    
+    /**
+     * Get the variable slot operated on at an instruction index
+     */
+    public int getOperand(int index) {
+        return operands[index];
+    }
+    
+    /**
+     * Get the cycles charged by the instruction at an index
+     */
+    public int getCycles(int index) {
+        return cycles[index];
+    }
+    
+    /**
+     * Get the resolved jump target at an instruction index, or UNRESOLVED_TARGET for a missing label
+     */
+    public int getTarget(int index) {
+        return targets[index];
+    }
+    
+    /**
+     * Get the label a jump at an instruction index refers to
+     */
+    public String getJumpLabel(int index) {
+        return jumpLabels[index];
+    }
+    
+    /**
+     * Get the superinstruction opcode starting at an instruction index, or its own opcode if none starts there
+     */
+    public int getFusedOpcode(int index) {
+        return fusedOpcodes[index];
+    }
+    
+    /**
+     * Get the counted loop starting at an instruction index, or null if none starts there
+     */
+    public LoopIdiom getLoop(int index) {
+        return loops[index];
+    }
+    
+    /**
+     * Execute the linked program with given inputs
+     */
+    public ExecutionResult execute(int[] inputs) {
+        return run(fusedOpcodes, inputs, ExecutionLimits.NONE, null, null);
+    }
+    
+    /**
+     * Execute the linked program with given inputs, stopping early if a limit is reached
+     */
+    public ExecutionResult execute(int[] inputs, ExecutionLimits limits) {
+        return run(fusedOpcodes, inputs, limits, null, null);
+    }
+    
+    /**
+     * Execute the linked program with given inputs, running recognized decrement/jump loops
+     * in constant time while charging the cycles the step-by-step loop would have taken
+     */
+    public ExecutionResult executeAccelerated(int[] inputs) {
+        return run(acceleratedOpcodes, inputs, ExecutionLimits.NONE, null, null);
+    }
+    
+    /**
+     * Execute with accelerated loops, stopping early if a limit is reached.
+     * A loop that would not fit in the remaining budget is stepped through instead.
+     */
+    public ExecutionResult executeAccelerated(int[] inputs, ExecutionLimits limits) {
+        return run(acceleratedOpcodes, inputs, limits, null, null);
+    }
+    
+    /**
+     * Execute one instruction at a time, without superinstructions or accelerated loops, adding
+     * the number of times each instruction runs to executionCounts, which is indexed like the program
+     */
+    public ExecutionResult executeProfiled(int[] inputs, ExecutionLimits limits, long[] executionCounts) {
+        if (executionCounts.length != opcodes.length) {
+            throw new IllegalArgumentException("Expected " + opcodes.length + " execution counts, got " + executionCounts.length);
+        }
+        return run(opcodes, inputs, limits, executionCounts, null);
+    }
+    
+    /**
+     * Execute one instruction at a time, without superinstructions or accelerated loops,
+     * recording every step and the variable it changed into the trace
+     */
+    ExecutionResult executeTraced(int[] inputs, ExecutionLimits limits, ExecutionTrace trace) {
+        return run(opcodes, inputs, limits, null, trace);
+    }
+    
+    /**
+     * Execute with superinstructions, and with accelerated loops if asked, writing a checkpoint
+     * every checkpointer interval. The run starts from the checkpoint if one is given.
+     */
+    public ExecutionResult executeCheckpointed(int[] inputs, boolean accelerated, ExecutionLimits limits,
+                                               Checkpointer checkpointer, ExecutionCheckpoint resumeFrom) {
+        if (resumeFrom != null) {
+            resumeFrom.checkProgram(this);
+            inputs = resumeFrom.getInputs();
+        }
+        return run(accelerated ? acceleratedOpcodes : fusedOpcodes, inputs, limits, null, null,
+                checkpointer, resumeFrom);
+    }
+    
+    private ExecutionResult run(int[] opcodes, int[] inputs, ExecutionLimits limits, long[] executionCounts,
+                                ExecutionTrace trace) {
+        return run(opcodes, inputs, limits, executionCounts, trace, null, null);
+    }
+    
+    /**
+     * Run the register-file interpreter over the given opcodes, counting executions if a count
+     * array is given, recording steps if a trace is given and writing checkpoints if a
+     * checkpointer is given
+     */
+    private ExecutionResult run(int[] opcodes, int[] inputs, ExecutionLimits limits, long[] executionCounts,
+                                ExecutionTrace trace, Checkpointer checkpointer, ExecutionCheckpoint resumeFrom) {
+        long[] registers = new long[slotNames.length];
+        boolean[] written = new boolean[slotNames.length];
+        long totalCycles = 0;
+        long steps = 0;
+        int pc = 0;
+        if (resumeFrom != null) {
+            resumeFrom.restore(registers, written);
+            totalCycles = resumeFrom.getTotalCycles();
+            steps = resumeFrom.getSteps();
+            pc = resumeFrom.getInstructionIndex();
+        } else {
+            loadInputs(inputs, registers, written);
+        }
+        if (trace != null) {
+            trace.start(inputs, registers, written);
+        }
+        
+        int[] operands = this.operands;
+        int[] cycles = this.cycles;
+        int[] targets = this.targets;
+        int count = opcodes.length;
+        ExecutionLimits.Budget budget = limits.start();
+        long cycleBudget = budget.getCycleBudget();
+        // Checkpoints share the limit check, so the loop still only compares against nextCheck
+        long nextCheckpoint = checkpointer != null ? steps + checkpointer.getInterval() : Long.MAX_VALUE;
+        long nextCheck = Math.min(budget.getNextCheck(), nextCheckpoint);
+        StopReason stopReason = StopReason.COMPLETED;
+        
+        while (pc < count) {
+            if (steps >= nextCheck) {
+                if (steps >= nextCheckpoint) {
+                    checkpointer.save(this, inputs, pc, steps, totalCycles, registers, written);
+                    nextCheckpoint = steps + checkpointer.getInterval();
+                }
+                stopReason = budget.check(steps);
+                if (stopReason != null) {
+                    break;
+                }
+                stopReason = StopReason.COMPLETED;
+                nextCheck = Math.min(budget.getNextCheck(), nextCheckpoint);
+            }
+            
+            int opcode = opcodes[pc];
+            if (opcode == OP_LOOP) {
+                LoopIdiom loop = loops[pc];
+                long iterations = loop.iterations(registers);
+                long loopSteps = iterations * loop.getIterationSteps();
+                if (budget.fits(steps, totalCycles, loopSteps, iterations * loop.getIterationCycles())) {
+                    totalCycles += loop.apply(registers, written, iterations);
+                    steps += loopSteps;
+                    pc = loop.getExit();
+                    continue;
+                }
+                // Step through the loop so the run stops exactly where its budget runs out
+                opcode = this.fusedOpcodes[pc];
+            }
+            
+            if (opcode >= OP_DECREASE_JUMP) {
+                int length = fusedLength(opcode);
+                if (steps + length <= nextCheck && fusedCycles[pc] <= cycleBudget - totalCycles) {
+                    totalCycles += fusedCycles[pc];
+                    steps += length;
+                    pc = runFused(opcode, pc, registers, written, targets);
+                    continue;
+                }
+                // Step through the sequence so the run stops exactly at the next check or its cycle budget
+                opcode = this.opcodes[pc];
+            }
+            
+            int instructionCycles = cycles[pc];
+            if (instructionCycles > cycleBudget - totalCycles) {
+                stopReason = StopReason.CYCLE_LIMIT;
+                break;
+            }
+            totalCycles += instructionCycles;
+            steps++;
+            if (executionCounts != null) {
+                executionCounts[pc]++;
+            }
+            
+            int slot = operands[pc];
+            int index = pc;
+            switch (opcode) {
+                case OP_INCREASE:
+                    registers[slot]++;
+                    written[slot] = true;
+                    pc++;
+                    break;
+                case OP_DECREASE:
+                    if (registers[slot] > 0) {
+                        registers[slot]--;
+                    }
+                    written[slot] = true;
+                    pc++;
+                    break;
+                case OP_JUMP_NOT_ZERO:
+                    pc = registers[slot] != 0 ? jump(targets, pc) : pc + 1;
+                    break;
+                case OP_ZERO_VARIABLE:
+                    registers[slot] = 0;
+                    written[slot] = true;
+                    pc++;
+                    break;
+                case OP_GOTO_LABEL:
+                    pc = jump(targets, pc);
+                    break;
+                default:
+                    pc++;
+                    break;
+            }
+            
+            if (trace != null) {
+                boolean writes = opcode == OP_INCREASE || opcode == OP_DECREASE || opcode == OP_ZERO_VARIABLE;
+                trace.record(index, writes ? slot : ExecutionTrace.NO_SLOT, registers[slot]);
+            }
+        }
+        
+        if (trace != null) {
+            trace.finish(pc);
+        }
+        return createResult(inputs, registers, written, totalCycles, stopReason, pc);
+    }
+    
+    /**
+     * Run the superinstruction starting at pc and return the position execution continues at
+     */
+    private int runFused(int opcode, int pc, long[] registers, boolean[] written, int[] targets) {
+        int slot = operands[pc];
+        switch (opcode) {
+            case OP_DECREASE_JUMP:
+                if (registers[slot] > 0) {
+                    registers[slot]--;
+                }
+                written[slot] = true;
+                return registers[slot] != 0 ? jump(targets, pc + 1) : pc + 2;
+            case OP_INCREASE_JUMP:
+                registers[slot]++;
+                written[slot] = true;
+                return jump(targets, pc + 1);
+            default:
+                if (registers[slot] > 0) {
+                    registers[slot]--;
+                }
+                written[slot] = true;
+                registers[operands[pc + 1]]++;
+                written[operands[pc + 1]] = true;
+                return registers[slot] != 0 ? jump(targets, pc + 2) : pc + 3;
+        }
+    }
+    
+    /**
+     * Get the target of the jump taken at the given position
+     */
+    private int jump(int[] targets, int pc) {
+        int target = targets[pc];
+        if (target == UNRESOLVED_TARGET) {
+            throw new IllegalArgumentException("Label not found: " + jumpLabels[pc]);
+        }
+        return target;
+    }
+    
+    /**
+     * Resolve the target instruction index of a jump once, at link time
+     */
+    private static int resolveTarget(int index, String label, Map<String, Integer> labelPositions) {
+        Integer position = labelPositions.get(label);
+        if (position == null) {
+            return UNRESOLVED_TARGET;
+        }
+        // A jump to the current instruction falls through, as in the context-based loop
+        return position == index ? index + 1 : position;
+    }
+    
+    /**
+     * Load input values into their register slots, marking them as written
+     */
+    public void loadInputs(int[] inputs, long[] registers, boolean[] written) {
+        for (int i = 0; i < inputs.length && i < inputSlots.length; i++) {
+            int slot = inputSlots[i];
+            if (slot >= 0) {
+                registers[slot] = Math.max(0, inputs[i]);
+                written[slot] = true;
+            }
+        }
+    }
+    
+    /**
+     * Build the execution result, reporting the same variable names as an ExecutionContext would
+     */
+    public ExecutionResult createResult(int[] inputs, long[] registers, boolean[] written, long totalCycles) {
+        return createResult(inputs, registers, written, totalCycles, StopReason.COMPLETED, opcodes.length);
+    }
+    
+    /**
+     * Build the result of a run that stopped for the given reason before the instruction at stopIndex
+     */
+    public ExecutionResult createResult(int[] inputs, long[] registers, boolean[] written, long totalCycles,
+                                        StopReason stopReason, int stopIndex) {
+        Map<String, Integer> values = new HashMap<>();
+        for (int i = 0; i < inputs.length; i++) {
+            values.put("x" + (i + 1), Math.max(0, inputs[i]));
+        }
+        for (int slot = 0; slot < slotNames.length; slot++) {
+            if (written[slot]) {
+                values.put(slotNames[slot], toVariableValue(registers[slot]));
+            }
+        }
+        return new ExecutionResult(toCycles(totalCycles), values, stopReason, stopIndex);
+    }
+    
+    /**
+     * Get the 1-based input index of a variable name, or 0 if it is not an input variable
+     */
+    private static int inputIndex(String variable) {
+        if (variable == null || variable.length() < 2 || variable.charAt(0) != 'x') {
+            return 0;
+        }
+        for (int i = 1; i < variable.length(); i++) {
+            if (!Character.isDigit(variable.charAt(i))) {
+                return 0;
+            }
+        }
+        try {
+            int index = Integer.parseInt(variable.substring(1));
+            return variable.equals("x" + index) ? index : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Narrow a register to the value the interpreter would hold. ExecutionContext keeps variables
+     * in an int and turns an increment that overflows into 0, so counting past Integer.MAX_VALUE
+     * starts again from 0 and the interpreter's value is the register modulo 2^31. Registers
+     * themselves keep counting, so a run that decrements or tests a variable after it has passed
+     * Integer.MAX_VALUE can still take a different branch than the interpreter.
+     */
+    static int toVariableValue(long register) {
+        return (int) (register & Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Narrow a cycle count the way the interpreter's int counter overflows
+     */
+    static int toCycles(long cycles) {
+        return (int) cycles;
+    }
+}
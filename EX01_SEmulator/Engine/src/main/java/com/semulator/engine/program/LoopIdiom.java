@@ -0,0 +1,176 @@
+package com.semulator.engine.program;
+
+import java.util.Arrays;
+
+/**
+ * A counted decrement/jump loop recognized in a linked program.
+ * The loop starts at a header instruction, runs a straight-line body of INCREASE,
+ * DECREASE and NEUTRAL instructions that decreases a control variable exactly once,
+ * and ends with a JUMP_NOT_ZERO on the control variable back to the header.
+ * Such a loop always runs max(control, 1) iterations, so its effect can be applied
+ * in time proportional to the body length instead of the control variable's value.
+ */
+public class LoopIdiom {
+    
+    private final int controlSlot;
+    private final int[] slots;
+    private final long[] deltas;
+    private final long iterationCycles;
+    private final int iterationSteps;
+    private final int exit;
+    
+    private LoopIdiom(int controlSlot, int[] slots, long[] deltas, long iterationCycles, int iterationSteps, int exit) {
+        this.controlSlot = controlSlot;
+        this.slots = slots;
+        this.deltas = deltas;
+        this.iterationCycles = iterationCycles;
+        this.iterationSteps = iterationSteps;
+        this.exit = exit;
+    }
+    
+    /**
+     * Find every loop idiom in a linked program, indexed by header position (null where none starts)
+     */
+    static LoopIdiom[] find(int[] opcodes, int[] operands, int[] cycles, int[] targets) {
+        LoopIdiom[] loops = new LoopIdiom[opcodes.length];
+        for (int end = 0; end < opcodes.length; end++) {
+            if (opcodes[end] != LinkedProgram.OP_JUMP_NOT_ZERO) {
+                continue;
+            }
+            int header = targets[end];
+            if (header < 0 || header >= end || loops[header] != null) {
+                continue;
+            }
+            loops[header] = match(opcodes, operands, cycles, header, end);
+        }
+        return loops;
+    }
+    
+    /**
+     * Match the body between a header and its closing jump, or return null if it is not a counted loop
+     */
+    private static LoopIdiom match(int[] opcodes, int[] operands, int[] cycles, int header, int end) {
+        int controlSlot = operands[end];
+        int controlDecrements = 0;
+        int[] slots = new int[end - header];
+        long[] deltas = new long[end - header];
+        int slotCount = 0;
+        long iterationCycles = cycles[end];
+        
+        for (int i = header; i < end; i++) {
+            iterationCycles += cycles[i];
+            int opcode = opcodes[i];
+            if (opcode == LinkedProgram.OP_NEUTRAL) {
+                continue;
+            }
+            if (opcode != LinkedProgram.OP_INCREASE && opcode != LinkedProgram.OP_DECREASE) {
+                return null;
+            }
+            
+            int slot = operands[i];
+            long delta = opcode == LinkedProgram.OP_INCREASE ? 1 : -1;
+            if (slot == controlSlot) {
+                if (delta > 0 || ++controlDecrements > 1) {
+                    return null;
+                }
+                continue;
+            }
+            
+            int index = indexOf(slots, slotCount, slot);
+            if (index < 0) {
+                slots[slotCount] = slot;
+                deltas[slotCount++] = delta;
+            } else if (Long.signum(deltas[index]) == Long.signum(delta)) {
+                deltas[index] += delta;
+            } else {
+                // Mixed increments and saturating decrements of one variable depend on the order
+                return null;
+            }
+        }
+        
+        if (controlDecrements != 1) {
+            return null;
+        }
+        return new LoopIdiom(controlSlot, Arrays.copyOf(slots, slotCount), Arrays.copyOf(deltas, slotCount),
+                iterationCycles, end - header + 1, end + 1);
+    }
+    
+    private static int indexOf(int[] slots, int count, int slot) {
+        for (int i = 0; i < count; i++) {
+            if (slots[i] == slot) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Get the number of iterations the loop will run for the current register values
+     */
+    long iterations(long[] registers) {
+        return Math.max(registers[controlSlot], 1);
+    }
+    
+    /**
+     * Apply the given number of iterations to the register file and return the cycles they cost
+     */
+    long apply(long[] registers, boolean[] written, long iterations) {
+        registers[controlSlot] = Math.max(0, registers[controlSlot] - iterations);
+        written[controlSlot] = true;
+        for (int i = 0; i < slots.length; i++) {
+            int slot = slots[i];
+            registers[slot] = Math.max(0, registers[slot] + deltas[i] * iterations);
+            written[slot] = true;
+        }
+        return iterationCycles * iterations;
+    }
+    
+    /**
+     * Get the slot of the variable that counts the iterations
+     */
+    public int getControlSlot() {
+        return controlSlot;
+    }
+    
+    /**
+     * Get the number of other variables changed by the loop body
+     */
+    public int getSlotCount() {
+        return slots.length;
+    }
+    
+    /**
+     * Get the slot of the i-th variable changed by the loop body
+     */
+    public int getSlot(int i) {
+        return slots[i];
+    }
+    
+    /**
+     * Get the net change one iteration makes to the i-th variable
+     */
+    public long getDelta(int i) {
+        return deltas[i];
+    }
+    
+    /**
+     * Get the cycles charged by one iteration, including the closing jump
+     */
+    public long getIterationCycles() {
+        return iterationCycles;
+    }
+    
+    /**
+     * Get the number of instructions executed by one iteration, including the closing jump
+     */
+    public int getIterationSteps() {
+        return iterationSteps;
+    }
+    
+    /**
+     * Get the instruction index execution continues at once the loop finishes
+     */
+    public int getExit() {
+        return exit;
+    }
+}
@@ -0,0 +1,317 @@
+package com.semulator.engine.program;
+
+import com.semulator.engine.execution.ExecutionResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A linked program after a cycle-preserving peephole pass.
+ * The pass removes NEUTRAL instructions, jumps to the next instruction and INCREASE/DECREASE
+ * pairs on one variable, and turns an INCREASE of a work variable that only feeds the following
+ * JUMP_NOT_ZERO (the expansion of GOTO) into an unconditional jump.
+ * Removed instructions are charged as part of the instruction that follows them, so the cycle
+ * total is unchanged. What they did to variables is kept in a side table: the slots they mark as
+ * written, and the work variables whose value is the number of times their jump was taken.
+ * The table is applied from per-instruction execution counts once the run finishes, so final
+ * variable values are the same as without the pass.
+ */
+public class OptimizedProgram {
+    
+    private static final int NO_SLOT = -1;
+    
+    private final LinkedProgram linked;
+    private final int[] opcodes;
+    private final int[] operands;
+    private final long[] cycles;
+    private final int[] targets;
+    private final int[] origins;
+    // Index in the linked program of the instruction itself, whose label a failed jump reports
+    private final int[] sources;
+    private final int[] counterSlots;
+    private final int[][] writtenSlots;
+    
+    OptimizedProgram(LinkedProgram linked) {
+        this.linked = linked;
+        int count = linked.getInstructionCount();
+        
+        // Instructions that are jumped to must stay where a jump can land on them alone
+        boolean[] jumpedTo = new boolean[count + 1];
+        int[] uses = new int[linked.getSlotCount()];
+        for (int i = 0; i < count; i++) {
+            int opcode = linked.getOpcode(i);
+            if (opcode == LinkedProgram.OP_JUMP_NOT_ZERO || opcode == LinkedProgram.OP_GOTO_LABEL) {
+                int target = linked.getTarget(i);
+                if (target != LinkedProgram.UNRESOLVED_TARGET) {
+                    jumpedTo[target] = true;
+                }
+            }
+            if (opcode != LinkedProgram.OP_NEUTRAL && opcode != LinkedProgram.OP_GOTO_LABEL) {
+                uses[linked.getOperand(i)]++;
+            }
+        }
+        
+        Builder builder = new Builder(count);
+        for (int i = 0; i < count; i++) {
+            if (jumpedTo[i]) {
+                builder.flush(i);
+            }
+            
+            int opcode = linked.getOpcode(i);
+            int slot = linked.getOperand(i);
+            boolean hasNext = i + 1 < count && !jumpedTo[i + 1];
+            int nextOpcode = hasNext ? linked.getOpcode(i + 1) : -1;
+            
+            if (opcode == LinkedProgram.OP_NEUTRAL || isJumpToNext(i)) {
+                builder.remove(i, linked.getCycles(i), NO_SLOT);
+            } else if (opcode == LinkedProgram.OP_INCREASE && nextOpcode == LinkedProgram.OP_DECREASE
+                    && linked.getOperand(i + 1) == slot) {
+                // x + 1 - 1 never saturates, so the pair only marks the variable as written
+                builder.remove(i, linked.getCycles(i), slot);
+                builder.remove(i + 1, linked.getCycles(i + 1), NO_SLOT);
+                i++;
+            } else if (opcode == LinkedProgram.OP_INCREASE && nextOpcode == LinkedProgram.OP_JUMP_NOT_ZERO
+                    && linked.getOperand(i + 1) == slot && uses[slot] == 2 && isWorkVariable(slot)
+                    && linked.getTarget(i + 1) != LinkedProgram.UNRESOLVED_TARGET) {
+                // The variable is non-zero right after its increase, so the jump is always taken
+                builder.remove(i, linked.getCycles(i), NO_SLOT);
+                builder.add(i + 1, LinkedProgram.OP_GOTO_LABEL, NO_SLOT, linked.getCycles(i + 1),
+                        linked.getTarget(i + 1), slot);
+                i++;
+            } else {
+                builder.add(i, opcode, slot, linked.getCycles(i), linked.getTarget(i), NO_SLOT);
+            }
+        }
+        builder.flush(count);
+        
+        int size = builder.opcodes.size();
+        this.opcodes = new int[size];
+        this.operands = new int[size];
+        this.cycles = new long[size];
+        this.targets = new int[size];
+        this.origins = new int[size];
+        this.sources = new int[size];
+        this.counterSlots = new int[size];
+        this.writtenSlots = new int[size][];
+        for (int op = 0; op < size; op++) {
+            opcodes[op] = builder.opcodes.get(op);
+            operands[op] = builder.operands.get(op);
+            cycles[op] = builder.cycles.get(op);
+            origins[op] = builder.origins.get(op);
+            sources[op] = builder.sources.get(op);
+            counterSlots[op] = builder.counterSlots.get(op);
+            writtenSlots[op] = builder.writtenSlots.get(op);
+            
+            int target = builder.targets.get(op);
+            targets[op] = target == LinkedProgram.UNRESOLVED_TARGET ? target : builder.positions[target];
+        }
+    }
+    
+    /**
+     * Check if the instruction at an index is a jump whose target is the next instruction anyway
+     */
+    private boolean isJumpToNext(int index) {
+        int opcode = linked.getOpcode(index);
+        return (opcode == LinkedProgram.OP_JUMP_NOT_ZERO || opcode == LinkedProgram.OP_GOTO_LABEL)
+                && linked.getTarget(index) == index + 1;
+    }
+    
+    /**
+     * Check if a slot holds a work variable, which starts at 0 and is not reported as an input or the output
+     */
+    private boolean isWorkVariable(int slot) {
+        return slot != LinkedProgram.OUTPUT_SLOT && linked.getSlotName(slot).startsWith("z");
+    }
+    
+    /**
+     * Get the number of instructions left after the pass
+     */
+    public int getInstructionCount() {
+        return opcodes.length;
+    }
+    
+    /**
+     * Get the index in the linked program of the first instruction an optimized instruction stands for
+     */
+    public int getOriginalIndex(int index) {
+        return origins[index];
+    }
+    
+    /**
+     * Execute the optimized program with given inputs.
+     * Results, including cycle totals and final variable values, match the linked program.
+     */
+    public ExecutionResult execute(int[] inputs) {
+        long[] registers = new long[linked.getSlotCount()];
+        boolean[] written = new boolean[registers.length];
+        linked.loadInputs(inputs, registers, written);
+        
+        int[] opcodes = this.opcodes;
+        int[] operands = this.operands;
+        long[] cycles = this.cycles;
+        int[] targets = this.targets;
+        long[] executions = new long[opcodes.length];
+        int count = opcodes.length;
+        long totalCycles = 0;
+        int pc = 0;
+        
+        while (pc < count) {
+            totalCycles += cycles[pc];
+            executions[pc]++;
+            
+            int slot = operands[pc];
+            switch (opcodes[pc]) {
+                case LinkedProgram.OP_INCREASE:
+                    registers[slot]++;
+                    written[slot] = true;
+                    pc++;
+                    break;
+                case LinkedProgram.OP_DECREASE:
+                    if (registers[slot] > 0) {
+                        registers[slot]--;
+                    }
+                    written[slot] = true;
+                    pc++;
+                    break;
+                case LinkedProgram.OP_JUMP_NOT_ZERO:
+                    pc = registers[slot] != 0 ? jump(pc) : pc + 1;
+                    break;
+                case LinkedProgram.OP_ZERO_VARIABLE:
+                    registers[slot] = 0;
+                    written[slot] = true;
+                    pc++;
+                    break;
+                case LinkedProgram.OP_GOTO_LABEL:
+                    pc = jump(pc);
+                    break;
+                default:
+                    pc++;
+                    break;
+            }
+        }
+        
+        applySideTable(executions, registers, written);
+        return linked.createResult(inputs, registers, written, totalCycles);
+    }
+    
+    /**
+     * Apply the effects of removed instructions according to how often their replacements ran
+     */
+    private void applySideTable(long[] executions, long[] registers, boolean[] written) {
+        for (int op = 0; op < executions.length; op++) {
+            if (executions[op] == 0) {
+                continue;
+            }
+            if (counterSlots[op] != NO_SLOT) {
+                registers[counterSlots[op]] += executions[op];
+                written[counterSlots[op]] = true;
+            }
+            if (writtenSlots[op] != null) {
+                for (int slot : writtenSlots[op]) {
+                    written[slot] = true;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the target of the jump taken at the given position
+     */
+    private int jump(int pc) {
+        int target = targets[pc];
+        if (target == LinkedProgram.UNRESOLVED_TARGET) {
+            throw new IllegalArgumentException("Label not found: " + linked.getJumpLabel(sources[pc]));
+        }
+        return target;
+    }
+    
+    /**
+     * Collects optimized instructions, holding removed ones until the instruction they are charged to
+     */
+    private static class Builder {
+        private final List<Integer> opcodes = new ArrayList<>();
+        private final List<Integer> operands = new ArrayList<>();
+        private final List<Long> cycles = new ArrayList<>();
+        private final List<Integer> targets = new ArrayList<>();
+        private final List<Integer> origins = new ArrayList<>();
+        private final List<Integer> sources = new ArrayList<>();
+        private final List<Integer> counterSlots = new ArrayList<>();
+        private final List<int[]> writtenSlots = new ArrayList<>();
+        
+        // Position in the optimized program of every linked instruction, and of the end
+        private final int[] positions;
+        
+        // Removed instructions waiting for the next optimized instruction
+        private int pendingStart = -1;
+        private int pendingEnd;
+        private long pendingCycles;
+        private int[] pendingWritten;
+        
+        Builder(int count) {
+            this.positions = new int[count + 1];
+        }
+        
+        /**
+         * Drop an instruction, charging its cycles and marking its slot as written with the next one added
+         */
+        void remove(int index, long instructionCycles, int writtenSlot) {
+            if (pendingStart < 0) {
+                pendingStart = index;
+            }
+            pendingEnd = index + 1;
+            pendingCycles += instructionCycles;
+            if (writtenSlot != NO_SLOT) {
+                pendingWritten = pendingWritten == null ? new int[] {writtenSlot}
+                        : appendSlot(pendingWritten, writtenSlot);
+            }
+        }
+        
+        /**
+         * Add an instruction standing for the linked instruction at an index and any removed before it
+         */
+        void add(int index, int opcode, int operand, long instructionCycles, int target, int counterSlot) {
+            int position = opcodes.size();
+            int origin = pendingStart >= 0 ? pendingStart : index;
+            for (int i = origin; i <= index; i++) {
+                positions[i] = position;
+            }
+            opcodes.add(opcode);
+            operands.add(operand);
+            cycles.add(pendingCycles + instructionCycles);
+            targets.add(target);
+            origins.add(origin);
+            sources.add(index);
+            counterSlots.add(counterSlot);
+            writtenSlots.add(pendingWritten);
+            clearPending();
+        }
+        
+        /**
+         * Give removed instructions an instruction of their own, so nothing is charged to the one at index
+         */
+        void flush(int index) {
+            if (pendingStart >= 0) {
+                add(pendingEnd - 1, LinkedProgram.OP_NEUTRAL, NO_SLOT, 0, LinkedProgram.UNRESOLVED_TARGET, NO_SLOT);
+            }
+            positions[index] = opcodes.size();
+        }
+        
+        private void clearPending() {
+            pendingStart = -1;
+            pendingCycles = 0;
+            pendingWritten = null;
+        }
+        
+        private static int[] appendSlot(int[] slots, int slot) {
+            for (int existing : slots) {
+                if (existing == slot) {
+                    return slots;
+                }
+            }
+            int[] grown = Arrays.copyOf(slots, slots.length + 1);
+            grown[slots.length] = slot;
+            return grown;
+        }
+    }
+}
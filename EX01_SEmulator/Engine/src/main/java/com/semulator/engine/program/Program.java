@@ -1,35 +1,70 @@
 package com.semulator.engine.program;
 
+import com.semulator.engine.compiler.CompiledProgram;
+import com.semulator.engine.compiler.ProgramCompiler;
 import com.semulator.engine.execution.ExecutionContext;
+import com.semulator.engine.execution.ExecutionLimits;
+import com.semulator.engine.execution.ExecutionMode;
 import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.execution.StopReason;
 import com.semulator.engine.instruction.Instruction;
+import com.semulator.engine.monitoring.EngineMetrics;
+import com.semulator.engine.monitoring.OperationMetrics;
+import com.semulator.engine.monitoring.ProgramExecuteEvent;
+import com.semulator.engine.monitoring.ProgramExpandEvent;
 
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents an S-Emulator program with instructions and execution capabilities.
  */
 public class Program {
     
+    /**
+     * Number of ADAPTIVE runs after which a program is compiled to bytecode
+     */
+    public static final int COMPILE_THRESHOLD = 100;
+    
     private final String name;
+    private String sourceName;
+    private int expansionDegree;
+    private volatile OperationMetrics executeMetrics;
     private final List<Instruction> instructions;
     private final Map<String, Integer> labelPositions;
+    private final Map<String, Integer> labelTable;
     private final Set<String> inputVariables;
     private final Set<String> usedLabels;
     private int maxDegree;
+    private volatile LinkedProgram linkedProgram;
+    private volatile OptimizedProgram optimizedProgram;
+    private volatile CompiledProgram compiledProgram;
+    private volatile boolean compilationFailed;
+    private final AtomicInteger adaptiveRuns;
+    private final List<SoftReference<Program>> expansions;
+    private final List<ExpansionView> expansionViews;
+    private volatile ExpansionEstimate expansionEstimate;
     
     public Program(String name) {
         this.name = name;
+        this.sourceName = name;
+        this.expansionDegree = -1;
         this.instructions = new ArrayList<>();
         this.labelPositions = new HashMap<>();
+        this.labelTable = Collections.unmodifiableMap(labelPositions);
         this.inputVariables = new TreeSet<>();
         this.usedLabels = new TreeSet<>();
         this.maxDegree = 0;
+        this.adaptiveRuns = new AtomicInteger();
+        this.expansions = new ArrayList<>();
+        this.expansionViews = new ArrayList<>();
     }
     
     /**
@@ -51,6 +86,18 @@ public class Program {
         
         // Update max degree
         maxDegree = Math.max(maxDegree, instruction.getDegree());
+        
+        // Any previously linked or compiled form no longer matches the instruction list
+        linkedProgram = null;
+        optimizedProgram = null;
+        compiledProgram = null;
+        compilationFailed = false;
+        expansionEstimate = null;
+        executeMetrics = null;
+        synchronized (expansions) {
+            expansions.clear();
+            expansionViews.clear();
+        }
     }
     
     /**
@@ -60,6 +107,20 @@ public class Program {
         return name;
     }
     
+    /**
+     * Get the name of the program this one was expanded from, or its own name if it was not expanded
+     */
+    public String getSourceName() {
+        return sourceName;
+    }
+    
+    /**
+     * Get the degree this program was expanded to, or its maximum degree if it was not expanded
+     */
+    public int getDegree() {
+        return expansionDegree >= 0 ? expansionDegree : maxDegree;
+    }
+    
     /**
      * Get all instructions
      */
@@ -123,23 +184,242 @@ public class Program {
         return position;
     }
     
+    /**
+     * Get the read-only table of label positions
+     */
+    Map<String, Integer> getLabelTable() {
+        return labelTable;
+    }
+    
+    /**
+     * Get the linked register-file form of the program, linking it on first use
+     */
+    public LinkedProgram link() {
+        LinkedProgram linked = linkedProgram;
+        if (linked == null) {
+            linked = LinkedProgram.link(instructions, labelPositions);
+            linkedProgram = linked;
+        }
+        return linked;
+    }
+    
+    /**
+     * Install a linked form built elsewhere, such as one loaded from a binary program file,
+     * so the program is not linked again from its instructions
+     */
+    public void preloadLink(LinkedProgram linked) {
+        if (linked.getInstructionCount() != instructions.size()) {
+            throw new IllegalArgumentException("Linked program has " + linked.getInstructionCount()
+                    + " instructions, expected " + instructions.size());
+        }
+        linkedProgram = linked;
+        optimizedProgram = null;
+        compiledProgram = null;
+        compilationFailed = false;
+    }
+    
+    /**
+     * Get the linked program after the peephole pass, optimizing it on first use
+     */
+    public OptimizedProgram optimize() {
+        OptimizedProgram optimized = optimizedProgram;
+        if (optimized == null) {
+            optimized = new OptimizedProgram(link());
+            optimizedProgram = optimized;
+        }
+        return optimized;
+    }
+    
+    /**
+     * Get the program compiled to JVM bytecode, compiling it on first use
+     *
+     * @throws IllegalStateException if the program cannot be compiled
+     */
+    public synchronized CompiledProgram compile() {
+        CompiledProgram compiled = compiledProgram;
+        if (compiled == null) {
+            try {
+                compiled = ProgramCompiler.compile(link());
+            } catch (IllegalStateException e) {
+                compilationFailed = true;
+                throw e;
+            }
+            compiledProgram = compiled;
+        }
+        return compiled;
+    }
+    
     /**
      * Execute the program with given inputs
      */
     public ExecutionResult execute(int[] inputs) {
-        ExecutionContext context = new ExecutionContext();
+        return execute(inputs, ExecutionMode.REGISTER);
+    }
+    
+    /**
+     * Execute the program with given inputs using the given execution mode
+     */
+    public ExecutionResult execute(int[] inputs, ExecutionMode mode) {
+        return execute(inputs, mode, ExecutionLimits.NONE);
+    }
+    
+    /**
+     * Execute the program with given inputs, stopping early with a partial result if a limit is reached.
+     * Compiled and optimized code cannot stop part way, so limited COMPILED, OPTIMIZED and ADAPTIVE runs
+     * use the accelerated interpreter.
+     */
+    public ExecutionResult execute(int[] inputs, ExecutionMode mode, ExecutionLimits limits) {
+        ProgramExecuteEvent event = new ProgramExecuteEvent();
+        EngineMetrics metrics = EngineMetrics.getShared();
+        if (!event.isEnabled() && !metrics.isEnabled()) {
+            return dispatch(inputs, mode, limits);
+        }
+        
+        event.begin();
+        long start = System.nanoTime();
+        ExecutionResult result = dispatch(inputs, mode, limits);
+        long duration = System.nanoTime() - start;
+        event.end();
+        if (event.shouldCommit()) {
+            event.programName = sourceName;
+            event.degree = getDegree();
+            event.instructionCount = instructions.size();
+            event.mode = mode.name();
+            event.cycles = result.getTotalCycles();
+            event.stopReason = result.getStopReason().name();
+            event.commit();
+        }
+        if (metrics.isEnabled()) {
+            OperationMetrics operationMetrics = executeMetrics;
+            if (operationMetrics == null) {
+                operationMetrics = metrics.get(EngineMetrics.EXECUTE, sourceName, getDegree());
+                executeMetrics = operationMetrics;
+            }
+            operationMetrics.record(duration, result.getTotalCycles());
+        }
+        return result;
+    }
+    
+    /**
+     * Run the program on the tier selected by the mode and limits
+     */
+    private ExecutionResult dispatch(int[] inputs, ExecutionMode mode, ExecutionLimits limits) {
+        if (!limits.isUnlimited()) {
+            switch (mode) {
+                case REGISTER:
+                    return link().execute(inputs, limits);
+                case INTERPRETED:
+                    return executeInterpreted(inputs, limits);
+                default:
+                    return link().executeAccelerated(inputs, limits);
+            }
+        }
+        
+        switch (mode) {
+            case REGISTER:
+                return link().execute(inputs);
+            case ACCELERATED:
+                return link().executeAccelerated(inputs);
+            case OPTIMIZED:
+                return optimize().execute(inputs);
+            case COMPILED:
+                return compile().execute(inputs);
+            case ADAPTIVE:
+                return executeAdaptive(inputs);
+            case INTERPRETED:
+            default:
+                return executeInterpreted(inputs, limits);
+        }
+    }
+    
+    /**
+     * Execute the program one instruction at a time on the register interpreter, counting how often
+     * each instruction runs. Profiled runs stop at limits exactly like REGISTER runs.
+     */
+    public ExecutionProfile profile(int[] inputs, ExecutionLimits limits) {
+        long[] executionCounts = new long[instructions.size()];
+        ExecutionResult result = link().executeProfiled(inputs, limits, executionCounts);
+        return ExecutionProfile.fromCounts(this, result, executionCounts);
+    }
+    
+    /**
+     * Execute the program on the register interpreter, writing a checkpoint every checkpointer
+     * interval. REGISTER runs step through loops; runs in any other mode accelerate them, since
+     * compiled and optimized code cannot be checkpointed.
+     */
+    public ExecutionResult executeCheckpointed(int[] inputs, ExecutionMode mode, ExecutionLimits limits,
+                                               Checkpointer checkpointer) {
+        return link().executeCheckpointed(inputs, mode != ExecutionMode.REGISTER, limits, checkpointer, null);
+    }
+    
+    /**
+     * Continue a run of this program from a checkpoint, optionally writing further checkpoints.
+     * Limits apply to the whole run, including the part before the checkpoint.
+     *
+     * @throws IllegalArgumentException if the checkpoint was taken on a different program
+     */
+    public ExecutionResult resume(ExecutionCheckpoint checkpoint, ExecutionMode mode, ExecutionLimits limits,
+                                  Checkpointer checkpointer) {
+        return link().executeCheckpointed(null, mode != ExecutionMode.REGISTER, limits, checkpointer, checkpoint);
+    }
+    
+    /**
+     * Execute the program one instruction at a time on the register interpreter, recording each step
+     * into a trace. Traced runs stop at limits exactly like REGISTER runs.
+     */
+    public ExecutionResult trace(int[] inputs, ExecutionLimits limits, ExecutionTrace trace) {
+        LinkedProgram linked = link();
+        trace.bind(this, linked);
+        return linked.executeTraced(inputs, limits, trace);
+    }
+    
+    /**
+     * Execute on the accelerated interpreter until the program is hot, then on compiled bytecode
+     */
+    private ExecutionResult executeAdaptive(int[] inputs) {
+        CompiledProgram compiled = compiledProgram;
+        if (compiled != null) {
+            return compiled.execute(inputs);
+        }
+        if (!compilationFailed && adaptiveRuns.incrementAndGet() >= COMPILE_THRESHOLD) {
+            try {
+                compiled = compile();
+            } catch (IllegalStateException e) {
+                // Too large for a single JVM method; stay on the interpreter
+            }
+        }
+        return compiled != null ? compiled.execute(inputs) : link().executeAccelerated(inputs);
+    }
+    
+    /**
+     * Execute the program instruction by instruction through an ExecutionContext
+     */
+    private ExecutionResult executeInterpreted(int[] inputs, ExecutionLimits limits) {
+        // Share the program's label table rather than rebuilding it for every run
+        ExecutionContext context = new ExecutionContext(labelTable);
         
         // Initialize input variables
         context.initializeInputVariables(inputs);
         
-        // Set up label positions
-        for (Map.Entry<String, Integer> entry : labelPositions.entrySet()) {
-            context.setLabelPosition(entry.getKey(), entry.getValue());
-        }
+        ExecutionLimits.Budget budget = limits.start();
+        long steps = 0;
         
         // Execute instructions
         while (context.getCurrentInstructionIndex() < instructions.size() && !context.shouldExit()) {
             Instruction instruction = instructions.get(context.getCurrentInstructionIndex());
+            
+            // Stop with a partial result once a limit is reached
+            if (steps >= budget.getNextCheck()) {
+                StopReason stopReason = budget.check(steps);
+                if (stopReason != null) {
+                    return new ExecutionResult(context, stopReason);
+                }
+            }
+            if (instruction.getCycles() > budget.getCycleBudget() - context.getTotalCycles()) {
+                return new ExecutionResult(context, StopReason.CYCLE_LIMIT);
+            }
+            steps++;
+            
             int currentIndex = context.getCurrentInstructionIndex();
             instruction.execute(context);
             
@@ -153,20 +433,113 @@ public class Program {
     }
     
     /**
-     * Expand the program to a specific degree
+     * Expand the program to a specific degree.
+     * Expansions are cached per degree behind soft references, so they are reused until the
+     * collector needs the memory. Degree d is built from degree d + 1 rather than from scratch.
      */
     public Program expandToDegree(int targetDegree) {
         if (targetDegree < 0 || targetDegree > maxDegree) {
             throw new IllegalArgumentException("Invalid target degree: " + targetDegree);
         }
         
+        synchronized (expansions) {
+            while (expansions.size() <= targetDegree) {
+                expansions.add(null);
+            }
+            SoftReference<Program> cached = expansions.get(targetDegree);
+            Program expandedProgram = cached != null ? cached.get() : null;
+            if (expandedProgram == null) {
+                Program source = targetDegree == maxDegree ? this : expandToDegree(targetDegree + 1);
+                ProgramExpandEvent event = new ProgramExpandEvent();
+                event.begin();
+                long start = System.nanoTime();
+                expandedProgram = expandOneLevel(source, targetDegree);
+                long duration = System.nanoTime() - start;
+                event.end();
+                if (event.shouldCommit()) {
+                    event.programName = sourceName;
+                    event.degree = targetDegree;
+                    event.instructionCount = expandedProgram.getInstructionCount();
+                    event.commit();
+                }
+                EngineMetrics.getShared().record(EngineMetrics.EXPAND, sourceName, targetDegree, duration, 0);
+                expansions.set(targetDegree, new SoftReference<>(expandedProgram));
+            }
+            return expandedProgram;
+        }
+    }
+    
+    /**
+     * Get a lazy view of the program expanded to a degree.
+     * Unlike expandToDegree, the expanded instructions are not kept: the view holds an index
+     * the size of this program and re-expands instructions as they are iterated or run.
+     */
+    public ExpansionView expansionView(int targetDegree) {
+        if (targetDegree < 0 || targetDegree > maxDegree) {
+            throw new IllegalArgumentException("Invalid target degree: " + targetDegree);
+        }
+        
+        synchronized (expansions) {
+            while (expansionViews.size() <= targetDegree) {
+                expansionViews.add(null);
+            }
+            ExpansionView view = expansionViews.get(targetDegree);
+            if (view == null) {
+                view = new ExpansionView(new ArrayList<>(instructions), labelPositions, targetDegree);
+                expansionViews.set(targetDegree, view);
+            }
+            return view;
+        }
+    }
+    
+    /**
+     * Get the size and static cost of the program's expansion at every degree, without expanding it
+     */
+    public ExpansionEstimate estimateExpansions() {
+        ExpansionEstimate estimate = expansionEstimate;
+        if (estimate == null) {
+            estimate = new ExpansionEstimate(instructions, maxDegree);
+            expansionEstimate = estimate;
+        }
+        return estimate;
+    }
+    
+    /**
+     * Install an expansion built elsewhere, such as one loaded from a binary program file,
+     * so the next expandToDegree call for that degree returns it instead of expanding again
+     */
+    public void preloadExpansion(int targetDegree, Program expandedProgram) {
+        if (targetDegree < 0 || targetDegree > maxDegree) {
+            throw new IllegalArgumentException("Invalid target degree: " + targetDegree);
+        }
+        
+        synchronized (expansions) {
+            while (expansions.size() <= targetDegree) {
+                expansions.add(null);
+            }
+            expansions.set(targetDegree, new SoftReference<>(expandedProgram));
+        }
+        expandedProgram.sourceName = sourceName;
+        expandedProgram.expansionDegree = targetDegree;
+    }
+    
+    /**
+     * Build the expansion at a target degree by expanding every instruction of the source above it
+     */
+    private Program expandOneLevel(Program source, int targetDegree) {
         Program expandedProgram = new Program(name + "_expanded_" + targetDegree);
+        expandedProgram.sourceName = sourceName;
+        expandedProgram.expansionDegree = targetDegree;
         
-        for (Instruction instruction : instructions) {
+        // Fresh names follow the source's own names, so the same source always expands the same way
+        com.semulator.engine.instruction.synthetic.FreshNameAllocator names =
+            new com.semulator.engine.instruction.synthetic.FreshNameAllocator(source.instructions);
+        
+        for (Instruction instruction : source.instructions) {
             if (instruction.getType() == com.semulator.engine.instruction.InstructionType.SYNTHETIC && 
                 instruction.getDegree() > targetDegree) {
                 // Expand synthetic instruction
-                List<Instruction> expanded = ((com.semulator.engine.instruction.synthetic.SyntheticInstruction) instruction).expand();
+                List<Instruction> expanded = ((com.semulator.engine.instruction.synthetic.SyntheticInstruction) instruction).expand(names);
                 for (Instruction expandedInstruction : expanded) {
                     expandedInstruction.setParentInstruction(instruction);
                     expandedProgram.addInstruction(expandedInstruction);
@@ -177,6 +550,8 @@ public class Program {
             }
         }
         
+        // Resolve jump targets once, when the expansion is built
+        expandedProgram.link();
         return expandedProgram;
     }
     
@@ -0,0 +1,76 @@
+import com.semulator.engine.SemulatorEngine;
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.execution.ExecutionResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class TestBatchExecution {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing batch execution against serial runs...");
+            
+            Path programFile = TestSupport.writeProgram(TestSupport.addProgramXml("Add"));
+            ForkJoinPool pool = new ForkJoinPool(4);
+            SemulatorEngine batch = new SemulatorEngine(pool);
+            SemulatorEngine serial = new SemulatorEngine();
+            batch.loadProgram(programFile.toString());
+            serial.loadProgram(programFile.toString());
+            
+            List<int[]> inputs = new ArrayList<>();
+            for (int i = 0; i < 120; i++) {
+                inputs.add(new int[] {i % 11, i / 11});
+            }
+            
+            // Each batch result must equal a serial run of the same inputs, in every mode and degree
+            int mismatches = 0;
+            for (ExecutionMode mode : ExecutionMode.values()) {
+                batch.setExecutionMode(mode);
+                serial.setExecutionMode(mode);
+                for (int degree = 0; degree <= 1; degree++) {
+                    List<ExecutionResult> fromList = batch.executeBatch(inputs, degree);
+                    List<ExecutionResult> generated = batch.executeBatch(inputs.size(), inputs::get, degree);
+                    for (int i = 0; i < inputs.size(); i++) {
+                        ExecutionResult expected = serial.executeProgram(inputs.get(i), degree);
+                        if (!TestSupport.sameResult(expected, fromList.get(i))
+                                || !TestSupport.sameResult(expected, generated.get(i))) {
+                            mismatches++;
+                            System.out.println(mode + " batch differs at degree " + degree + " for "
+                                    + Arrays.toString(inputs.get(i)));
+                        }
+                    }
+                }
+            }
+            System.out.println("Mismatches: " + mismatches);
+            
+            // History keeps input order: each batch records the runs a serial engine records for it
+            int n = inputs.size();
+            List<SemulatorEngine.ExecutionHistory> batchHistory = batch.getExecutionHistory();
+            List<SemulatorEngine.ExecutionHistory> serialHistory = serial.getExecutionHistory();
+            int historyMismatches = 0;
+            for (int i = 0; i < batchHistory.size(); i++) {
+                SemulatorEngine.ExecutionHistory record = batchHistory.get(i);
+                SemulatorEngine.ExecutionHistory expected = serialHistory.get(i / (2 * n) * n + i % n);
+                if (record.getRunNumber() != i + 1 || !Arrays.equals(record.getInputs(), expected.getInputs())
+                        || record.getOutput() != expected.getOutput() || record.getCycles() != expected.getCycles()) {
+                    historyMismatches++;
+                }
+            }
+            System.out.println("History: " + batchHistory.size() + " runs, " + historyMismatches + " mismatches");
+            
+            boolean passed = mismatches == 0 && historyMismatches == 0
+                    && batchHistory.size() == 2 * serialHistory.size();
+            System.out.println(passed ? "PASSED" : "FAILED");
+            pool.shutdown();
+            Files.delete(programFile);
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
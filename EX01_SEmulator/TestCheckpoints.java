@@ -0,0 +1,90 @@
+import com.semulator.engine.SemulatorEngine;
+import com.semulator.engine.execution.ExecutionLimits;
+import com.semulator.engine.execution.ExecutionResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+public class TestCheckpoints {
+    private static final int THREADS = 8;
+    
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing checkpointed runs stopped and resumed from several threads...");
+            
+            Path programFile = TestSupport.writeProgram(TestSupport.addProgramXml("Add"));
+            Path directory = Files.createTempDirectory("semulator-checkpoints");
+            SemulatorEngine engine = new SemulatorEngine();
+            engine.loadProgram(programFile.toString());
+            engine.setCheckpointing(directory, 50);
+            SemulatorEngine reference = new SemulatorEngine();
+            reference.loadProgram(programFile.toString());
+            
+            // Every thread starts a long run that stops part way, then resumes it from its own file
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            List<Future<String>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                workers.add(executor.submit(() -> {
+                    int[] inputs = {200 + thread, thread};
+                    int degree = thread % 2;
+                    ExecutionResult stopped = engine.executeProgram(inputs, degree,
+                            ExecutionLimits.NONE.withMaxSteps(300));
+                    if (stopped.isComplete() || stopped.getCheckpointFile() == null) {
+                        throw new IllegalStateException("Run on thread " + thread + " was not stopped with a checkpoint");
+                    }
+                    ExecutionResult resumed = engine.resumeProgram(stopped.getCheckpointFile(), ExecutionLimits.NONE);
+                    ExecutionResult expected = reference.executeProgram(inputs, degree);
+                    if (!TestSupport.sameResult(expected, resumed)) {
+                        throw new IllegalStateException("Resumed run on thread " + thread + " finished differently");
+                    }
+                    return stopped.getCheckpointFile();
+                }));
+            }
+            Set<String> files = new HashSet<>();
+            int failures = 0;
+            for (Future<String> worker : workers) {
+                try {
+                    files.add(worker.get());
+                } catch (Exception e) {
+                    failures++;
+                    System.out.println("Error: " + e.getMessage());
+                }
+            }
+            executor.shutdown();
+            System.out.println("Failed threads: " + failures + ", checkpoint files: " + files.size());
+            
+            // A run that ends before its first checkpoint reports no file and leaves none behind
+            ExecutionResult quick = engine.executeProgram(new int[] {1, 1}, 0);
+            System.out.println("Checkpoint file of a short run: " + quick.getCheckpointFile());
+            
+            List<Path> left;
+            try (Stream<Path> list = Files.list(directory)) {
+                left = list.toList();
+            }
+            System.out.println("Files in the checkpoint directory: " + left.size());
+            
+            boolean passed = failures == 0 && files.size() == THREADS && quick.getCheckpointFile() == null
+                    && left.size() == THREADS;
+            System.out.println(passed ? "PASSED" : "FAILED");
+            
+            for (Path file : left) {
+                Files.delete(file);
+            }
+            Files.delete(directory);
+            Files.delete(programFile);
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
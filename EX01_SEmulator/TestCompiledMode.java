@@ -0,0 +1,84 @@
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.instruction.basic.NeutralInstruction;
+import com.semulator.engine.program.Program;
+
+public class TestCompiledMode {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing compiled execution against the interpreter...");
+            
+            // Output, cycles and every final variable must match at each expansion degree
+            Program program = TestSupport.addProgram("Add");
+            int mismatches = 0;
+            int runs = 0;
+            for (int degree = 0; degree <= program.getMaxDegree(); degree++) {
+                Program expanded = program.expandToDegree(degree);
+                for (int x1 = 0; x1 <= 6; x1++) {
+                    for (int x2 = 0; x2 <= 6; x2++) {
+                        int[] inputs = {x1, x2};
+                        ExecutionResult expected = expanded.execute(inputs, ExecutionMode.INTERPRETED);
+                        ExecutionResult actual = expanded.execute(inputs, ExecutionMode.COMPILED);
+                        runs++;
+                        if (!TestSupport.sameResult(expected, actual)) {
+                            mismatches++;
+                            System.out.println("Mismatch at degree " + degree + " for x1=" + x1 + ", x2=" + x2);
+                        }
+                    }
+                }
+            }
+            System.out.println(runs + " runs, " + mismatches + " mismatches");
+            
+            // A jump longer than a JVM branch offset cannot be compiled
+            Program longJump = new Program("LongJump");
+            longJump.addInstruction(new JumpNotZeroInstruction("x1", null, "END"));
+            addIncreases(longJump, 2500);
+            longJump.addInstruction(new NeutralInstruction("y", "END"));
+            String branchFailure = compileFailure(longJump);
+            System.out.println("Long jump: " + branchFailure);
+            
+            // So cannot a program whose code is longer than a JVM method allows
+            Program longCode = new Program("LongCode");
+            addIncreases(longCode, 5000);
+            String sizeFailure = compileFailure(longCode);
+            System.out.println("Long code: " + sizeFailure);
+            
+            // Adaptive runs of a program that cannot be compiled stay on the interpreter
+            int adaptiveMismatches = 0;
+            for (int run = 0; run < Program.COMPILE_THRESHOLD + 5; run++) {
+                int[] inputs = {run % 2};
+                if (!TestSupport.sameResult(longJump.execute(inputs, ExecutionMode.INTERPRETED),
+                        longJump.execute(inputs, ExecutionMode.ADAPTIVE))) {
+                    adaptiveMismatches++;
+                }
+            }
+            System.out.println("Adaptive mismatches after failed compilation: " + adaptiveMismatches);
+            
+            boolean passed = mismatches == 0 && adaptiveMismatches == 0
+                    && branchFailure != null && branchFailure.startsWith("Program too large to compile: branch offset")
+                    && sizeFailure != null && sizeFailure.endsWith("bytes of code");
+            System.out.println(passed ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private static void addIncreases(Program program, int count) {
+        for (int i = 0; i < count; i++) {
+            program.addInstruction(new IncreaseInstruction("y", null));
+        }
+    }
+    
+    private static String compileFailure(Program program) {
+        try {
+            program.compile();
+            return null;
+        } catch (IllegalStateException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import com.semulator.engine.ProgramCache;
+import com.semulator.engine.SemulatorEngine;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.monitoring.EngineMetrics;
+import com.semulator.engine.monitoring.LatencyHistogram;
+import com.semulator.engine.monitoring.OperationMetrics;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToLongFunction;
+
+public class TestEngineMetrics {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing load, expand and execute metrics...");
+            
+            Path programFile = TestSupport.writeProgram(TestSupport.addProgramXml("Metrics"));
+            EngineMetrics metrics = EngineMetrics.getShared();
+            SemulatorEngine engine = new SemulatorEngine(ForkJoinPool.commonPool(), new ProgramCache(4));
+            int failures = 0;
+            
+            // Nothing is recorded while metrics are off
+            engine.loadProgram(programFile.toString());
+            engine.executeProgram(new int[] {1, 2}, 0);
+            failures += check("nothing recorded while off",
+                    total(metrics, EngineMetrics.EXECUTE, OperationMetrics::getCount) == 0);
+            
+            // Each load, new expansion and run is counted under the program as loaded
+            metrics.setEnabled(true);
+            engine.getProgramCache().clear();
+            engine.loadProgram(programFile.toString());
+            long cycles = 0;
+            for (int run = 0; run < 10; run++) {
+                ExecutionResult result = engine.executeProgram(new int[] {run, 2}, run % 2);
+                cycles += result.getTotalCycles();
+            }
+            metrics.setEnabled(false);
+            failures += check("one load", total(metrics, EngineMetrics.LOAD, OperationMetrics::getCount) == 1);
+            failures += check("one expansion", total(metrics, EngineMetrics.EXPAND, OperationMetrics::getCount) == 1);
+            failures += check("every run and its cycles",
+                    total(metrics, EngineMetrics.EXECUTE, OperationMetrics::getCount) == 10
+                    && total(metrics, EngineMetrics.EXECUTE, OperationMetrics::getTotalCycles) == cycles);
+            
+            // Execute metrics are exported over JMX
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            long exported = 0;
+            for (ObjectName name : server.queryNames(
+                    new ObjectName("com.semulator:type=OperationMetrics,operation=execute,*"), null)) {
+                if (name.getKeyProperty("program").equals(ObjectName.quote("Metrics"))) {
+                    exported += (Long) server.getAttribute(name, "Count");
+                }
+            }
+            failures += check("runs exported over JMX", exported == 10);
+            
+            // A Flight Recorder recording sees runs even with metrics off
+            Path recordingFile = Files.createTempFile("semulator-metrics", ".jfr");
+            try (Recording recording = new Recording()) {
+                recording.enable("com.semulator.ProgramExecute").withThreshold(Duration.ZERO);
+                recording.start();
+                for (int run = 0; run < 5; run++) {
+                    engine.executeProgram(new int[] {run, 1}, 0);
+                }
+                recording.stop();
+                recording.dump(recordingFile);
+            }
+            int events = 0;
+            for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+                if ("Metrics".equals(event.getString("programName"))) {
+                    events++;
+                }
+            }
+            failures += check("runs recorded by Flight Recorder", events == 5);
+            
+            // Latency percentiles are the upper bound of their power-of-two bucket
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (int i = 0; i < 99; i++) {
+                histogram.record(1000);
+            }
+            histogram.record(1_000_000);
+            long median = histogram.getPercentileNanos(0.5);
+            long p99 = histogram.getPercentileNanos(0.99);
+            long max = histogram.getPercentileNanos(1.0);
+            System.out.println("Median " + median + ", p99 " + p99 + ", max " + max + " ns");
+            failures += check("histogram percentiles", median >= 1000 && median < 2000 && p99 == median
+                    && max >= 1_000_000 && max < 2_000_000 && histogram.getMaxNanos() == 1_000_000
+                    && histogram.getCount() == 100);
+            
+            Files.delete(programFile);
+            Files.delete(recordingFile);
+            System.out.println(failures + " failures");
+            System.out.println(failures == 0 ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private static int check(String description, boolean passed) {
+        System.out.println(description + ": " + (passed ? "ok" : "failed"));
+        return passed ? 0 : 1;
+    }
+    
+    /**
+     * Sum a figure over the metrics of one operation on the test program, across degrees
+     */
+    private static long total(EngineMetrics metrics, String operation, ToLongFunction<OperationMetrics> figure) {
+        long total = 0;
+        for (OperationMetrics operationMetrics : metrics.getAll()) {
+            if (operationMetrics.getOperation().equals(operation)
+                    && operationMetrics.getProgramName().equals("Metrics")) {
+                total += figure.applyAsLong(operationMetrics);
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,94 @@
+import com.semulator.engine.execution.CancellationToken;
+import com.semulator.engine.execution.ExecutionLimits;
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.execution.StopReason;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.program.Program;
+
+public class TestExecutionLimits {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing execution limits and cancellation in every mode...");
+            
+            Program program = TestSupport.addProgram("Add");
+            int[] inputs = {5, 3};
+            ExecutionResult complete = program.execute(inputs, ExecutionMode.INTERPRETED);
+            
+            // A limited run stops where the interpreter stops, with the same partial state
+            ExecutionLimits[] limits = {
+                new ExecutionLimits(0, 10, 0, null),
+                new ExecutionLimits(17, 0, 0, null),
+                new ExecutionLimits(complete.getTotalCycles(), 0, 0, null),
+                new ExecutionLimits(1000, 1000, 60_000, new CancellationToken())
+            };
+            StopReason[] expectedReasons = {
+                StopReason.STEP_LIMIT, StopReason.CYCLE_LIMIT, StopReason.COMPLETED, StopReason.COMPLETED
+            };
+            int failures = 0;
+            for (int i = 0; i < limits.length; i++) {
+                ExecutionResult expected = program.execute(inputs, ExecutionMode.INTERPRETED, limits[i]);
+                if (expected.getStopReason() != expectedReasons[i]
+                        || (expected.isComplete() && !TestSupport.sameResult(complete, expected))) {
+                    failures++;
+                    System.out.println("Interpreter stopped with " + expected.getStopReason() + " under limit " + i);
+                }
+                for (ExecutionMode mode : ExecutionMode.values()) {
+                    ExecutionResult actual = program.execute(inputs, mode, limits[i]);
+                    if (!TestSupport.sameResult(expected, actual) || expected.getStopIndex() != actual.getStopIndex()) {
+                        failures++;
+                        System.out.println(mode + " under limit " + i + " stopped with " + actual.getStopReason()
+                                + " at " + actual.getStopIndex() + " after " + actual.getTotalCycles()
+                                + " cycles, output " + actual.getOutput() + "; interpreter stopped with "
+                                + expected.getStopReason() + " at " + expected.getStopIndex() + " after "
+                                + expected.getTotalCycles() + " cycles, output " + expected.getOutput());
+                    }
+                }
+            }
+            
+            // A program that never ends is stopped by its timeout or by cancellation from another thread
+            Program endless = new Program("Endless");
+            endless.addInstruction(new IncreaseInstruction("y", "L1"));
+            endless.addInstruction(new JumpNotZeroInstruction("y", null, "L1"));
+            for (ExecutionMode mode : ExecutionMode.values()) {
+                ExecutionResult timedOut = endless.execute(new int[0], mode, new ExecutionLimits(0, 0, 100, null));
+                
+                CancellationToken token = new CancellationToken();
+                Thread canceller = new Thread(() -> {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    token.cancel();
+                });
+                canceller.start();
+                ExecutionResult cancelled = endless.execute(new int[0], mode, new ExecutionLimits(0, 0, 0, token));
+                canceller.join();
+                
+                System.out.println(mode + ": " + timedOut.getStopReason() + " with y=" + timedOut.getOutput() + ", "
+                        + cancelled.getStopReason() + " with y=" + cancelled.getOutput());
+                if (timedOut.getStopReason() != StopReason.TIMEOUT || cancelled.getStopReason() != StopReason.CANCELLED
+                        || !partialEndless(timedOut) || !partialEndless(cancelled)) {
+                    failures++;
+                }
+            }
+            
+            System.out.println(failures + " failures");
+            System.out.println(failures == 0 ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Check that a stopped run of the endless program kept its progress: three cycles per increase
+     */
+    private static boolean partialEndless(ExecutionResult result) {
+        int y = result.getOutput();
+        return y > 0 && (result.getTotalCycles() == 3 * y || result.getTotalCycles() == 3 * y - 2);
+    }
+}
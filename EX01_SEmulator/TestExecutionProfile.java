@@ -0,0 +1,72 @@
+import com.semulator.engine.execution.ExecutionLimits;
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.execution.StopReason;
+import com.semulator.engine.program.ExecutionProfile;
+import com.semulator.engine.program.Program;
+
+public class TestExecutionProfile {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing execution profiles against their runs...");
+            
+            Program program = TestSupport.addProgram("Add");
+            int failures = 0;
+            for (int degree = 0; degree <= program.getMaxDegree(); degree++) {
+                Program expanded = program.expandToDegree(degree);
+                for (int x1 = 0; x1 <= 4; x1++) {
+                    for (int x2 = 0; x2 <= 4; x2++) {
+                        int[] inputs = {x1, x2};
+                        ExecutionProfile profile = expanded.profile(inputs, ExecutionLimits.NONE);
+                        ExecutionResult expected = expanded.execute(inputs, ExecutionMode.INTERPRETED);
+                        long steps = steps(profile);
+                        
+                        // The counts add up to the run's steps: one step fewer stops the run
+                        ExecutionResult exact = expanded.execute(inputs, ExecutionMode.INTERPRETED,
+                                new ExecutionLimits(0, steps, 0, null));
+                        ExecutionResult shorter = expanded.execute(inputs, ExecutionMode.INTERPRETED,
+                                new ExecutionLimits(0, steps - 1, 0, null));
+                        
+                        // The cycles add up to the run's cycles, also once rolled up to the program as written
+                        ExecutionProfile rolled = profile.rollUp(program);
+                        if (!TestSupport.sameResult(expected, profile.getResult())
+                                || profile.getTotalCycles() != expected.getTotalCycles()
+                                || exact.getStopReason() != StopReason.COMPLETED
+                                || shorter.getStopReason() != StopReason.STEP_LIMIT
+                                || rolled.getTotalCycles() != expected.getTotalCycles() || steps(rolled) != steps) {
+                            failures++;
+                            System.out.println("Profile at degree " + degree + " for x1=" + x1 + ", x2=" + x2
+                                    + " counts " + steps + " steps and " + profile.getTotalCycles()
+                                    + " cycles; the run took " + expected.getTotalCycles() + " cycles");
+                        }
+                    }
+                }
+            }
+            
+            // A run stopped by a limit is profiled up to where it stopped
+            ExecutionProfile limited = program.profile(new int[] {5, 3}, new ExecutionLimits(0, 10, 0, null));
+            System.out.println("Run limited to 10 steps: " + steps(limited) + " steps, "
+                    + limited.getTotalCycles() + " of " + limited.getResult().getTotalCycles() + " cycles, "
+                    + limited.getResult().getStopReason());
+            if (steps(limited) != 10 || limited.getTotalCycles() != limited.getResult().getTotalCycles()
+                    || limited.getResult().getStopReason() != StopReason.STEP_LIMIT) {
+                failures++;
+            }
+            
+            System.out.println(failures + " failures");
+            System.out.println(failures == 0 ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private static long steps(ExecutionProfile profile) {
+        long steps = 0;
+        for (int i = 0; i < profile.getInstructionCount(); i++) {
+            steps += profile.getExecutionCount(i);
+        }
+        return steps;
+    }
+}
@@ -0,0 +1,109 @@
+import com.semulator.engine.SemulatorEngine;
+import com.semulator.engine.instruction.Instruction;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.instruction.synthetic.GotoLabelInstruction;
+import com.semulator.engine.instruction.synthetic.ZeroVariableInstruction;
+import com.semulator.engine.program.ExpansionEstimate;
+import com.semulator.engine.program.Program;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+public class TestExpansionEstimate {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing expansion estimates against real expansions...");
+            
+            // Labelled and unlabelled synthetic instructions, some of them repeated
+            Program synthetic = new Program("Synthetic");
+            synthetic.addInstruction(new ZeroVariableInstruction("y", "A1"));
+            synthetic.addInstruction(new ZeroVariableInstruction("z1", null));
+            synthetic.addInstruction(new IncreaseInstruction("y", "A2"));
+            synthetic.addInstruction(new GotoLabelInstruction("", null, "A3"));
+            synthetic.addInstruction(new GotoLabelInstruction("", "A4", "A1"));
+            synthetic.addInstruction(new JumpNotZeroInstruction("x1", "A3", "A2"));
+            
+            int failures = 0;
+            for (Program program : new Program[] {TestSupport.addProgram("Add"), synthetic}) {
+                ExpansionEstimate estimate = program.estimateExpansions();
+                for (int degree = 0; degree <= program.getMaxDegree(); degree++) {
+                    Program expanded = program.expandToDegree(degree);
+                    long cycles = 0;
+                    for (Instruction instruction : expanded.getInstructions()) {
+                        cycles += instruction.getCycles();
+                    }
+                    long freshVariables = fresh(variables(expanded), variables(program));
+                    long freshLabels = fresh(labels(expanded), labels(program));
+                    System.out.println(program.getName() + " at degree " + degree + ": "
+                            + expanded.getInstructionCount() + " instructions, " + cycles + " cycles, "
+                            + freshVariables + " fresh variables, " + freshLabels + " fresh labels");
+                    if (estimate.getInstructionCount(degree) != expanded.getInstructionCount()
+                            || estimate.getStaticCycles(degree) != cycles
+                            || estimate.getFreshVariables(degree) != freshVariables
+                            || estimate.getFreshLabels(degree) != freshLabels) {
+                        failures++;
+                        System.out.println("Estimated " + estimate.getInstructionCount(degree) + " instructions, "
+                                + estimate.getStaticCycles(degree) + " cycles, " + estimate.getFreshVariables(degree)
+                                + " fresh variables, " + estimate.getFreshLabels(degree) + " fresh labels");
+                    }
+                }
+            }
+            
+            // The engine refuses an expansion estimated to be larger than its maximum
+            Path programFile = TestSupport.writeProgram(TestSupport.addProgramXml("Add"));
+            SemulatorEngine engine = new SemulatorEngine();
+            engine.loadProgram(programFile.toString());
+            long size = engine.getCurrentProgram().estimateExpansions().getInstructionCount(1);
+            engine.setMaxExpansionSize(size);
+            engine.executeProgram(new int[] {1, 1}, 1);
+            engine.setMaxExpansionSize(size - 1);
+            String refusal = null;
+            try {
+                engine.executeProgram(new int[] {1, 1}, 1);
+            } catch (IllegalStateException e) {
+                refusal = e.getMessage();
+            }
+            System.out.println("Below the estimate: " + refusal);
+            Files.delete(programFile);
+            
+            System.out.println(failures + " failures");
+            System.out.println(failures == 0 && refusal != null ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private static Set<String> variables(Program program) {
+        Set<String> variables = new HashSet<>();
+        for (Instruction instruction : program.getInstructions()) {
+            if (!instruction.getVariable().isEmpty()) {
+                variables.add(instruction.getVariable());
+            }
+        }
+        return variables;
+    }
+    
+    private static Set<String> labels(Program program) {
+        Set<String> labels = new HashSet<>();
+        for (Instruction instruction : program.getInstructions()) {
+            if (instruction.getLabel() != null && !instruction.getLabel().isEmpty()) {
+                labels.add(instruction.getLabel());
+            }
+        }
+        return labels;
+    }
+    
+    /**
+     * Count the names of an expansion that the original program does not use
+     */
+    private static long fresh(Set<String> expanded, Set<String> original) {
+        Set<String> added = new HashSet<>(expanded);
+        added.removeAll(original);
+        return added.size();
+    }
+}
@@ -0,0 +1,102 @@
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.instruction.Instruction;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.instruction.synthetic.GotoLabelInstruction;
+import com.semulator.engine.instruction.synthetic.ZeroVariableInstruction;
+import com.semulator.engine.program.Program;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class TestFreshNames {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing fresh names in expansions...");
+            int failures = 0;
+            
+            // The same code expands to the same instructions, however often and from whichever copy
+            Program program = namedProgram();
+            List<String> first = listing(program.expandToDegree(0).getInstructions());
+            List<String> again = listing(program.expandToDegree(0).getInstructions());
+            List<String> copy = listing(namedProgram().expandToDegree(0).getInstructions());
+            failures += check("expansions are identical", first.equals(again) && first.equals(copy));
+            
+            // Fresh names continue after the highest z and L numbers the program uses, in order
+            Set<String> original = names(program.getInstructions());
+            Set<String> fresh = names(program.expandToDegree(0).getInstructions());
+            fresh.removeAll(original);
+            System.out.println("Fresh names: " + fresh);
+            failures += check("fresh names are sequential", fresh.equals(Set.of("z4", "z5", "L13")));
+            
+            // The lazy view names its instructions as the full expansion does, and runs the same way
+            for (Program source : new Program[] {program, TestSupport.addProgram("Add")}) {
+                for (int degree = 0; degree <= source.getMaxDegree(); degree++) {
+                    List<String> expanded = listing(source.expandToDegree(degree).getInstructions());
+                    failures += check(source.getName() + " view at degree " + degree + " matches the expansion",
+                            expanded.equals(listing(source.expansionView(degree))));
+                }
+            }
+            Program add = TestSupport.addProgram("Add");
+            int runMismatches = 0;
+            for (int x1 = 0; x1 <= 4; x1++) {
+                for (int x2 = 0; x2 <= 4; x2++) {
+                    int[] inputs = {x1, x2};
+                    if (!TestSupport.sameResult(add.expandToDegree(0).execute(inputs, ExecutionMode.INTERPRETED),
+                            add.expansionView(0).execute(inputs))) {
+                        runMismatches++;
+                    }
+                }
+            }
+            failures += check("view runs match the expansion", runMismatches == 0);
+            
+            System.out.println(failures + " failures");
+            System.out.println(failures == 0 ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private static int check(String description, boolean passed) {
+        System.out.println(description + ": " + (passed ? "ok" : "failed"));
+        return passed ? 0 : 1;
+    }
+    
+    /**
+     * A program that already uses z3 and L7, and jumps to L12 without defining it
+     */
+    private static Program namedProgram() {
+        Program program = new Program("Named");
+        program.addInstruction(new ZeroVariableInstruction("z3", "L7"));
+        program.addInstruction(new IncreaseInstruction("y", "L2"));
+        program.addInstruction(new GotoLabelInstruction("", null, "L2"));
+        program.addInstruction(new ZeroVariableInstruction("y", null));
+        program.addInstruction(new GotoLabelInstruction("", null, "L7"));
+        program.addInstruction(new JumpNotZeroInstruction("x1", null, "L12"));
+        return program;
+    }
+    
+    private static List<String> listing(Iterable<Instruction> instructions) {
+        List<String> listing = new ArrayList<>();
+        for (Instruction instruction : instructions) {
+            listing.add(instruction.getDisplayString());
+        }
+        return listing;
+    }
+    
+    private static Set<String> names(Iterable<Instruction> instructions) {
+        Set<String> names = new HashSet<>();
+        for (Instruction instruction : instructions) {
+            names.add(instruction.getVariable());
+            if (instruction.getLabel() != null) {
+                names.add(instruction.getLabel());
+            }
+        }
+        names.remove("");
+        return names;
+    }
+}
@@ -0,0 +1,101 @@
+import com.semulator.engine.HistoryQuery;
+import com.semulator.engine.SemulatorEngine;
+import com.semulator.engine.SemulatorEngine.ExecutionHistory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class TestHistoryLog {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing the history file across reopening...");
+            
+            Path directory = Files.createTempDirectory("semulator-history");
+            Path programFile = directory.resolve("copy.xml");
+            Files.writeString(programFile, TestSupport.copyProgramXml("Copy"));
+            String historyFile = directory.resolve("history.log").toString();
+            
+            // Record more runs than the in-memory tail holds, so most are read back from the file
+            SemulatorEngine engine = new SemulatorEngine();
+            System.out.println(engine.loadProgram(programFile.toString()).getMessage());
+            engine.openHistoryFile(historyFile, 4);
+            for (int x1 = 0; x1 < 20; x1++) {
+                engine.executeProgram(new int[] {x1, x1 % 3}, x1 % 2);
+            }
+            List<String> written = describe(engine.getExecutionHistory());
+            engine.closeHistoryFile();
+            
+            SemulatorEngine reopened = new SemulatorEngine();
+            reopened.loadProgram(programFile.toString());
+            reopened.openHistoryFile(historyFile, 4);
+            List<String> read = describe(reopened.getExecutionHistory());
+            System.out.println("Runs written: " + written.size() + ", runs read back: " + read.size());
+            
+            // Numbering continues after the runs already in the file
+            reopened.executeProgram(new int[] {7}, 0);
+            ExecutionHistory last = reopened.getExecutionHistory().get(reopened.getExecutionHistorySize() - 1);
+            System.out.println("Run appended after reopening: " + describe(last));
+            
+            // Clearing starts the file over; views taken before fail rather than show the new runs
+            List<ExecutionHistory> before = reopened.getExecutionHistory();
+            List<ExecutionHistory> queried = reopened.queryHistory(HistoryQuery.ALL.withDegree(1));
+            reopened.clearHistory();
+            reopened.executeProgram(new int[] {3}, 0);
+            String viewError = null;
+            String queryError = null;
+            try {
+                before.get(0);
+            } catch (IllegalStateException e) {
+                viewError = e.getMessage();
+            }
+            try {
+                queried.get(0);
+            } catch (IllegalStateException e) {
+                queryError = e.getMessage();
+            }
+            System.out.println("Old view after clearing: " + viewError);
+            System.out.println("Old query result after clearing: " + queryError);
+            reopened.closeHistoryFile();
+            
+            SemulatorEngine afterClear = new SemulatorEngine();
+            afterClear.openHistoryFile(historyFile, 4);
+            List<String> kept = describe(afterClear.getExecutionHistory());
+            System.out.println("Runs in the file after clearing: " + kept);
+            afterClear.closeHistoryFile();
+            
+            boolean passed = written.size() == 20 && written.equals(read)
+                    && last.getRunNumber() == 21 && last.getOutput() == 7
+                    && viewError != null && queryError != null
+                    && kept.size() == 1 && kept.get(0).startsWith("#1 Copy degree 0 inputs [3] y=3");
+            System.out.println(passed ? "PASSED" : "FAILED");
+            
+            // Mapped files may stay locked until collected on some systems, so cleanup is best effort
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            directory.toFile().delete();
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private static List<String> describe(List<ExecutionHistory> history) {
+        List<String> records = new ArrayList<>();
+        for (ExecutionHistory record : history) {
+            records.add(describe(record));
+        }
+        return records;
+    }
+    
+    private static String describe(ExecutionHistory record) {
+        return "#" + record.getRunNumber() + " " + record.getProgramName() + " degree " + record.getExpansionDegree()
+                + " inputs " + Arrays.toString(record.getInputs()) + " y=" + record.getOutput()
+                + " cycles=" + record.getCycles();
+    }
+}
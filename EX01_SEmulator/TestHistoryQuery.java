@@ -0,0 +1,132 @@
+import com.semulator.engine.CycleStatistics;
+import com.semulator.engine.HistoryColumn;
+import com.semulator.engine.HistoryQuery;
+import com.semulator.engine.SemulatorEngine;
+import com.semulator.engine.SemulatorEngine.ExecutionHistory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class TestHistoryQuery {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing history queries in memory and across reopening the history file...");
+            
+            Path directory = Files.createTempDirectory("semulator-query");
+            Path firstProgram = directory.resolve("first.xml");
+            Path secondProgram = directory.resolve("second.xml");
+            Files.writeString(firstProgram, TestSupport.copyProgramXml("First"));
+            Files.writeString(secondProgram, TestSupport.copyProgramXml("Second"));
+            String historyFile = directory.resolve("history.log").toString();
+            
+            // The same runs go to an in-memory store and to a history file
+            SemulatorEngine inMemory = new SemulatorEngine();
+            SemulatorEngine inFile = new SemulatorEngine();
+            inFile.openHistoryFile(historyFile, 8);
+            for (SemulatorEngine engine : Arrays.asList(inMemory, inFile)) {
+                for (Path programFile : Arrays.asList(firstProgram, secondProgram)) {
+                    engine.loadProgram(programFile.toString());
+                    for (int x1 = 0; x1 < 30; x1++) {
+                        engine.executeProgram(new int[] {x1, 30 - x1}, x1 % 2);
+                    }
+                }
+            }
+            inFile.closeHistoryFile();
+            SemulatorEngine reopened = new SemulatorEngine();
+            reopened.openHistoryFile(historyFile, 8);
+            
+            HistoryQuery[] queries = {
+                HistoryQuery.ALL,
+                HistoryQuery.ALL.withDegree(1),
+                HistoryQuery.ALL.withProgram("Second"),
+                HistoryQuery.ALL.withProgram("Second").withDegree(0).orderBy(HistoryColumn.CYCLES, true),
+                HistoryQuery.ALL.withInputRange(1, 5, 12).withInputRange(2, 20, 30),
+                HistoryQuery.ALL.withOutputRange(10, 20).orderBy(HistoryColumn.OUTPUT, false),
+                HistoryQuery.ALL.withCyclesRange(0, 40),
+                HistoryQuery.ALL.withProgram("Missing")
+            };
+            List<ExecutionHistory> all = inMemory.getExecutionHistory();
+            int failures = 0;
+            for (int q = 0; q < queries.length; q++) {
+                List<String> memoryRows = describe(inMemory.queryHistory(queries[q]));
+                List<String> fileRows = describe(reopened.queryHistory(queries[q]));
+                String memoryStatistics = describe(inMemory.getCycleStatistics(queries[q]));
+                String fileStatistics = describe(reopened.getCycleStatistics(queries[q]));
+                System.out.println("Query " + (q + 1) + ": " + memoryRows.size() + " runs, statistics " + memoryStatistics);
+                if (!memoryRows.equals(fileRows) || !memoryStatistics.equals(fileStatistics)) {
+                    failures++;
+                    System.out.println("  The reopened history file answers differently");
+                }
+            }
+            
+            // Check a filtered query against filtering the whole history by hand
+            List<String> expected = new ArrayList<>();
+            for (ExecutionHistory record : all) {
+                int[] inputs = record.getInputs();
+                if (inputs[0] >= 5 && inputs[0] <= 12 && inputs[1] >= 20) {
+                    expected.add(describe(record));
+                }
+            }
+            if (!expected.equals(describe(inMemory.queryHistory(queries[4])))) {
+                failures++;
+                System.out.println("Input range query does not match filtering by hand");
+            }
+            
+            // Check an ordered query: descending cycles, ties in the order the runs were recorded
+            List<ExecutionHistory> ordered = inMemory.queryHistory(queries[3]);
+            for (int i = 1; i < ordered.size(); i++) {
+                ExecutionHistory previous = ordered.get(i - 1);
+                ExecutionHistory current = ordered.get(i);
+                if (previous.getCycles() < current.getCycles() || previous.getCycles() == current.getCycles()
+                        && previous.getRunNumber() > current.getRunNumber()) {
+                    failures++;
+                    System.out.println("Runs " + previous.getRunNumber() + " and " + current.getRunNumber() + " are out of order");
+                }
+            }
+            reopened.closeHistoryFile();
+            
+            System.out.println(failures + " failures");
+            System.out.println(failures == 0 && all.size() == 60 ? "PASSED" : "FAILED");
+            
+            // Mapped files may stay locked until collected on some systems, so cleanup is best effort
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            directory.toFile().delete();
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private static List<String> describe(List<ExecutionHistory> history) {
+        List<String> records = new ArrayList<>();
+        for (ExecutionHistory record : history) {
+            records.add(describe(record));
+        }
+        return records;
+    }
+    
+    private static String describe(ExecutionHistory record) {
+        return "#" + record.getRunNumber() + " " + record.getProgramName() + " degree " + record.getExpansionDegree()
+                + " inputs " + Arrays.toString(record.getInputs()) + " y=" + record.getOutput()
+                + " cycles=" + record.getCycles();
+    }
+    
+    private static String describe(Map<Integer, CycleStatistics> statistics) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<Integer, CycleStatistics> entry : statistics.entrySet()) {
+            CycleStatistics cycles = entry.getValue();
+            text.append("[degree ").append(entry.getKey()).append(": ").append(cycles.getCount())
+                    .append(" runs, ").append(cycles.getMin()).append("..").append(cycles.getMax())
+                    .append(", median ").append(cycles.getPercentile(50)).append("]");
+        }
+        return text.toString();
+    }
+}
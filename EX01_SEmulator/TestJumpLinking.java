@@ -0,0 +1,70 @@
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.instruction.basic.DecreaseInstruction;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.instruction.basic.NeutralInstruction;
+import com.semulator.engine.instruction.synthetic.GotoLabelInstruction;
+import com.semulator.engine.program.Program;
+
+public class TestJumpLinking {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing jumps resolved at link time against the interpreter...");
+            
+            // A jump to itself, a forward and a backward jump, a GOTO, and a jump to a missing
+            // label that is only taken when x3 is not zero
+            Program program = new Program("Jumps");
+            program.addInstruction(new JumpNotZeroInstruction("x2", "S1", "S1"));
+            program.addInstruction(new JumpNotZeroInstruction("x1", null, "A1"));
+            program.addInstruction(new GotoLabelInstruction("", null, "END"));
+            program.addInstruction(new DecreaseInstruction("x1", "A1"));
+            program.addInstruction(new IncreaseInstruction("y", null));
+            program.addInstruction(new IncreaseInstruction("y", null));
+            program.addInstruction(new JumpNotZeroInstruction("x1", null, "A1"));
+            program.addInstruction(new JumpNotZeroInstruction("x3", null, "MISSING"));
+            program.addInstruction(new NeutralInstruction("y", "END"));
+            
+            int mismatches = 0;
+            int runs = 0;
+            for (int degree = 0; degree <= program.getMaxDegree(); degree++) {
+                Program expanded = program.expandToDegree(degree);
+                for (int x1 = 0; x1 <= 5; x1++) {
+                    for (int x2 = 0; x2 <= 2; x2++) {
+                        int[] inputs = {x1, x2, 0};
+                        ExecutionResult expected = expanded.execute(inputs, ExecutionMode.INTERPRETED);
+                        ExecutionResult actual = expanded.execute(inputs, ExecutionMode.REGISTER);
+                        runs++;
+                        if (!TestSupport.sameResult(expected, actual)) {
+                            mismatches++;
+                            System.out.println("Mismatch at degree " + degree + " for x1=" + x1 + ", x2=" + x2);
+                        }
+                    }
+                }
+            }
+            System.out.println(runs + " runs, " + mismatches + " mismatches");
+            
+            // Taking the jump to the missing label fails the same way in both modes
+            String interpreted = failure(program, ExecutionMode.INTERPRETED);
+            String register = failure(program, ExecutionMode.REGISTER);
+            System.out.println("Interpreter: " + interpreted + ", register file: " + register);
+            
+            boolean passed = mismatches == 0 && "Label not found: MISSING".equals(interpreted)
+                    && interpreted.equals(register);
+            System.out.println(passed ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private static String failure(Program program, ExecutionMode mode) {
+        try {
+            program.execute(new int[] {2, 0, 1}, mode);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+}
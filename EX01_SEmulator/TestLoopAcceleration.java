@@ -0,0 +1,63 @@
+import com.semulator.engine.execution.ExecutionLimits;
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.instruction.basic.DecreaseInstruction;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.instruction.basic.NeutralInstruction;
+import com.semulator.engine.program.Program;
+
+public class TestLoopAcceleration {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing ACCELERATED mode against the interpreter...");
+            
+            // Two counted loops: move x1 into y and z1, then drain x2 into y
+            Program program = new Program("Loops");
+            program.addInstruction(new JumpNotZeroInstruction("x1", null, "A1"));
+            program.addInstruction(new JumpNotZeroInstruction("x2", null, "B1"));
+            program.addInstruction(new NeutralInstruction("y", null));
+            program.addInstruction(new DecreaseInstruction("x1", "A1"));
+            program.addInstruction(new IncreaseInstruction("y", null));
+            program.addInstruction(new IncreaseInstruction("z1", null));
+            program.addInstruction(new JumpNotZeroInstruction("x1", null, "A1"));
+            program.addInstruction(new JumpNotZeroInstruction("x2", null, "B1"));
+            program.addInstruction(new NeutralInstruction("y", null));
+            program.addInstruction(new DecreaseInstruction("x2", "B1"));
+            program.addInstruction(new IncreaseInstruction("y", null));
+            program.addInstruction(new JumpNotZeroInstruction("x2", null, "B1"));
+            
+            int mismatches = 0;
+            int runs = 0;
+            int[][] inputSets = {{0, 0}, {1, 0}, {0, 1}, {5, 3}, {40, 17}, {1000, 1}, {-3, 2}};
+            long[] cycleLimits = {0, 1, 7, 50, 333};
+            for (int[] inputs : inputSets) {
+                for (long maxCycles : cycleLimits) {
+                    ExecutionLimits limits = new ExecutionLimits(maxCycles, 0, 0, null);
+                    ExecutionResult expected = program.execute(inputs, ExecutionMode.INTERPRETED, limits);
+                    ExecutionResult actual = program.execute(inputs, ExecutionMode.ACCELERATED, limits);
+                    runs++;
+                    if (!TestSupport.sameResult(expected, actual)) {
+                        mismatches++;
+                        System.out.println("Mismatch for x1=" + inputs[0] + ", x2=" + inputs[1]
+                                + " with a limit of " + maxCycles + " cycles");
+                    }
+                }
+            }
+            
+            // A long loop only finishes quickly if it is run in constant time
+            int[] large = {50000000, 3};
+            long start = System.nanoTime();
+            ExecutionResult result = program.execute(large, ExecutionMode.ACCELERATED);
+            long millis = (System.nanoTime() - start) / 1000000;
+            System.out.println("Output (y) for x1=50000000, x2=3: " + result.getOutput());
+            System.out.println("Total cycles: " + result.getTotalCycles() + " in " + millis + " ms");
+            System.out.println(runs + " runs, " + mismatches + " mismatches");
+            System.out.println(mismatches == 0 && result.getOutput() == 50000003 ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.instruction.basic.DecreaseInstruction;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.instruction.basic.NeutralInstruction;
+import com.semulator.engine.instruction.synthetic.GotoLabelInstruction;
+import com.semulator.engine.instruction.synthetic.ZeroVariableInstruction;
+import com.semulator.engine.program.Program;
+
+public class TestOptimizedMode {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing OPTIMIZED mode against the interpreter...");
+            
+            // Every pattern the peephole pass removes: NEUTRALs, a jump to the next instruction,
+            // an INCREASE/DECREASE pair and, once expanded, GOTO's INCREASE and JUMP_NOT_ZERO
+            Program program = new Program("Peephole");
+            program.addInstruction(new NeutralInstruction("y", null));
+            program.addInstruction(new ZeroVariableInstruction("z2", null));
+            program.addInstruction(new JumpNotZeroInstruction("x1", "A1", "A2"));
+            program.addInstruction(new GotoLabelInstruction("", null, "END"));
+            program.addInstruction(new DecreaseInstruction("x1", "A2"));
+            program.addInstruction(new IncreaseInstruction("x2", null));
+            program.addInstruction(new DecreaseInstruction("x2", null));
+            program.addInstruction(new NeutralInstruction("z3", null));
+            program.addInstruction(new IncreaseInstruction("y", null));
+            program.addInstruction(new JumpNotZeroInstruction("y", null, "A3"));
+            program.addInstruction(new IncreaseInstruction("y", "A3"));
+            program.addInstruction(new GotoLabelInstruction("", null, "A1"));
+            program.addInstruction(new NeutralInstruction("y", "END"));
+            
+            int mismatches = 0;
+            int runs = 0;
+            int fewestRemoved = Integer.MAX_VALUE;
+            for (int degree = 0; degree <= program.getMaxDegree(); degree++) {
+                Program expanded = program.expandToDegree(degree);
+                fewestRemoved = Math.min(fewestRemoved,
+                        expanded.getInstructionCount() - expanded.optimize().getInstructionCount());
+                for (int x1 = 0; x1 <= 8; x1++) {
+                    for (int x2 = 0; x2 <= 2; x2++) {
+                        int[] inputs = {x1, x2};
+                        ExecutionResult expected = expanded.execute(inputs, ExecutionMode.INTERPRETED);
+                        ExecutionResult actual = expanded.execute(inputs, ExecutionMode.OPTIMIZED);
+                        runs++;
+                        if (!TestSupport.sameResult(expected, actual)) {
+                            mismatches++;
+                            System.out.println("Mismatch at degree " + degree + " for x1=" + x1 + ", x2=" + x2);
+                        }
+                    }
+                }
+            }
+            System.out.println(runs + " runs, " + mismatches + " mismatches");
+            System.out.println("Fewest instructions removed at any degree: " + fewestRemoved);
+            
+            // A jump to a missing label right after a removed NEUTRAL reports its own label
+            Program missing = new Program("Missing");
+            missing.addInstruction(new IncreaseInstruction("x1", null));
+            missing.addInstruction(new NeutralInstruction("y", null));
+            missing.addInstruction(new JumpNotZeroInstruction("x1", null, "NOWHERE"));
+            String message = null;
+            try {
+                missing.execute(new int[] {1}, ExecutionMode.OPTIMIZED);
+            } catch (IllegalArgumentException e) {
+                message = e.getMessage();
+            }
+            System.out.println("Missing label error: " + message);
+            
+            boolean passed = mismatches == 0 && fewestRemoved > 0 && "Label not found: NOWHERE".equals(message);
+            System.out.println(passed ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import com.semulator.engine.ProgramCache;
+import com.semulator.engine.SemulatorEngine;
+import com.semulator.engine.parser.ProgramParser;
+import com.semulator.engine.program.Program;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestProgramCache {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing the program cache...");
+            
+            Path first = TestSupport.writeProgram(TestSupport.addProgramXml("A"));
+            Path copy = TestSupport.writeProgram(TestSupport.addProgramXml("A"));
+            Path second = TestSupport.writeProgram(TestSupport.addProgramXml("B"));
+            Path third = TestSupport.writeProgram(TestSupport.addProgramXml("C"));
+            
+            ProgramCache cache = new ProgramCache(2);
+            AtomicInteger parses = new AtomicInteger();
+            ProgramCache.Loader loader = path -> {
+                parses.incrementAndGet();
+                return ProgramParser.parseProgram(path);
+            };
+            int failures = 0;
+            
+            // The same content is parsed once, whichever path it is loaded from
+            Program loaded = cache.load(first.toString(), loader);
+            failures += check("reload is a hit", cache.load(first.toString(), loader) == loaded && parses.get() == 1);
+            failures += check("copy is a hit", cache.load(copy.toString(), loader) == loaded && parses.get() == 1);
+            
+            // Two more programs evict the least recently used one
+            cache.load(second.toString(), loader);
+            cache.load(third.toString(), loader);
+            failures += check("cache holds its capacity", cache.size() == 2 && parses.get() == 3);
+            Program reloaded = cache.load(first.toString(), loader);
+            failures += check("evicted program is parsed again", reloaded != loaded && parses.get() == 4);
+            
+            // A changed file is parsed again and gives the new program
+            Files.writeString(first, TestSupport.addProgramXml("Changed"));
+            Files.setLastModifiedTime(first, FileTime.fromMillis(Files.getLastModifiedTime(first).toMillis() + 2000));
+            Program changed = cache.load(first.toString(), loader);
+            failures += check("changed file is parsed again", "Changed".equals(changed.getName()) && parses.get() == 5);
+            failures += check("unchanged copy keeps its program",
+                    "A".equals(cache.load(copy.toString(), loader).getName()));
+            
+            // Invalidating a path makes its next load parse the file
+            int before = parses.get();
+            cache.invalidate(first.toString());
+            cache.load(first.toString(), loader);
+            failures += check("invalidated path is parsed again", parses.get() == before + 1);
+            System.out.println("Hits: " + cache.getHitCount() + ", misses: " + cache.getMissCount()
+                    + ", parses: " + parses.get());
+            failures += check("misses count the parses", cache.getMissCount() == parses.get());
+            
+            // Engines load through their cache
+            ProgramCache engineCache = new ProgramCache(4);
+            SemulatorEngine engine = new SemulatorEngine(ForkJoinPool.commonPool(), engineCache);
+            engine.loadProgram(second.toString());
+            engine.loadProgram(second.toString());
+            failures += check("engine loads hit its cache",
+                    engineCache.getHitCount() == 1 && engineCache.getMissCount() == 1);
+            
+            for (Path file : new Path[] {first, copy, second, third}) {
+                Files.delete(file);
+            }
+            System.out.println(failures + " failures");
+            System.out.println(failures == 0 ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private static int check(String description, boolean passed) {
+        System.out.println(description + ": " + (passed ? "ok" : "failed"));
+        return passed ? 0 : 1;
+    }
+}
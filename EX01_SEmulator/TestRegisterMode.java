@@ -0,0 +1,59 @@
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.program.Program;
+
+public class TestRegisterMode {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing REGISTER mode against the interpreter...");
+            
+            // y <- x1 + x2, with x1 and x2 restored, expanded at every degree
+            Program program = TestSupport.addProgram("Add");
+            
+            int mismatches = 0;
+            int runs = 0;
+            for (int degree = 0; degree <= program.getMaxDegree(); degree++) {
+                Program expanded = program.expandToDegree(degree);
+                for (int x1 = 0; x1 <= 6; x1++) {
+                    for (int x2 = 0; x2 <= 6; x2++) {
+                        int[] inputs = {x1, x2, 4};
+                        ExecutionResult expected = expanded.execute(inputs, ExecutionMode.INTERPRETED);
+                        ExecutionResult actual = expanded.execute(inputs, ExecutionMode.REGISTER);
+                        runs++;
+                        if (!TestSupport.sameResult(expected, actual)) {
+                            mismatches++;
+                            System.out.println("Mismatch at degree " + degree + " for x1=" + x1 + ", x2=" + x2);
+                        }
+                    }
+                }
+            }
+            
+            ExecutionResult sample = program.expandToDegree(0).execute(new int[] {3, 4}, ExecutionMode.REGISTER);
+            System.out.println("Output (y) for 3 + 4: " + sample.getOutput());
+            System.out.println("Total cycles: " + sample.getTotalCycles());
+            System.out.println("Used variables: " + sample.getUsedVariables());
+            System.out.println(runs + " runs, " + mismatches + " mismatches");
+            
+            // Counting past Integer.MAX_VALUE starts again from 0, as it does in the interpreter
+            Program overflow = new Program("Overflow");
+            for (int i = 0; i < 5; i++) {
+                overflow.addInstruction(new IncreaseInstruction("x1", null));
+            }
+            overflow.addInstruction(new IncreaseInstruction("y", null));
+            int[] large = {Integer.MAX_VALUE - 2};
+            ExecutionResult expected = overflow.execute(large, ExecutionMode.INTERPRETED);
+            ExecutionResult wrapped = overflow.execute(large, ExecutionMode.REGISTER);
+            System.out.println("x1 after five increases of Integer.MAX_VALUE - 2: interpreter "
+                    + expected.getVariableValue("x1") + ", register file " + wrapped.getVariableValue("x1"));
+            
+            boolean passed = mismatches == 0 && sample.getOutput() == 7
+                    && TestSupport.sameResult(expected, wrapped) && wrapped.getVariableValue("x1") == 2;
+            System.out.println(passed ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
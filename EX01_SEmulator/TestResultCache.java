@@ -0,0 +1,108 @@
+import com.semulator.engine.ResultCache;
+import com.semulator.engine.SemulatorEngine;
+import com.semulator.engine.execution.ExecutionLimits;
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.instruction.basic.DecreaseInstruction;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.program.Program;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TestResultCache {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing the result cache...");
+            
+            Path programFile = TestSupport.writeProgram(DOUBLE_PROGRAM);
+            
+            // Runs answered from the cache must equal the same runs executed without one
+            SemulatorEngine cached = new SemulatorEngine();
+            SemulatorEngine fresh = new SemulatorEngine();
+            cached.setResultCache(new ResultCache(64, 10000));
+            cached.loadProgram(programFile.toString());
+            fresh.loadProgram(programFile.toString());
+            int mismatches = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                for (int x1 = 0; x1 < 10; x1++) {
+                    int[] inputs = {x1};
+                    ExecutionResult hit = cached.executeProgram(inputs, 0);
+                    ExecutionResult expected = fresh.executeProgram(inputs, 0);
+                    if (!TestSupport.sameResult(expected, hit)) {
+                        mismatches++;
+                        System.out.println("Mismatch on pass " + (pass + 1) + " for x1=" + x1);
+                    }
+                }
+            }
+            ResultCache cache = cached.getResultCache();
+            System.out.println("Hits: " + cache.getHitCount() + ", misses: " + cache.getMissCount());
+            System.out.println("Runs in history: " + cached.getExecutionHistorySize());
+            
+            // A cycle limit the cached run would have hit makes the run execute again
+            ExecutionLimits tight = new ExecutionLimits(5, 0, 0, null);
+            ExecutionResult limited = cached.executeProgram(new int[] {9}, 0, tight);
+            System.out.println("Run of x1=9 under a 5 cycle limit: " + limited.getStopReason());
+            
+            // Programs are matched by their code: a separate copy shares entries, other code does not
+            ResultCache direct = new ResultCache(16, 1000);
+            Program original = doubleProgram("D1");
+            Program copy = doubleProgram("D2");
+            Program other = doubleProgram("D3");
+            other.addInstruction(new IncreaseInstruction("y", null));
+            int[] inputs = {4};
+            direct.put(original.link(), 0, inputs, original.execute(inputs, ExecutionMode.REGISTER));
+            boolean copyHits = direct.get(copy.link(), 0, inputs, ExecutionLimits.NONE) != null;
+            boolean otherHits = direct.get(other.link(), 0, inputs, ExecutionLimits.NONE) != null;
+            System.out.println("Copy of the program hits: " + copyHits + ", changed program hits: " + otherHits);
+            
+            boolean passed = mismatches == 0 && cache.getHitCount() == 10 && cached.getExecutionHistorySize() == 21
+                    && !limited.isComplete() && copyHits && !otherHits;
+            System.out.println(passed ? "PASSED" : "FAILED");
+            Files.delete(programFile);
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * y <- 2 * x1
+     */
+    private static Program doubleProgram(String name) {
+        Program program = new Program(name);
+        program.addInstruction(new DecreaseInstruction("x1", "L1"));
+        program.addInstruction(new IncreaseInstruction("y", null));
+        program.addInstruction(new IncreaseInstruction("y", null));
+        program.addInstruction(new JumpNotZeroInstruction("x1", null, "L1"));
+        return program;
+    }
+    
+    /**
+     * y <- 2 * x1, as a program file
+     */
+    private static final String DOUBLE_PROGRAM =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<S-Program name=\"Double\">\n"
+            + "    <S-Instructions>\n"
+            + "        <S-Instruction type=\"basic\" name=\"DECREASE\">\n"
+            + "            <S-Variable>x1</S-Variable>\n"
+            + "            <S-Label>L1</S-Label>\n"
+            + "        </S-Instruction>\n"
+            + "        <S-Instruction type=\"basic\" name=\"INCREASE\">\n"
+            + "            <S-Variable>y</S-Variable>\n"
+            + "        </S-Instruction>\n"
+            + "        <S-Instruction type=\"basic\" name=\"INCREASE\">\n"
+            + "            <S-Variable>y</S-Variable>\n"
+            + "        </S-Instruction>\n"
+            + "        <S-Instruction type=\"basic\" name=\"JUMP_NOT_ZERO\">\n"
+            + "            <S-Variable>x1</S-Variable>\n"
+            + "            <S-Instruction-Arguments>\n"
+            + "                <S-Instruction-Argument name=\"JNZLabel\" value=\"L1\"/>\n"
+            + "            </S-Instruction-Arguments>\n"
+            + "        </S-Instruction>\n"
+            + "    </S-Instructions>\n"
+            + "</S-Program>\n";
+}
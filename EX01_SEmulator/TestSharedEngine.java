@@ -0,0 +1,73 @@
+import com.semulator.engine.SemulatorEngine;
+import com.semulator.engine.execution.ExecutionResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestSharedEngine {
+    private static final int THREADS = 8;
+    private static final int RUNS_PER_THREAD = 500;
+    
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing one engine shared between threads...");
+            
+            Path programFile = TestSupport.writeProgram(TestSupport.addProgramXml("Add"));
+            SemulatorEngine engine = new SemulatorEngine();
+            engine.loadProgram(programFile.toString());
+            
+            // Every thread runs the program while one of them keeps reloading it
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            List<Future<Integer>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                workers.add(executor.submit(() -> {
+                    int wrong = 0;
+                    for (int run = 0; run < RUNS_PER_THREAD; run++) {
+                        if (thread == 0 && run % 50 == 0) {
+                            engine.loadProgram(programFile.toString());
+                        }
+                        int x1 = run % 7;
+                        int x2 = thread;
+                        ExecutionResult result = engine.executeProgram(new int[] {x1, x2}, run % 2);
+                        if (result.getOutput() != x1 + x2) {
+                            wrong++;
+                        }
+                    }
+                    return wrong;
+                }));
+            }
+            int wrongResults = 0;
+            for (Future<Integer> worker : workers) {
+                wrongResults += worker.get();
+            }
+            executor.shutdown();
+            System.out.println("Wrong results: " + wrongResults);
+            
+            // History holds every run exactly once, numbered in order, with the output of its inputs
+            List<SemulatorEngine.ExecutionHistory> history = engine.getExecutionHistory();
+            int badRecords = 0;
+            for (int i = 0; i < history.size(); i++) {
+                SemulatorEngine.ExecutionHistory record = history.get(i);
+                int[] inputs = record.getInputs();
+                if (record.getRunNumber() != i + 1 || record.getOutput() != inputs[0] + inputs[1]) {
+                    badRecords++;
+                }
+            }
+            System.out.println("History: " + history.size() + " runs, " + badRecords + " bad records");
+            
+            boolean passed = wrongResults == 0 && badRecords == 0 && history.size() == THREADS * RUNS_PER_THREAD;
+            System.out.println(passed ? "PASSED" : "FAILED");
+            Files.delete(programFile);
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
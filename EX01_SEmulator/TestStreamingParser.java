@@ -0,0 +1,151 @@
+import com.semulator.engine.instruction.Instruction;
+import com.semulator.engine.instruction.InstructionFactory;
+import com.semulator.engine.parser.ProgramParser;
+import com.semulator.engine.program.Program;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TestStreamingParser {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing the streaming parser against a document tree parser...");
+            
+            String[][] cases = {
+                {"valid program", TestSupport.addProgramXml("Add")},
+                {"wrong root", "<Program name=\"P\"><S-Instructions/></Program>"},
+                {"missing program name", "<S-Program><S-Instructions/></S-Program>"},
+                {"missing instruction type", program(
+                        "<S-Instruction name=\"INCREASE\"><S-Variable>y</S-Variable></S-Instruction>")},
+                {"missing instruction name", program(
+                        "<S-Instruction type=\"basic\"><S-Variable>y</S-Variable></S-Instruction>")},
+                {"unknown instruction", program(
+                        "<S-Instruction type=\"basic\" name=\"SQUARE\"><S-Variable>y</S-Variable></S-Instruction>")},
+                {"undefined jump label", program(
+                        "<S-Instruction type=\"basic\" name=\"JUMP_NOT_ZERO\"><S-Variable>x1</S-Variable>"
+                        + "<S-Instruction-Arguments><S-Instruction-Argument name=\"JNZLabel\" value=\"L9\"/>"
+                        + "</S-Instruction-Arguments></S-Instruction>")},
+                {"nested variable and label", program(
+                        "<S-Instruction type=\"basic\" name=\"INCREASE\"><Wrapper><S-Variable>x2</S-Variable>"
+                        + "<S-Label>L2</S-Label></Wrapper><S-Variable>x1</S-Variable><S-Label>L1</S-Label>"
+                        + "</S-Instruction>")},
+                {"label inside variable", program(
+                        "<S-Instruction type=\"basic\" name=\"DECREASE\"><S-Variable>x1<S-Label>L3</S-Label>"
+                        + "</S-Variable></S-Instruction>")},
+                {"argument inside variable", program(
+                        "<S-Instruction type=\"basic\" name=\"JUMP_NOT_ZERO\"><S-Label>L1</S-Label><S-Variable>x1"
+                        + "<S-Instruction-Argument name=\"JNZLabel\" value=\"L1\"/></S-Variable></S-Instruction>")},
+                {"error after a nested element", program(
+                        "<S-Instruction type=\"basic\" name=\"INCREASE\"><Wrapper><S-Variable>y</S-Variable>"
+                        + "</Wrapper></S-Instruction><S-Instruction name=\"NEUTRAL\"/>")}
+            };
+            
+            // Each file must fail with the same message, or give the same program, as the tree parser
+            int mismatches = 0;
+            for (String[] testCase : cases) {
+                Path file = TestSupport.writeProgram(testCase[1]);
+                String expected = describe(() -> parseWithTree(file));
+                String actual = describe(() -> ProgramParser.parseProgram(file.toString()));
+                Files.delete(file);
+                boolean same = expected.equals(actual);
+                System.out.println(testCase[0] + ": " + actual + (same ? "" : " (tree parser: " + expected + ")"));
+                if (!same) {
+                    mismatches++;
+                }
+            }
+            
+            System.out.println(mismatches + " mismatches");
+            System.out.println(mismatches == 0 ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    private interface ParseCall {
+        Program parse() throws Exception;
+    }
+    
+    /**
+     * Describe a parsed program by its name and instructions, or a failed parse by its message
+     */
+    private static String describe(ParseCall call) {
+        try {
+            Program program = call.parse();
+            StringBuilder description = new StringBuilder(program.getName());
+            for (Instruction instruction : program.getInstructions()) {
+                description.append(" | ").append(instruction.getDisplayString());
+            }
+            return description.toString();
+        } catch (Exception e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+    
+    private static String program(String instructions) {
+        return "<S-Program name=\"P\"><S-Instructions>" + instructions + "</S-Instructions></S-Program>";
+    }
+    
+    /**
+     * Parse a file the way the parser did before it streamed: read the whole document tree,
+     * then take each instruction's first variable and label and all of its arguments
+     */
+    private static Program parseWithTree(Path file) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file.toFile());
+        document.getDocumentElement().normalize();
+        
+        Element rootElement = document.getDocumentElement();
+        if (!"S-Program".equals(rootElement.getTagName())) {
+            throw new IllegalArgumentException("Root element must be 'S-Program'");
+        }
+        String programName = rootElement.getAttribute("name");
+        if (programName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Program name is required");
+        }
+        
+        Program program = new Program(programName.trim());
+        NodeList instructionElements = rootElement.getElementsByTagName("S-Instruction");
+        for (int i = 0; i < instructionElements.getLength(); i++) {
+            Element element = (Element) instructionElements.item(i);
+            String type = element.getAttribute("type");
+            String name = element.getAttribute("name");
+            if (type.trim().isEmpty()) {
+                throw new IllegalArgumentException("Instruction type is required");
+            }
+            if (name.trim().isEmpty()) {
+                throw new IllegalArgumentException("Instruction name is required");
+            }
+            
+            String variable = "";
+            NodeList variableElements = element.getElementsByTagName("S-Variable");
+            if (variableElements.getLength() > 0) {
+                variable = variableElements.item(0).getTextContent().trim();
+            }
+            String label = null;
+            NodeList labelElements = element.getElementsByTagName("S-Label");
+            if (labelElements.getLength() > 0) {
+                label = labelElements.item(0).getTextContent().trim();
+            }
+            Map<String, String> arguments = new HashMap<>();
+            NodeList argumentElements = element.getElementsByTagName("S-Instruction-Argument");
+            for (int j = 0; j < argumentElements.getLength(); j++) {
+                Element argument = (Element) argumentElements.item(j);
+                arguments.put(argument.getAttribute("name").trim(), argument.getAttribute("value").trim());
+            }
+            program.addInstruction(InstructionFactory.createInstruction(name.trim(), variable, label, arguments));
+        }
+        
+        if (!program.isValid()) {
+            throw new IllegalArgumentException("Program is invalid: referenced labels do not exist");
+        }
+        return program;
+    }
+}
@@ -0,0 +1,71 @@
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.instruction.basic.DecreaseInstruction;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.instruction.basic.NeutralInstruction;
+import com.semulator.engine.program.LinkedProgram;
+import com.semulator.engine.program.Program;
+
+public class TestSuperinstructions {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing superinstruction fusion...");
+            
+            Program program = new Program("Fused");
+            program.addInstruction(new DecreaseInstruction("x1", "A1"));      // 0: DECREASE, INCREASE, JUMP
+            program.addInstruction(new IncreaseInstruction("y", null));
+            program.addInstruction(new JumpNotZeroInstruction("x1", null, "A1"));
+            program.addInstruction(new DecreaseInstruction("x2", "B1"));      // 3: DECREASE, JUMP
+            program.addInstruction(new JumpNotZeroInstruction("x2", null, "B1"));
+            program.addInstruction(new IncreaseInstruction("z1", null));      // 5: INCREASE, JUMP
+            program.addInstruction(new JumpNotZeroInstruction("z1", null, "C1"));
+            program.addInstruction(new NeutralInstruction("y", null));
+            program.addInstruction(new DecreaseInstruction("x3", "C1"));      // 8: not fused, 9 is jumped to
+            program.addInstruction(new JumpNotZeroInstruction("x3", "C2", "C1"));
+            program.addInstruction(new JumpNotZeroInstruction("x4", null, "C2"));
+            
+            LinkedProgram linked = program.link();
+            int[] expected = {
+                LinkedProgram.OP_DECREASE_INCREASE_JUMP, LinkedProgram.OP_INCREASE, LinkedProgram.OP_JUMP_NOT_ZERO,
+                LinkedProgram.OP_DECREASE_JUMP, LinkedProgram.OP_JUMP_NOT_ZERO,
+                LinkedProgram.OP_INCREASE_JUMP, LinkedProgram.OP_JUMP_NOT_ZERO, LinkedProgram.OP_NEUTRAL,
+                LinkedProgram.OP_DECREASE, LinkedProgram.OP_JUMP_NOT_ZERO, LinkedProgram.OP_JUMP_NOT_ZERO
+            };
+            int wrongOpcodes = 0;
+            for (int i = 0; i < expected.length; i++) {
+                if (linked.getFusedOpcode(i) != expected[i]) {
+                    wrongOpcodes++;
+                    System.out.println("Instruction " + (i + 1) + " dispatches on opcode " + linked.getFusedOpcode(i)
+                            + ", expected " + expected[i]);
+                }
+            }
+            
+            // REGISTER mode dispatches on the fused opcodes
+            int mismatches = 0;
+            int runs = 0;
+            for (int x1 = 0; x1 <= 5; x1++) {
+                for (int x2 = 0; x2 <= 5; x2++) {
+                    for (int x3 = 0; x3 <= 3; x3++) {
+                        int[] inputs = {x1, x2, x3, 0};
+                        ExecutionResult interpreted = program.execute(inputs, ExecutionMode.INTERPRETED);
+                        ExecutionResult register = program.execute(inputs, ExecutionMode.REGISTER);
+                        runs++;
+                        if (!TestSupport.sameResult(interpreted, register)) {
+                            mismatches++;
+                            System.out.println("Mismatch for x1=" + x1 + ", x2=" + x2 + ", x3=" + x3);
+                        }
+                    }
+                }
+            }
+            
+            System.out.println(wrongOpcodes + " wrongly fused instructions");
+            System.out.println(runs + " runs, " + mismatches + " mismatches");
+            System.out.println(wrongOpcodes == 0 && mismatches == 0 ? "PASSED" : "FAILED");
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
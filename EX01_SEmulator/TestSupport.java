@@ -0,0 +1,172 @@
+import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.instruction.basic.DecreaseInstruction;
+import com.semulator.engine.instruction.basic.IncreaseInstruction;
+import com.semulator.engine.instruction.basic.JumpNotZeroInstruction;
+import com.semulator.engine.instruction.basic.NeutralInstruction;
+import com.semulator.engine.instruction.synthetic.GotoLabelInstruction;
+import com.semulator.engine.instruction.synthetic.ZeroVariableInstruction;
+import com.semulator.engine.program.Program;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Programs and result comparisons shared by the Test* checks
+ */
+final class TestSupport {
+    
+    private TestSupport() {
+    }
+    
+    /**
+     * Check that two runs agree on output, cycles, final variable values and why they stopped
+     */
+    static boolean sameResult(ExecutionResult expected, ExecutionResult actual) {
+        return expected.getOutput() == actual.getOutput()
+                && expected.getTotalCycles() == actual.getTotalCycles()
+                && expected.getFinalVariableValues().equals(actual.getFinalVariableValues())
+                && expected.getStopReason() == actual.getStopReason();
+    }
+    
+    /**
+     * y <- x1 + x2, with x1 and x2 restored; uses ZERO_VARIABLE and GOTO, so it expands
+     */
+    static Program addProgram(String name) {
+        Program program = new Program(name);
+        program.addInstruction(new ZeroVariableInstruction("y", null));
+        program.addInstruction(new JumpNotZeroInstruction("x1", null, "A1"));
+        program.addInstruction(new GotoLabelInstruction("", null, "B0"));
+        program.addInstruction(new DecreaseInstruction("x1", "A1"));
+        program.addInstruction(new IncreaseInstruction("z1", null));
+        program.addInstruction(new IncreaseInstruction("y", null));
+        program.addInstruction(new JumpNotZeroInstruction("x1", null, "A1"));
+        program.addInstruction(new JumpNotZeroInstruction("x2", "B0", "B1"));
+        program.addInstruction(new GotoLabelInstruction("", null, "C1"));
+        program.addInstruction(new DecreaseInstruction("x2", "B1"));
+        program.addInstruction(new IncreaseInstruction("y", null));
+        program.addInstruction(new JumpNotZeroInstruction("x2", null, "B1"));
+        program.addInstruction(new JumpNotZeroInstruction("z1", "C1", "C2"));
+        program.addInstruction(new GotoLabelInstruction("", null, "END"));
+        program.addInstruction(new DecreaseInstruction("z1", "C2"));
+        program.addInstruction(new IncreaseInstruction("x1", null));
+        program.addInstruction(new JumpNotZeroInstruction("z1", null, "C2"));
+        program.addInstruction(new NeutralInstruction("y", "END"));
+        return program;
+    }
+    
+    /**
+     * Write a program file to a new temporary file
+     */
+    static Path writeProgram(String xml) throws IOException {
+        Path file = Files.createTempFile("semulator-test", ".xml");
+        Files.writeString(file, xml);
+        return file;
+    }
+    
+    /**
+     * y <- x1 + x2, as a program file
+     */
+    static String addProgramXml(String name) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<S-Program name=\"" + name + "\">\n"
+                + "    <S-Instructions>\n"
+                + "        <S-Instruction type=\"basic\" name=\"JUMP_NOT_ZERO\">\n"
+                + "            <S-Variable>x1</S-Variable>\n"
+                + "            <S-Instruction-Arguments>\n"
+                + "                <S-Instruction-Argument name=\"JNZLabel\" value=\"L1\"/>\n"
+                + "            </S-Instruction-Arguments>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"synthetic\" name=\"GOTO_LABEL\">\n"
+                + "            <S-Variable></S-Variable>\n"
+                + "            <S-Instruction-Arguments>\n"
+                + "                <S-Instruction-Argument name=\"gotoLabel\" value=\"L2\"/>\n"
+                + "            </S-Instruction-Arguments>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"basic\" name=\"DECREASE\">\n"
+                + "            <S-Variable>x1</S-Variable>\n"
+                + "            <S-Label>L1</S-Label>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"basic\" name=\"INCREASE\">\n"
+                + "            <S-Variable>y</S-Variable>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"basic\" name=\"JUMP_NOT_ZERO\">\n"
+                + "            <S-Variable>x1</S-Variable>\n"
+                + "            <S-Instruction-Arguments>\n"
+                + "                <S-Instruction-Argument name=\"JNZLabel\" value=\"L1\"/>\n"
+                + "            </S-Instruction-Arguments>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"basic\" name=\"JUMP_NOT_ZERO\">\n"
+                + "            <S-Variable>x2</S-Variable>\n"
+                + "            <S-Label>L2</S-Label>\n"
+                + "            <S-Instruction-Arguments>\n"
+                + "                <S-Instruction-Argument name=\"JNZLabel\" value=\"L3\"/>\n"
+                + "            </S-Instruction-Arguments>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"synthetic\" name=\"GOTO_LABEL\">\n"
+                + "            <S-Variable></S-Variable>\n"
+                + "            <S-Instruction-Arguments>\n"
+                + "                <S-Instruction-Argument name=\"gotoLabel\" value=\"L4\"/>\n"
+                + "            </S-Instruction-Arguments>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"basic\" name=\"DECREASE\">\n"
+                + "            <S-Variable>x2</S-Variable>\n"
+                + "            <S-Label>L3</S-Label>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"basic\" name=\"INCREASE\">\n"
+                + "            <S-Variable>y</S-Variable>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"basic\" name=\"JUMP_NOT_ZERO\">\n"
+                + "            <S-Variable>x2</S-Variable>\n"
+                + "            <S-Instruction-Arguments>\n"
+                + "                <S-Instruction-Argument name=\"JNZLabel\" value=\"L3\"/>\n"
+                + "            </S-Instruction-Arguments>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"basic\" name=\"NEUTRAL\">\n"
+                + "            <S-Variable>y</S-Variable>\n"
+                + "            <S-Label>L4</S-Label>\n"
+                + "        </S-Instruction>\n"
+                + "    </S-Instructions>\n"
+                + "</S-Program>\n";
+    }
+    
+    /**
+     * y <- x1, leaving x1 at 0, as a program file
+     */
+    static String copyProgramXml(String name) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<S-Program name=\"" + name + "\">\n"
+                + "    <S-Instructions>\n"
+                + "        <S-Instruction type=\"basic\" name=\"JUMP_NOT_ZERO\">\n"
+                + "            <S-Variable>x1</S-Variable>\n"
+                + "            <S-Instruction-Arguments>\n"
+                + "                <S-Instruction-Argument name=\"JNZLabel\" value=\"L1\"/>\n"
+                + "            </S-Instruction-Arguments>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"synthetic\" name=\"GOTO_LABEL\">\n"
+                + "            <S-Variable></S-Variable>\n"
+                + "            <S-Instruction-Arguments>\n"
+                + "                <S-Instruction-Argument name=\"gotoLabel\" value=\"L2\"/>\n"
+                + "            </S-Instruction-Arguments>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"basic\" name=\"DECREASE\">\n"
+                + "            <S-Variable>x1</S-Variable>\n"
+                + "            <S-Label>L1</S-Label>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"basic\" name=\"INCREASE\">\n"
+                + "            <S-Variable>y</S-Variable>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"basic\" name=\"JUMP_NOT_ZERO\">\n"
+                + "            <S-Variable>x1</S-Variable>\n"
+                + "            <S-Instruction-Arguments>\n"
+                + "                <S-Instruction-Argument name=\"JNZLabel\" value=\"L1\"/>\n"
+                + "            </S-Instruction-Arguments>\n"
+                + "        </S-Instruction>\n"
+                + "        <S-Instruction type=\"basic\" name=\"NEUTRAL\">\n"
+                + "            <S-Variable>y</S-Variable>\n"
+                + "            <S-Label>L2</S-Label>\n"
+                + "        </S-Instruction>\n"
+                + "    </S-Instructions>\n"
+                + "</S-Program>\n";
+    }
+}
@@ -0,0 +1,99 @@
+import com.semulator.engine.InputGrid;
+import com.semulator.engine.SemulatorEngine;
+import com.semulator.engine.SweepTable;
+import com.semulator.engine.execution.ExecutionLimits;
+import com.semulator.engine.execution.ExecutionMode;
+import com.semulator.engine.execution.ExecutionResult;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class TestSweep {
+    public static void main(String[] args) {
+        try {
+            System.out.println("Testing input sweeps against single runs...");
+            
+            Path programFile = TestSupport.writeProgram(TestSupport.addProgramXml("Add"));
+            SemulatorEngine engine = new SemulatorEngine();
+            System.out.println(engine.loadProgram(programFile.toString()).getMessage());
+            
+            // Every point of the table must hold what a single run with its inputs returns,
+            // with the last input varying fastest
+            InputGrid grid = new InputGrid(new int[] {2, 0}, new int[] {7, 4});
+            ExecutionLimits[] limits = {ExecutionLimits.NONE, new ExecutionLimits(20, 0, 0, null)};
+            int failures = 0;
+            int limited = 0;
+            for (ExecutionMode mode : new ExecutionMode[] {ExecutionMode.ADAPTIVE, ExecutionMode.INTERPRETED}) {
+                engine.setExecutionMode(mode);
+                for (int degree = 0; degree <= 1; degree++) {
+                    for (ExecutionLimits limit : limits) {
+                        SweepTable table = engine.sweepProgram(grid, degree, limit);
+                        if (table.size() != 30) {
+                            failures++;
+                            System.out.println("Table has " + table.size() + " points, expected 30");
+                        }
+                        for (int point = 0; point < table.size(); point++) {
+                            int[] inputs = table.getInputs(point);
+                            int[] expectedInputs = {2 + point / 5, point % 5};
+                            ExecutionResult expected = engine.executeProgram(inputs, degree, limit);
+                            if (!Arrays.equals(inputs, expectedInputs) || table.getOutput(point) != expected.getOutput()
+                                    || table.getCycles(point) != expected.getTotalCycles()
+                                    || table.getStopReason(point) != expected.getStopReason()) {
+                                failures++;
+                                System.out.println(mode + " point " + point + " at degree " + degree
+                                        + " differs from a single run of " + Arrays.toString(inputs));
+                            }
+                            if (!expected.isComplete()) {
+                                limited++;
+                            }
+                        }
+                    }
+                }
+            }
+            System.out.println("Runs stopped by the cycle limit: " + limited);
+            
+            // Like single runs, INTERPRETED sweeps of an expansion run on the lazy view and never build it
+            engine.setMaxExpansionSize(1);
+            SweepTable lazy = engine.sweepProgram(grid, 1);
+            ExecutionResult single = engine.executeProgram(lazy.getInputs(7), 1);
+            System.out.println("Sweep without building the expansion, point 7: y=" + lazy.getOutput(7));
+            if (lazy.getOutput(7) != single.getOutput() || lazy.getCycles(7) != single.getTotalCycles()) {
+                failures++;
+            }
+            engine.setMaxExpansionSize(Long.MAX_VALUE);
+            engine.setExecutionMode(ExecutionMode.ADAPTIVE);
+            
+            // The CSV has a header row, then one row per point in table order
+            SweepTable table = engine.sweepProgram(grid, 0);
+            StringWriter csv = new StringWriter();
+            table.writeCsv(csv);
+            String[] lines = csv.toString().split("\n");
+            if (lines.length != table.size() + 1 || !lines[0].equals("x1,x2,y,cycles,stop")) {
+                failures++;
+                System.out.println("CSV has " + lines.length + " lines, header \"" + lines[0] + "\"");
+            } else {
+                for (int point = 0; point < table.size(); point++) {
+                    int[] inputs = table.getInputs(point);
+                    String expected = inputs[0] + "," + inputs[1] + "," + table.getOutput(point) + ","
+                            + table.getCycles(point) + "," + table.getStopReason(point);
+                    if (!lines[point + 1].equals(expected)) {
+                        failures++;
+                        System.out.println("CSV row " + (point + 1) + " is \"" + lines[point + 1] + "\", expected \""
+                                + expected + "\"");
+                    }
+                }
+            }
+            System.out.println("First rows:\n" + lines[0] + "\n" + lines[1] + "\n" + lines[2]);
+            
+            System.out.println(failures + " failures");
+            System.out.println(failures == 0 && limited > 0 ? "PASSED" : "FAILED");
+            Files.delete(programFile);
+            
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,12 +1,32 @@
 package com.semulator.ui;
 
+import com.semulator.engine.CycleStatistics;
+import com.semulator.engine.HistoryColumn;
+import com.semulator.engine.HistoryQuery;
+import com.semulator.engine.InputGrid;
 import com.semulator.engine.SemulatorEngine;
+import com.semulator.engine.SweepTable;
+import com.semulator.engine.execution.CancellationToken;
+import com.semulator.engine.execution.ExecutionLimits;
 import com.semulator.engine.execution.ExecutionResult;
+import com.semulator.engine.execution.StopReason;
+import com.semulator.engine.program.ExecutionProfile;
+import com.semulator.engine.program.ExpansionEstimate;
 import com.semulator.engine.program.Program;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 /**
  * Console user interface for the S-Emulator.
@@ -14,6 +34,16 @@ import java.util.Set;
  */
 public class ConsoleUI {
     
+    /**
+     * How often a running program is checked for completion or a stop request
+     */
+    private static final long POLL_INTERVAL_MILLIS = 200;
+    
+    /**
+     * Number of expanded instructions shown before asking whether to show more
+     */
+    private static final int PAGE_SIZE = 100;
+    
     private final SemulatorEngine engine;
     private final Scanner scanner;
     private boolean running;
@@ -51,8 +81,10 @@ public class ConsoleUI {
         System.out.println("3. Expand program");
         System.out.println("4. Run program");
         System.out.println("5. Show execution history");
-        System.out.println("6. Exit");
-        System.out.print("Please select an option (1-6): ");
+        System.out.println("6. Sweep inputs");
+        System.out.println("7. Checkpoints");
+        System.out.println("8. Exit");
+        System.out.print("Please select an option (1-8): ");
     }
     
     /**
@@ -63,10 +95,10 @@ public class ConsoleUI {
             try {
                 String input = scanner.nextLine().trim();
                 int choice = Integer.parseInt(input);
-                if (choice >= 1 && choice <= 6) {
+                if (choice >= 1 && choice <= 8) {
                     return choice;
                 } else {
-                    System.out.println("Please enter a number between 1 and 6.");
+                    System.out.println("Please enter a number between 1 and 8.");
                 }
             } catch (NumberFormatException e) {
                 System.out.println("Please enter a valid number.");
@@ -95,6 +127,12 @@ public class ConsoleUI {
                 showExecutionHistory();
                 break;
             case 6:
+                sweepInputs();
+                break;
+            case 7:
+                manageCheckpoints();
+                break;
+            case 8:
                 running = false;
                 break;
         }
@@ -135,14 +173,22 @@ public class ConsoleUI {
             System.out.println("Labels: " + String.join(", ", labels));
         }
         
-        // Display instructions
+        // Display instructions, annotated with the last profiled run if there is one
+        ExecutionProfile profile = engine.getLastProfile();
         System.out.println("\nInstructions:");
+        if (profile != null) {
+            System.out.printf("(annotated with the last profiled run: %d cycles)\n", profile.getTotalCycles());
+        }
         List<com.semulator.engine.instruction.Instruction> instructions = program.getInstructions();
         for (int i = 0; i < instructions.size(); i++) {
             com.semulator.engine.instruction.Instruction instruction = instructions.get(i);
             String type = instruction.getType() == com.semulator.engine.instruction.InstructionType.BASIC ? "B" : "S";
-            System.out.printf("#%d (%s) %s (%d)\n", 
+            System.out.printf("#%d (%s) %s (%d)", 
                 i + 1, type, instruction.getDisplayString(), instruction.getCycles());
+            if (profile != null) {
+                System.out.printf("  hits: %d, cycles: %.1f%%", profile.getExecutionCount(i), profile.getCycleShare(i) * 100);
+            }
+            System.out.println();
         }
     }
     
@@ -159,15 +205,22 @@ public class ConsoleUI {
         int maxDegree = program.getMaxDegree();
         
         System.out.println("Maximum degree of the program: " + maxDegree);
+        displayExpansionEstimates(program);
         System.out.print("Enter the degree to expand to (0-" + maxDegree + "): ");
         
         int targetDegree = getValidDegree(maxDegree);
-        Program expandedProgram = program.expandToDegree(targetDegree);
         
+        // Stream the expansion instead of building the expanded program just to print it
         System.out.println("\nExpanded program:");
-        List<com.semulator.engine.instruction.Instruction> instructions = expandedProgram.getInstructions();
-        for (int i = 0; i < instructions.size(); i++) {
-            com.semulator.engine.instruction.Instruction instruction = instructions.get(i);
+        int i = 0;
+        for (com.semulator.engine.instruction.Instruction instruction : program.expansionView(targetDegree)) {
+            if (i > 0 && i % PAGE_SIZE == 0) {
+                System.out.print("-- " + i + " of " + program.estimateExpansions().getInstructionCount(targetDegree)
+                        + " shown; press Enter for more or q to stop -- ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    break;
+                }
+            }
             String type = instruction.getType() == com.semulator.engine.instruction.InstructionType.BASIC ? "B" : "S";
             String display = instruction.getDisplayString();
             
@@ -177,7 +230,20 @@ public class ConsoleUI {
             }
             
             System.out.printf("#%d (%s) %s (%d)\n", 
-                i + 1, type, display, instruction.getCycles());
+                ++i, type, display, instruction.getCycles());
+        }
+    }
+    
+    /**
+     * Show how large the program's expansion is at each degree, without expanding it
+     */
+    private void displayExpansionEstimates(Program program) {
+        ExpansionEstimate estimate = program.estimateExpansions();
+        System.out.println("Degree  Instructions  Fresh variables  Fresh labels  Static cycles");
+        for (int degree = 0; degree <= estimate.getMaxDegree(); degree++) {
+            System.out.printf("%6d  %12d  %15d  %12d  %13d\n", degree,
+                estimate.getInstructionCount(degree), estimate.getFreshVariables(degree),
+                estimate.getFreshLabels(degree), estimate.getStaticCycles(degree));
         }
     }
     
@@ -194,6 +260,7 @@ public class ConsoleUI {
         int maxDegree = program.getMaxDegree();
         
         System.out.println("Maximum degree of the program: " + maxDegree);
+        displayExpansionEstimates(program);
         System.out.print("Enter the degree to run at (0-" + maxDegree + "): ");
         
         int expansionDegree = getValidDegree(maxDegree);
@@ -203,26 +270,51 @@ public class ConsoleUI {
         if (inputVars.isEmpty()) {
             System.out.println("No input variables required.");
             int[] inputs = new int[0];
-            executeAndDisplayResults(inputs, expansionDegree);
+            executeAndDisplayResults(inputs, expansionDegree, askToProfile());
         } else {
             System.out.println("Input variables: " + String.join(", ", inputVars));
             System.out.print("Enter input values (comma-separated): ");
             
             int[] inputs = getInputValues();
-            executeAndDisplayResults(inputs, expansionDegree);
+            executeAndDisplayResults(inputs, expansionDegree, askToProfile());
         }
     }
     
+    /**
+     * Ask whether to profile the run, so "Display program" can show where its cycles went
+     */
+    private boolean askToProfile() {
+        System.out.print("Profile this run? (y/N): ");
+        return scanner.nextLine().trim().equalsIgnoreCase("y");
+    }
+    
     /**
      * Execute program and display results
      */
-    private void executeAndDisplayResults(int[] inputs, int expansionDegree) {
+    private void executeAndDisplayResults(int[] inputs, int expansionDegree, boolean profile) {
+        executeAndDisplayResults(limits -> profile
+                ? engine.profileProgram(inputs, expansionDegree, limits).getResult()
+                : engine.executeProgram(inputs, expansionDegree, limits), profile);
+    }
+    
+    /**
+     * Run an execution that can be stopped by pressing Enter and display its results
+     */
+    private void executeAndDisplayResults(Function<ExecutionLimits, ExecutionResult> execution, boolean profile) {
         try {
-            ExecutionResult result = engine.executeProgram(inputs, expansionDegree);
+            ExecutionResult result = executeCancellable(execution);
             
-            System.out.println("\nExecution completed successfully!");
+            if (result.isComplete()) {
+                System.out.println("\nExecution completed successfully!");
+            } else {
+                System.out.println("\nExecution stopped (" + result.getStopReason()
+                        + ") before instruction #" + (result.getStopIndex() + 1) + ". Partial results:");
+            }
             System.out.println("Output (y): " + result.getOutput());
             System.out.println("Total cycles: " + result.getTotalCycles());
+            if (result.getCheckpointFile() != null) {
+                System.out.println("Checkpoint file: " + result.getCheckpointFile());
+            }
             
             // Display final variable values
             System.out.println("\nFinal variable values:");
@@ -231,11 +323,52 @@ public class ConsoleUI {
                 System.out.println(var + " = " + result.getVariableValue(var));
             }
             
+            if (profile) {
+                System.out.println("\nProfile recorded; choose \"Display program\" to see it.");
+            }
+            
         } catch (Exception e) {
             System.out.println("Error during execution: " + e.getMessage());
         }
     }
     
+    /**
+     * Run the program on a worker thread so a long run can be stopped by pressing Enter
+     */
+    private ExecutionResult executeCancellable(Function<ExecutionLimits, ExecutionResult> execution) throws Exception {
+        CancellationToken cancellation = new CancellationToken();
+        ExecutionLimits limits = engine.getExecutionLimits().withCancellation(cancellation);
+        CompletableFuture<ExecutionResult> run = CompletableFuture.supplyAsync(() -> execution.apply(limits));
+        
+        boolean promptShown = false;
+        while (true) {
+            try {
+                return run.get(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (!promptShown) {
+                    System.out.println("Program is running... press Enter to stop it.");
+                    promptShown = true;
+                }
+                if (stopRequested()) {
+                    cancellation.cancel();
+                }
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+    }
+    
+    /**
+     * Check if the user pressed Enter, consuming the pending line so the menu does not see it
+     */
+    private boolean stopRequested() throws IOException {
+        boolean requested = false;
+        while (System.in.available() > 0) {
+            requested |= System.in.read() == '\n';
+        }
+        return requested;
+    }
+    
     /**
      * Show execution history
      */
@@ -245,23 +378,198 @@ public class ConsoleUI {
             return;
         }
         
-        List<SemulatorEngine.ExecutionHistory> history = engine.getExecutionHistory();
-        if (history.isEmpty()) {
+        if (engine.getExecutionHistorySize() == 0) {
             System.out.println("No execution history available.");
             return;
         }
         
+        HistoryQuery query = HistoryQuery.ALL;
+        System.out.print("Show only runs at expansion degree (Enter for all): ");
+        String degreeInput = scanner.nextLine().trim();
+        if (!degreeInput.isEmpty()) {
+            try {
+                query = query.withDegree(Integer.parseInt(degreeInput));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid degree, showing all runs.");
+            }
+        }
+        System.out.print("Sort by cycles, most first? (y/N): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+            query = query.orderBy(HistoryColumn.CYCLES, true);
+        }
+        
+        List<SemulatorEngine.ExecutionHistory> history = engine.queryHistory(query);
+        if (history.isEmpty()) {
+            System.out.println("No runs match.");
+            return;
+        }
+        
         System.out.println("\nExecution History:");
         System.out.println("==================");
         
-        for (SemulatorEngine.ExecutionHistory record : history) {
+        // Page through the matching runs instead of printing the whole history at once
+        for (int i = 0; i < history.size(); i++) {
+            if (i > 0 && i % PAGE_SIZE == 0) {
+                System.out.print("-- " + i + " of " + history.size()
+                        + " shown; press Enter for more or q to stop -- ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    break;
+                }
+            }
+            SemulatorEngine.ExecutionHistory record = history.get(i);
             System.out.printf("Run #%d:\n", record.getRunNumber());
+            if (record.getProgramName() != null) {
+                System.out.printf("  Program: %s\n", record.getProgramName());
+            }
             System.out.printf("  Expansion degree: %d\n", record.getExpansionDegree());
             System.out.printf("  Inputs: %s\n", formatInputs(record.getInputs()));
             System.out.printf("  Output: %d\n", record.getOutput());
             System.out.printf("  Cycles: %d\n", record.getCycles());
             System.out.println();
         }
+        
+        System.out.println("Cycles by expansion degree:");
+        for (Map.Entry<Integer, CycleStatistics> entry : engine.getCycleStatistics(query).entrySet()) {
+            CycleStatistics statistics = entry.getValue();
+            System.out.printf("  Degree %d: %d runs, min %d, median %d, p95 %d, max %d, mean %.1f\n",
+                    entry.getKey(), statistics.getCount(), statistics.getMin(), statistics.getPercentile(50),
+                    statistics.getPercentile(95), statistics.getMax(), statistics.getMean());
+        }
+    }
+    
+    /**
+     * Turn checkpointing of runs on or off, or resume a run from its checkpoint file
+     */
+    private void manageCheckpoints() {
+        Path checkpointDirectory = engine.getCheckpointDirectory();
+        if (checkpointDirectory == null) {
+            System.out.println("Runs are not checkpointed.");
+        } else {
+            System.out.println("Runs are checkpointed to files in " + checkpointDirectory + " every "
+                    + engine.getCheckpointInterval() + " steps.");
+        }
+        System.out.println("1. Checkpoint runs to files in a directory");
+        System.out.println("2. Stop checkpointing runs");
+        System.out.println("3. Resume a run from a checkpoint file");
+        System.out.print("Please select an option (1-3, Enter to go back): ");
+        
+        switch (scanner.nextLine().trim()) {
+            case "1":
+                System.out.print("Enter the checkpoint directory: ");
+                String path = scanner.nextLine().trim();
+                System.out.print("Enter the number of steps between checkpoints: ");
+                try {
+                    engine.setCheckpointing(path.isEmpty() ? null : Paths.get(path),
+                            Long.parseLong(scanner.nextLine().trim()));
+                    System.out.println("Runs will be checkpointed to files in " + engine.getCheckpointDirectory() + ".");
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Checkpointing not changed: " + e.getMessage());
+                }
+                break;
+            case "2":
+                engine.stopCheckpointing();
+                System.out.println("Runs will not be checkpointed.");
+                break;
+            case "3":
+                if (!engine.hasProgram()) {
+                    System.out.println("No program is currently loaded. Please load a program first.");
+                    return;
+                }
+                System.out.print("Enter the checkpoint file path: ");
+                String checkpointPath = scanner.nextLine().trim();
+                executeAndDisplayResults(limits -> {
+                    try {
+                        return engine.resumeProgram(checkpointPath, limits);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, false);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Run the program over a grid of inputs and list the results or save them as CSV
+     */
+    private void sweepInputs() {
+        if (!engine.hasProgram()) {
+            System.out.println("No program is currently loaded. Please load a program first.");
+            return;
+        }
+        
+        Program program = engine.getCurrentProgram();
+        int maxDegree = program.getMaxDegree();
+        System.out.print("Enter the degree to run at (0-" + maxDegree + "): ");
+        int expansionDegree = getValidDegree(maxDegree);
+        
+        Set<String> inputVars = program.getInputVariables();
+        if (!inputVars.isEmpty()) {
+            System.out.println("Input variables: " + String.join(", ", inputVars));
+        }
+        System.out.print("Enter a range for each input as from..to (comma-separated): ");
+        InputGrid grid = getInputGrid();
+        
+        long start = System.nanoTime();
+        SweepTable table;
+        try {
+            table = engine.sweepProgram(grid, expansionDegree);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            System.out.println("Cannot sweep: " + e.getMessage());
+            return;
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("Ran %d input vectors in %d ms.\n", table.size(), elapsedMillis);
+        
+        System.out.print("Save as CSV (enter a path, or press Enter to list the results): ");
+        String path = scanner.nextLine().trim();
+        if (!path.isEmpty()) {
+            try {
+                table.writeCsv(path);
+                System.out.println("Results saved to " + path);
+            } catch (IOException e) {
+                System.out.println("Failed to save results: " + e.getMessage());
+            }
+            return;
+        }
+        
+        for (int point = 0; point < table.size(); point++) {
+            if (point > 0 && point % PAGE_SIZE == 0) {
+                System.out.print("-- " + point + " of " + table.size()
+                        + " shown; press Enter for more or q to stop -- ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    break;
+                }
+            }
+            System.out.printf("Inputs: %s -> Output: %d, Cycles: %d%s\n", formatInputs(table.getInputs(point)),
+                    table.getOutput(point), table.getCycles(point),
+                    table.getStopReason(point) == StopReason.COMPLETED ? "" : " (" + table.getStopReason(point) + ")");
+        }
+    }
+    
+    /**
+     * Get a grid of input ranges from user input
+     */
+    private InputGrid getInputGrid() {
+        while (true) {
+            try {
+                String input = scanner.nextLine().trim();
+                String[] parts = input.isEmpty() ? new String[0] : input.split(",");
+                int[] from = new int[parts.length];
+                int[] to = new int[parts.length];
+                
+                for (int i = 0; i < parts.length; i++) {
+                    String[] ends = parts[i].trim().split("\\.\\.", -1);
+                    from[i] = Integer.parseInt(ends[0].trim());
+                    to[i] = ends.length > 1 ? Integer.parseInt(ends[1].trim()) : from[i];
+                }
+                
+                return new InputGrid(from, to);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Please enter ranges such as 0..10 separated by commas: " + e.getMessage());
+            }
+        }
     }
     
     /**
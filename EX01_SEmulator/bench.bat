@@ -0,0 +1,35 @@
+@echo off
+echo Building S-Emulator benchmarks...
+
+REM The benchmarks need the JMH jars in Benchmark\lib:
+REM   jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3
+if not exist "Benchmark\lib\jmh-core-*.jar" (
+    echo JMH jars not found in Benchmark\lib
+    goto :error
+)
+
+REM The engine is built by build.bat
+if not exist "Engine\out\com\semulator\engine\SemulatorEngine.class" (
+    echo Engine is not built. Run build.bat first.
+    goto :error
+)
+
+if not exist "Benchmark\out" mkdir Benchmark\out
+
+REM Compile benchmarks; the JMH annotation processor generates the benchmark harness
+javac -d Benchmark\out -cp "Engine\out;Benchmark\lib\*" -processorpath "Benchmark\lib\*" Benchmark\src\main\java\com\semulator\benchmark\*.java
+if %ERRORLEVEL% neq 0 goto :error
+
+REM Run all suites (or the ones matching the arguments) with the allocation profiler
+echo Running benchmarks...
+java -cp "Benchmark\out;Engine\out;Benchmark\lib\*" org.openjdk.jmh.Main -prof gc %*
+if %ERRORLEVEL% neq 0 goto :error
+goto :end
+
+:error
+echo Benchmark run failed!
+pause
+exit /b 1
+
+:end
+pause
@@ -19,9 +19,15 @@ if %ERRORLEVEL% neq 0 goto :error
 javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\instruction\Instruction.java
 if %ERRORLEVEL% neq 0 goto :error
 
+javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\execution\StopReason.java Engine\src\main\java\com\semulator\engine\execution\CancellationToken.java Engine\src\main\java\com\semulator\engine\execution\ExecutionLimits.java
+if %ERRORLEVEL% neq 0 goto :error
+
 javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\execution\ExecutionResult.java
 if %ERRORLEVEL% neq 0 goto :error
 
+javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\execution\ExecutionMode.java
+if %ERRORLEVEL% neq 0 goto :error
+
 REM Step 2: Compile basic instructions
 echo Step 2: Compiling basic instructions...
 javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\instruction\basic\BasicInstruction.java
@@ -41,13 +47,7 @@ if %ERRORLEVEL% neq 0 goto :error
 
 REM Step 3: Compile synthetic instructions
 echo Step 3: Compiling synthetic instructions...
-javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\instruction\synthetic\SyntheticInstruction.java
-if %ERRORLEVEL% neq 0 goto :error
-
-javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\instruction\synthetic\ZeroVariableInstruction.java
-if %ERRORLEVEL% neq 0 goto :error
-
-javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\instruction\synthetic\GotoLabelInstruction.java
+javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\instruction\synthetic\ExpansionTemplate.java Engine\src\main\java\com\semulator\engine\instruction\synthetic\FreshNameAllocator.java Engine\src\main\java\com\semulator\engine\instruction\synthetic\SyntheticInstruction.java Engine\src\main\java\com\semulator\engine\instruction\synthetic\ZeroVariableInstruction.java Engine\src\main\java\com\semulator\engine\instruction\synthetic\GotoLabelInstruction.java
 if %ERRORLEVEL% neq 0 goto :error
 
 REM Step 4: Compile instruction factory
@@ -57,15 +57,18 @@ if %ERRORLEVEL% neq 0 goto :error
 
 REM Step 5: Compile program and parser
 echo Step 5: Compiling program and parser...
-javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\program\Program.java
+javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\monitoring\ProgramLoadEvent.java Engine\src\main\java\com\semulator\engine\monitoring\ProgramExpandEvent.java Engine\src\main\java\com\semulator\engine\monitoring\ProgramExecuteEvent.java Engine\src\main\java\com\semulator\engine\monitoring\LatencyHistogram.java Engine\src\main\java\com\semulator\engine\monitoring\OperationMetricsMXBean.java Engine\src\main\java\com\semulator\engine\monitoring\OperationMetrics.java Engine\src\main\java\com\semulator\engine\monitoring\EngineMetrics.java
+if %ERRORLEVEL% neq 0 goto :error
+
+javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\program\LinkedProgram.java Engine\src\main\java\com\semulator\engine\program\LoopIdiom.java Engine\src\main\java\com\semulator\engine\program\ExpansionView.java Engine\src\main\java\com\semulator\engine\program\ExpansionEstimate.java Engine\src\main\java\com\semulator\engine\program\OptimizedProgram.java Engine\src\main\java\com\semulator\engine\compiler\ClassFileWriter.java Engine\src\main\java\com\semulator\engine\compiler\CompiledProgram.java Engine\src\main\java\com\semulator\engine\compiler\ProgramCompiler.java Engine\src\main\java\com\semulator\engine\program\Program.java Engine\src\main\java\com\semulator\engine\program\ExecutionProfile.java Engine\src\main\java\com\semulator\engine\program\ExecutionTrace.java Engine\src\main\java\com\semulator\engine\program\ExecutionCheckpoint.java Engine\src\main\java\com\semulator\engine\program\Checkpointer.java
 if %ERRORLEVEL% neq 0 goto :error
 
-javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\parser\ProgramParser.java
+javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\parser\ProgramParser.java Engine\src\main\java\com\semulator\engine\parser\BinaryProgramFormat.java Engine\src\main\java\com\semulator\engine\parser\ProgramConverter.java
 if %ERRORLEVEL% neq 0 goto :error
 
 REM Step 6: Compile main engine
 echo Step 6: Compiling main engine...
-javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\SemulatorEngine.java
+javac -d Engine\out -cp Engine\out Engine\src\main\java\com\semulator\engine\SemulatorEngine.java Engine\src\main\java\com\semulator\engine\ColumnarHistoryStore.java Engine\src\main\java\com\semulator\engine\HistoryRows.java Engine\src\main\java\com\semulator\engine\HistoryQuery.java Engine\src\main\java\com\semulator\engine\HistoryColumn.java Engine\src\main\java\com\semulator\engine\CycleStatistics.java Engine\src\main\java\com\semulator\engine\HistoryStore.java Engine\src\main\java\com\semulator\engine\MappedHistoryLog.java Engine\src\main\java\com\semulator\engine\ProgramCache.java Engine\src\main\java\com\semulator\engine\ResultCache.java Engine\src\main\java\com\semulator\engine\InputGrid.java Engine\src\main\java\com\semulator\engine\SweepTable.java
 if %ERRORLEVEL% neq 0 goto :error
 
 REM Compile UI module